@@ -24,11 +24,14 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.profile.StackProfiler;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+import java.util.Random;
+
 @State(Scope.Thread)
 public class CacheBenchmark {
     private Cache<String, Integer> guavaCache;
@@ -73,4 +76,63 @@ public class CacheBenchmark {
             this.myCache.get("Hello, " + i);
         }
     }
-}
\ No newline at end of file
+
+    @Benchmark
+    @Threads(8)
+    public Object guavaConcurrent(Shared shared, Keys keys) {
+        String key = keys.next();
+        Integer value = shared.guavaCache.getIfPresent(key);
+        if (value == null) {
+            shared.guavaCache.put(key, key.length());
+        }
+        return value;
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object myConcurrent(Shared shared, Keys keys) {
+        String key = keys.next();
+        Integer value = shared.myCache.get(key);
+        if (value == null) {
+            shared.myCache.put(key, key.length());
+        }
+        return value;
+    }
+
+    /**
+     * The caches shared by every thread in the concurrent benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        private Cache<String, Integer> guavaCache;
+        private Caching.Cache<String, Integer> myCache;
+
+        @Setup
+        public void init() {
+            this.guavaCache = CacheBuilder.newBuilder().maximumSize(Caching.MAX_SIZE).concurrencyLevel(8).build();
+            this.myCache = Caching.newLRU();
+        }
+    }
+
+    /**
+     * Keys for each thread, skewed so a few are asked for much more often than the rest as they are in the launcher.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+        private final String[] keys = new String[4096];
+        private final Random random = new Random();
+
+        @Setup
+        public void init() {
+            for (int i = 0; i < this.keys.length; i++) {
+                this.keys[i] = "Hello, " + i;
+            }
+        }
+
+        private String next() {
+            // Squaring a uniform number skews it towards 0, so the low keys are hot and the high ones are cold
+            double d = this.random.nextDouble();
+            return this.keys[(int) (d * d * this.keys.length)];
+        }
+    }
+}
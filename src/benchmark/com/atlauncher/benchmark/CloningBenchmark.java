@@ -46,6 +46,17 @@ public class CloningBenchmark {
         this.hashCode = Hashing.md5("Hello World");
     }
 
+    @Benchmark
+    public Hashing.HashCode benchShare() {
+        // Hashes can't be changed, so they're shared rather than copied
+        return this.hashCode;
+    }
+
+    @Benchmark
+    public byte[] benchBytes() {
+        return this.hashCode.bytes();
+    }
+
     @Benchmark
     public void benchClone() {
         byte[] bits = this.hashCode.bytes().clone();
@@ -0,0 +1,122 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.benchmark;
+
+import com.atlauncher.utils.Hashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Compares hashing files through {@link Hashing#digest(Path, String...)} against the way files used to be hashed,
+ * with an MD5 read through a 1KB buffer and a SHA-1 of the whole file copied into memory first. Run with the GC
+ * profiler to see the difference in allocation.
+ */
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+    @Param({"4096", "1048576", "67108864", "209715200"})
+    private int size;
+
+    private Path file;
+
+    public static void main(String... args) throws Exception {
+        Options opts = new OptionsBuilder().include(FileHashingBenchmark.class.getSimpleName()).forks(1).addProfiler
+                (GCProfiler.class).build();
+        new Runner(opts).run();
+    }
+
+    @Setup
+    public void init() throws IOException {
+        this.file = Files.createTempFile("hashing", ".bin");
+
+        Random random = new Random(0);
+        byte[] chunk = new byte[64 * 1024];
+        try (OutputStream os = Files.newOutputStream(this.file)) {
+            for (int written = 0; written < this.size; written += chunk.length) {
+                random.nextBytes(chunk);
+                os.write(chunk, 0, Math.min(chunk.length, this.size - written));
+            }
+        }
+    }
+
+    @TearDown
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    @Benchmark
+    public Object oldMD5() throws Exception {
+        try (InputStream is = Files.newInputStream(this.file)) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[1024];
+            for (int read = is.read(buffer, 0, 1024); read > -1; read = is.read(buffer, 0, 1024)) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        }
+    }
+
+    @Benchmark
+    public Object oldSHA1() throws Exception {
+        try (InputStream is = Files.newInputStream(this.file);
+             ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = is.read(buffer, 0, 8192)) != -1) {
+                bos.write(buffer, 0, len);
+            }
+            return MessageDigest.getInstance("SHA-1").digest(bos.toByteArray());
+        }
+    }
+
+    @Benchmark
+    public Object oldMD5AndSHA1() throws Exception {
+        return new Object[]{this.oldMD5(), this.oldSHA1()};
+    }
+
+    @Benchmark
+    public Object md5() {
+        return Hashing.digest(this.file, Hashing.MD5);
+    }
+
+    @Benchmark
+    public Object sha1() {
+        return Hashing.digest(this.file, Hashing.SHA1);
+    }
+
+    @Benchmark
+    public Object md5AndSHA1() {
+        return Hashing.digest(this.file, Hashing.MD5, Hashing.SHA1);
+    }
+}
@@ -18,6 +18,7 @@
 package com.atlauncher.benchmark;
 
 import com.atlauncher.utils.Hashing;
+import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -26,10 +27,16 @@ import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+import java.util.Arrays;
+
 @State(Scope.Thread)
 public class HashComparisonBenchmark {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     private Hashing.HashCode original;
     private Hashing.HashCode test;
+    private byte[] originalBytes;
+    private byte[] testBytes;
 
     public static void main(String... args) throws Exception {
         Options opts = new OptionsBuilder().include(HashComparisonBenchmark.class.getSimpleName()).forks(1)
@@ -41,5 +48,64 @@ public class HashComparisonBenchmark {
     public void setup() {
         this.original = Hashing.HashCode.fromString("b10a8db164e0754105b7a99be72e3fe5");
         this.test = Hashing.HashCode.fromString("b10a8db164e0754105b7a99be72e3fe5");
+        this.originalBytes = decode("b10a8db164e0754105b7a99be72e3fe5");
+        this.testBytes = decode("b10a8db164e0754105b7a99be72e3fe5");
+    }
+
+    @Benchmark
+    public boolean equals() {
+        return this.original.equals(this.test);
+    }
+
+    @Benchmark
+    public boolean bytesEquals() {
+        return Arrays.equals(this.originalBytes, this.testBytes);
+    }
+
+    @Benchmark
+    public int hashCodeValue() {
+        return this.original.hashCode();
+    }
+
+    @Benchmark
+    public int bytesHashCode() {
+        return Arrays.hashCode(this.originalBytes);
+    }
+
+    @Benchmark
+    public Hashing.HashCode parse() {
+        return Hashing.HashCode.fromString("b10a8db164e0754105b7a99be72e3fe5");
+    }
+
+    @Benchmark
+    public byte[] bytesParse() {
+        return decode("b10a8db164e0754105b7a99be72e3fe5");
+    }
+
+    @Benchmark
+    public String format() {
+        // Built fresh each time as the hash keeps the string once it's been made
+        return Hashing.HashCode.fromString("b10a8db164e0754105b7a99be72e3fe5").toString();
+    }
+
+    @Benchmark
+    public String bytesFormat() {
+        StringBuilder sb = new StringBuilder(2 * this.originalBytes.length);
+        for (byte b : this.originalBytes) {
+            sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses hex into a byte array the way hashes were parsed before they were kept in longs.
+     */
+    private static byte[] decode(String str) {
+        byte[] bits = new byte[str.length() / 2];
+        for (int i = 0; i < str.length(); i += 2) {
+            bits[i / 2] = (byte) ((Character.digit(str.charAt(i), 16) << 4) + Character.digit(str.charAt(i + 1),
+                    16));
+        }
+        return bits;
     }
 }
\ No newline at end of file
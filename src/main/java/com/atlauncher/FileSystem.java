@@ -41,6 +41,8 @@ public final class FileSystem {
     public static final Path RESOURCES_INDEXES = RESOURCES.resolve("indexes");
     public static final Path LIBRARIES = CONFIGS.resolve("Libraries");
     public static final Path LAUNCHER_LIBRARIES = LIBRARIES.resolve("Launcher");
+    public static final Path STORE = CONFIGS.resolve("Store");
+    public static final Path CACHE = CONFIGS.resolve("Cache");
     public static final Path LANGUAGES = CONFIGS.resolve("Languages");
     public static final Path DOWNLOADS = BASE_DIR.resolve("Downloads");
     public static final Path INSTANCES = BASE_DIR.resolve("Instances");
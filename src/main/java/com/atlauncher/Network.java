@@ -18,8 +18,8 @@
 package com.atlauncher;
 
 import com.atlauncher.data.Constants;
-import com.atlauncher.listener.ProgressListener;
 import com.atlauncher.utils.ProgressResponseBody;
+import com.atlauncher.utils.TokenBucket;
 import com.atlauncher.workers.InstanceInstaller;
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.OkHttpClient;
@@ -31,6 +31,11 @@ import java.io.IOException;
 public final class Network {
     public static final OkHttpClient CLIENT = new OkHttpClient();
     public static final OkHttpClient PROGRESS_CLIENT = new OkHttpClient();
+
+    /**
+     * The bandwidth limit shared by every download in the launcher.
+     */
+    public static final TokenBucket BANDWIDTH = new TokenBucket(0);
     public static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.2; WOW64) AppleWebKit/537.36 (KHTML, like " +
             "Gecko) Chrome/28.0.1500.72 Safari/537.36 " + Constants.LAUNCHER_NAME + "/" + Constants.VERSION;
 
@@ -45,6 +50,15 @@ public final class Network {
             }
         });
 
+        Network.CLIENT.networkInterceptors().add(new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                Response originalResponse = chain.proceed(chain.request());
+                return originalResponse.newBuilder().body(new ProgressResponseBody(originalResponse.body(), null,
+                        Network.BANDWIDTH)).build();
+            }
+        });
+
         Network.PROGRESS_CLIENT.networkInterceptors().add(new Interceptor() {
             @Override
             public Response intercept(Chain chain) throws IOException {
@@ -54,26 +68,24 @@ public final class Network {
                 return chain.proceed(requestWithUserAgent);
             }
         });
-    }
-
-    public static void setupProgressClient(final InstanceInstaller installer) {
-        Network.PROGRESS_CLIENT.networkInterceptors().clear();
-
-        final ProgressListener progressListener = new ProgressListener() {
-            public void update(long bytesRead, long contentLength, boolean done) {
-                if (bytesRead > 0 && installer != null) {
-                    installer.addDownloadedBytes((int) bytesRead);
-                }
-            }
-        };
 
+        // Requests made for an install are tagged with it, so each install counts its own progress and has its own
+        // bandwidth limit without the client being changed between installs
         Network.PROGRESS_CLIENT.networkInterceptors().add(new Interceptor() {
             @Override
             public Response intercept(Chain chain) throws IOException {
                 Response originalResponse = chain.proceed(chain.request());
-                return originalResponse.newBuilder().body(new ProgressResponseBody(originalResponse.body(),
-                        progressListener)).build();
+
+                Object tag = chain.request().tag();
+                if (!(tag instanceof InstanceInstaller)) {
+                    return originalResponse.newBuilder().body(new ProgressResponseBody(originalResponse.body(), null,
+                            Network.BANDWIDTH)).build();
+                }
+
+                InstanceInstaller installer = (InstanceInstaller) tag;
+                return originalResponse.newBuilder().body(new ProgressResponseBody(originalResponse.body(), installer
+                        .progress, installer.bandwidth, Network.BANDWIDTH)).build();
             }
         });
     }
-}
\ No newline at end of file
+}
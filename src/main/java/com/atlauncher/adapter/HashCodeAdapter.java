@@ -20,6 +20,7 @@ package com.atlauncher.adapter;
 import com.atlauncher.utils.Hashing;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
@@ -27,12 +28,17 @@ import java.io.IOException;
 public final class HashCodeAdapter extends TypeAdapter<Hashing.HashCode> {
     @Override
     public void write(JsonWriter out, Hashing.HashCode value) throws IOException {
-        out.value(value.toString());
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.toString());
+        }
     }
 
     @Override
     public Hashing.HashCode read(JsonReader in) throws IOException {
-        if (!in.hasNext()) {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
             return Hashing.HashCode.EMPTY;
         }
 
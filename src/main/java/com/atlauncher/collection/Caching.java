@@ -17,9 +17,17 @@
  */
 package com.atlauncher.collection;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class Caching {
     public static final int MAX_SIZE = Integer.valueOf(System.getProperty("com.atlauncher.collection.Caching" +
@@ -34,6 +42,10 @@ public final class Caching {
         public V put(K key, V value);
 
         public int size();
+
+        public void clear();
+
+        public Stats stats();
     }
 
     public static <K, V> Cache<K, V> newLRU() {
@@ -44,22 +56,344 @@ public final class Caching {
         return new LRUCache<>(size);
     }
 
-    private static final class LRUCache<K, V> extends LinkedHashMap<K, V> implements Cache<K, V> {
-        private final int cap;
+    /**
+     * A snapshot of how well a cache has been doing.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        private Stats(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        public long getHits() {
+            return this.hits;
+        }
+
+        public long getMisses() {
+            return this.misses;
+        }
+
+        /**
+         * Gets how many entries have been dropped from the cache, either to make room for others, because they weren't
+         * used often enough to be let in, or because the garbage collector needed the memory.
+         *
+         * @return the number of entries dropped
+         */
+        public long getEvictions() {
+            return this.evictions;
+        }
+
+        public double getHitRate() {
+            long requests = this.hits + this.misses;
+            return requests == 0 ? 1.0 : (double) this.hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + this.hits + ", misses=" + this.misses + ", evictions=" + this.evictions + "}";
+        }
+    }
+
+    /**
+     * A bounded cache which is safe to use from many threads at once.
+     *
+     * Entries are split between a number of segments by the hash of their key, each with its own lock, so threads
+     * using different keys rarely wait on each other. Each segment drops its least recently used entry when it's
+     * full, but only if the new entry looks like it'll be used more often than the one it would replace, going by a
+     * small sketch of how often each key has been asked for recently (TinyLFU). This stops keys which are only used
+     * once from pushing out ones which are used all the time.
+     *
+     * Values are held softly, so under memory pressure the garbage collector can clear them rather than running out of
+     * memory, in which case they're treated as not being cached.
+     */
+    private static final class LRUCache<K, V> implements Cache<K, V> {
+        private final List<Segment> segments;
+        private final int segmentMask;
+        private final FrequencySketch sketch;
+        private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong evictions = new AtomicLong();
 
         private LRUCache(int cap) {
-            super(cap + 1, 0.75F, true);
-            this.cap = cap;
+            cap = Math.max(1, cap);
+
+            // Segments of at least 8 entries each, so the per segment LRU order stays close to the overall order
+            int count = 1;
+            while (count < 16 && count * 16 <= cap) {
+                count <<= 1;
+            }
+
+            this.segments = new ArrayList<>(count);
+            this.segmentMask = count - 1;
+            for (int i = 0; i < count; i++) {
+                this.segments.add(new Segment((cap / count) + (i < cap % count ? 1 : 0)));
+            }
+
+            this.sketch = new FrequencySketch(cap);
+        }
+
+        @Override
+        public V get(K key) {
+            if (key == null) {
+                this.misses.incrementAndGet();
+                return null;
+            }
+
+            int hash = spread(key.hashCode());
+            this.sketch.increment(hash);
+
+            V value = this.segmentFor(hash).get(key);
+            if (value == null) {
+                this.misses.incrementAndGet();
+            } else {
+                this.hits.incrementAndGet();
+            }
+
+            return value;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (key == null || value == null) {
+                return null;
+            }
+
+            this.purge();
+
+            int hash = spread(key.hashCode());
+            this.sketch.increment(hash);
+
+            return this.segmentFor(hash).put(key, hash, value);
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Segment segment : this.segments) {
+                size += segment.size();
+            }
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            for (Segment segment : this.segments) {
+                segment.clear();
+            }
         }
 
         @Override
-        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-            return this.size() > this.cap;
+        public Stats stats() {
+            return new Stats(this.hits.get(), this.misses.get(), this.evictions.get());
         }
 
+        /**
+         * Iterates over a snapshot of the entries in the cache, which doesn't change as the cache does.
+         */
         @Override
         public Iterator<Map.Entry<K, V>> iterator() {
-            return this.entrySet().iterator();
+            List<Map.Entry<K, V>> entries = new ArrayList<>();
+            for (Segment segment : this.segments) {
+                segment.copyTo(entries);
+            }
+            return entries.iterator();
+        }
+
+        private Segment segmentFor(int hash) {
+            // The low bits are used by the sketch, so use the high ones to pick the segment
+            return this.segments.get((hash >>> 24) & this.segmentMask);
+        }
+
+        /**
+         * Removes the entries whose values have been cleared by the garbage collector.
+         */
+        @SuppressWarnings("unchecked")
+        private void purge() {
+            Object ref;
+            while ((ref = this.queue.poll()) != null) {
+                Value<K, V> value = (Value<K, V>) ref;
+                if (this.segmentFor(value.hash).remove(value.key, value)) {
+                    this.evictions.incrementAndGet();
+                }
+            }
+        }
+
+        private static int spread(int hash) {
+            hash ^= (hash >>> 16);
+            hash *= 0x45d9f3b;
+            return hash ^ (hash >>> 16);
+        }
+
+        private final class Segment {
+            private final ReentrantLock lock = new ReentrantLock();
+            private final LinkedHashMap<K, Value<K, V>> map;
+            private final int cap;
+
+            private Segment(int cap) {
+                this.cap = Math.max(1, cap);
+                this.map = new LinkedHashMap<>(this.cap + 1, 0.75F, true);
+            }
+
+            private V get(K key) {
+                this.lock.lock();
+                try {
+                    Value<K, V> value = this.map.get(key);
+                    return value == null ? null : value.get();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+
+            private V put(K key, int hash, V value) {
+                this.lock.lock();
+                try {
+                    Value<K, V> old = this.map.get(key);
+                    if (old == null && this.map.size() >= this.cap) {
+                        Map.Entry<K, Value<K, V>> eldest = this.map.entrySet().iterator().next();
+                        if (LRUCache.this.sketch.frequency(hash) <= LRUCache.this.sketch.frequency(eldest
+                                .getValue().hash) && eldest.getValue().get() != null) {
+                            // Not used often enough to be worth pushing out the entry it would replace
+                            LRUCache.this.evictions.incrementAndGet();
+                            return null;
+                        }
+
+                        this.map.remove(eldest.getKey());
+                        LRUCache.this.evictions.incrementAndGet();
+                    }
+
+                    this.map.put(key, new Value<>(key, hash, value, LRUCache.this.queue));
+                    return old == null ? null : old.get();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+
+            private boolean remove(K key, Value<K, V> value) {
+                this.lock.lock();
+                try {
+                    if (this.map.get(key) == value) {
+                        this.map.remove(key);
+                        return true;
+                    }
+
+                    return false;
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+
+            private int size() {
+                this.lock.lock();
+                try {
+                    return this.map.size();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+
+            private void clear() {
+                this.lock.lock();
+                try {
+                    this.map.clear();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+
+            private void copyTo(List<Map.Entry<K, V>> entries) {
+                this.lock.lock();
+                try {
+                    for (Map.Entry<K, Value<K, V>> entry : this.map.entrySet()) {
+                        V value = entry.getValue().get();
+                        if (value != null) {
+                            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), value));
+                        }
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+    }
+
+    private static final class Value<K, V> extends SoftReference<V> {
+        private final K key;
+        private final int hash;
+
+        private Value(K key, int hash, V value, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * A count-min sketch of how often keys have been used recently. Each key has a counter in each of four rows, picked
+     * by a different hash of the key, and its frequency is the smallest of them. Counters stop at 15, and once enough
+     * keys have been counted every counter is halved so keys which were popular a long time ago don't stay popular
+     * forever.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x97cb3127, 0xb1dcf0c5, 0xc2b2ae35, 0x27d4eb2f};
+        private static final int MAX_COUNT = 15;
+
+        private final AtomicIntegerArray counters;
+        private final int mask;
+        private final int resetAt;
+        private final AtomicLong additions = new AtomicLong();
+
+        private FrequencySketch(int cap) {
+            int width = 16;
+            while (width < cap * 4) {
+                width <<= 1;
+            }
+
+            this.counters = new AtomicIntegerArray(width * SEEDS.length);
+            this.mask = width - 1;
+            this.resetAt = Math.max(width, cap * 10);
+        }
+
+        private void increment(int hash) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = this.index(hash, row);
+                int count;
+                do {
+                    count = this.counters.get(index);
+                } while (count < MAX_COUNT && !this.counters.compareAndSet(index, count, count + 1));
+            }
+
+            if (this.additions.incrementAndGet() % this.resetAt == 0) {
+                this.reset();
+            }
+        }
+
+        private int frequency(int hash) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, this.counters.get(this.index(hash, row)));
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (int i = 0; i < this.counters.length(); i++) {
+                int count;
+                do {
+                    count = this.counters.get(i);
+                } while (!this.counters.compareAndSet(i, count, count >>> 1));
+            }
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 17;
+            return (row * (this.mask + 1)) + (h & this.mask);
         }
     }
-}
\ No newline at end of file
+}
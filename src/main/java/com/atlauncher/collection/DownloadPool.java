@@ -20,13 +20,23 @@ package com.atlauncher.collection;
 import com.atlauncher.data.Downloadable;
 import com.atlauncher.managers.LanguageManager;
 import com.atlauncher.managers.LogManager;
-import com.atlauncher.utils.Utils;
+import com.atlauncher.thread.DownloadScheduler;
 import com.atlauncher.workers.InstanceInstaller;
 
+import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class DownloadPool extends LinkedList<Downloadable> {
+    /**
+     * How often a waiting thread wakes up to check if the install it's waiting on has been cancelled.
+     */
+    private static final long CANCEL_CHECK_MILLIS = 250;
+
     private final boolean wait;
 
     public DownloadPool(boolean wait) {
@@ -37,68 +47,117 @@ public final class DownloadPool extends LinkedList<Downloadable> {
         this(true);
     }
 
-    public void downloadAll() {
-        ExecutorService executor = Utils.generateDownloadExecutor();
+    /**
+     * Downloads every file in this pool which needs downloading.
+     *
+     * @return the handle to the downloads, which will already be complete if this pool was set to wait
+     */
+    public Result downloadAll() {
+        Result result;
         synchronized (this) {
+            result = new Result(null, this.size(), null);
             for (Downloadable dl : this) {
-                executor.execute(new Downloader(dl));
+                result.submit(new Downloader(dl, result));
             }
         }
-        executor.shutdown();
+
         if (this.wait) {
-            while (!executor.isTerminated()) {
-            }
+            result.await();
         }
+
+        return result;
+    }
+
+    /**
+     * Downloads every file in this pool which needs downloading, copying those which don't, for the given install.
+     * Cancelling the install will cancel any of the downloads not yet started.
+     *
+     * @param installer the install these downloads are for
+     * @return the handle to the downloads, which will already be complete if this pool was set to wait
+     */
+    public Result downloadAll(InstanceInstaller installer) {
+        return this.downloadAll(installer, null);
     }
 
-    public void downloadAll(InstanceInstaller installer) {
-        ExecutorService executor = Utils.generateDownloadExecutor();
+    /**
+     * Downloads every file in this pool which needs downloading, copying those which don't, for the given install.
+     * Cancelling the install will cancel any of the downloads not yet started.
+     *
+     * @param installer the install these downloads are for
+     * @param listener  told as each file finishes, so work on it can start before the rest of the pool is done
+     * @return the handle to the downloads, which will already be complete if this pool was set to wait
+     */
+    public Result downloadAll(InstanceInstaller installer, Listener listener) {
+        Result result;
         synchronized (this) {
+            result = new Result(installer, this.size(), listener);
             for (Downloadable dl : this) {
-                executor.execute(new Installer(dl, installer));
+                result.submit(new Installer(dl, installer, result));
             }
         }
-        executor.shutdown();
+
         if (this.wait) {
-            while (!executor.isTerminated()) {
-            }
+            result.await();
         }
+
+        return result;
     }
 
+    /**
+     * Gets the total size of the files in this pool which need downloading. Files whose size or hash isn't known from
+     * their manifest are asked about with HEAD requests, which are sent concurrently (within the per host limits) rather
+     * than one after the other, and whatever the server says is kept on the file for when it's downloaded.
+     *
+     * @return the total size in bytes of the files needing downloading
+     */
     public int totalSize() {
-        int size = 0;
+        final AtomicLong size = new AtomicLong(0);
+
+        Result result;
         synchronized (this) {
+            result = new Result(null, this.size(), null);
             for (Downloadable dl : this) {
-                if (dl.needToDownload()) {
-                    size += dl.getFilesize();
-                }
+                result.submitCheck(new Task(dl, result) {
+                    @Override
+                    protected State execute() {
+                        if (this.dl.needToDownload()) {
+                            size.addAndGet(Math.max(0, this.dl.getFilesize()));
+                        }
+
+                        return State.SKIPPED;
+                    }
+                });
             }
         }
-        return size;
+
+        result.await();
+
+        return (int) Math.min(Integer.MAX_VALUE, size.get());
     }
 
     public DownloadPool downsize() {
         final DownloadPool pool = new DownloadPool(this.wait);
 
-        ExecutorService executor = Utils.generateDownloadExecutor();
+        Result result;
         synchronized (this) {
+            result = new Result(null, this.size(), null);
             for (final Downloadable dl : this) {
-                executor.submit(new Runnable() {
+                result.submitCheck(new Task(dl, result) {
                     @Override
-                    public void run() {
-                        if (dl.needToDownload()) {
+                    protected State execute() {
+                        if (this.dl.needToDownload()) {
                             synchronized (pool) {
-                                pool.add(dl);
+                                pool.add(this.dl);
                             }
                         }
+
+                        return State.SKIPPED;
                     }
                 });
             }
         }
 
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-        }
+        result.await();
 
         return pool;
     }
@@ -115,47 +174,193 @@ public final class DownloadPool extends LinkedList<Downloadable> {
         return false;
     }
 
-    private final class Installer implements Runnable {
-        private final Downloadable dl;
+    public enum State {
+        PENDING, DOWNLOADED, SKIPPED, FAILED, CANCELLED
+    }
+
+    /**
+     * Told as each file in a pool finishes, from the thread which finished it.
+     */
+    public interface Listener {
+        void finished(Downloadable dl, State state);
+    }
+
+    /**
+     * Handle to a set of downloads running on the {@link DownloadScheduler}, holding the outcome of each file.
+     */
+    public static final class Result {
         private final InstanceInstaller installer;
+        private final CountDownLatch latch;
+        private final Listener listener;
+        private final Map<Downloadable, State> states = new ConcurrentHashMap<>();
+        private final Map<Downloadable, Throwable> failures = new ConcurrentHashMap<>();
+        private volatile boolean cancelled = false;
 
-        private Installer(Downloadable dl, InstanceInstaller installer) {
-            this.dl = dl;
+        private Result(InstanceInstaller installer, int count, Listener listener) {
             this.installer = installer;
+            this.latch = new CountDownLatch(count);
+            this.listener = listener;
         }
 
-        @Override
-        public void run() {
+        private void submit(Task task) {
+            this.states.put(task.dl, State.PENDING);
+            DownloadScheduler.submit(task, task.dl.getHost(), task.dl.getPriority());
+        }
+
+        /**
+         * Submits a task checking a file rather than downloading it, which only counts towards the per host limits if
+         * the check needs to ask the server about the file.
+         */
+        private void submitCheck(Task task) {
+            this.states.put(task.dl, State.PENDING);
+            DownloadScheduler.submit(task, task.dl.needsProbe() ? task.dl.getHost() : null, task.dl.getPriority());
+        }
+
+        private void finish(Downloadable dl, State state, Throwable t) {
+            this.states.put(dl, state);
+            if (t != null) {
+                this.failures.put(dl, t);
+            }
+
+            // Tell the listener before counting down, so everything it does is started once the pool has finished
+            if (this.listener != null) {
+                try {
+                    this.listener.finished(dl, state);
+                } catch (Exception e) {
+                    LogManager.logStackTrace("Error handling the download of " + (dl.to == null ? dl.URL : dl.to
+                            .getFileName()), e);
+                }
+            }
+            this.latch.countDown();
+        }
+
+        private boolean shouldStop() {
+            return this.cancelled || (this.installer != null && this.installer.isCancelled());
+        }
+
+        /**
+         * Blocks until every download has finished or been cancelled, cancelling the remaining downloads if the install
+         * they're for is cancelled in the meantime.
+         *
+         * @return true if all the downloads finished without failing or being cancelled
+         */
+        public boolean await() {
             try {
-                if (this.dl.needToDownload()) {
-                    installer.fireTask(LanguageManager.localize("common.downloading") + " " + (this.dl.filename ==
-                            null ? this.dl.to.getFileName() : this.dl.filename));
-                    this.dl.download();
-                } else {
-                    this.dl.copy();
+                while (!this.latch.await(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (this.shouldStop()) {
+                        this.cancel();
+                    }
                 }
-            } catch (Exception e) {
-                LogManager.logStackTrace(e);
+            } catch (InterruptedException e) {
+                this.cancel();
+                Thread.currentThread().interrupt();
+                return false;
             }
+
+            return this.isSuccessful();
+        }
+
+        /**
+         * Cancels all the downloads which haven't started yet. Downloads which are already running are left to finish.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        public boolean isDone() {
+            return this.latch.getCount() == 0;
+        }
+
+        public boolean isSuccessful() {
+            if (!this.isDone()) {
+                return false;
+            }
+
+            for (State state : this.states.values()) {
+                if (state != State.DOWNLOADED && state != State.SKIPPED) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        public State getState(Downloadable dl) {
+            return this.states.get(dl);
+        }
+
+        public Map<Downloadable, Throwable> getFailures() {
+            return new HashMap<>(this.failures);
         }
     }
 
-    private final class Downloader implements Runnable {
-        private final Downloadable dl;
+    private abstract static class Task implements Runnable {
+        protected final Downloadable dl;
+        private final Result result;
 
-        private Downloader(Downloadable dl) {
+        private Task(Downloadable dl, Result result) {
             this.dl = dl;
+            this.result = result;
         }
 
+        protected abstract State execute() throws Exception;
+
         @Override
-        public void run() {
+        public final void run() {
+            if (this.result.shouldStop()) {
+                this.result.finish(this.dl, State.CANCELLED, null);
+                return;
+            }
+
             try {
-                if (this.dl.needToDownload()) {
-                    this.dl.download();
-                }
+                this.result.finish(this.dl, this.execute(), null);
             } catch (Exception e) {
-                LogManager.logStackTrace("Error trying to download " + this.dl.to.getFileName(), e);
+                LogManager.logStackTrace("Error trying to download " + (this.dl.to == null ? this.dl.URL : this.dl
+                        .to.getFileName()), e);
+                this.result.finish(this.dl, State.FAILED, e);
+            }
+        }
+    }
+
+    private static final class Installer extends Task {
+        private final InstanceInstaller installer;
+
+        private Installer(Downloadable dl, InstanceInstaller installer, Result result) {
+            super(dl, result);
+            this.installer = installer;
+        }
+
+        @Override
+        protected State execute() throws Exception {
+            if (this.dl.needToDownload()) {
+                installer.fireTask(LanguageManager.localize("common.downloading") + " " + (this.dl.filename == null ?
+                        this.dl.to.getFileName() : this.dl.filename));
+                this.dl.download();
+                return State.DOWNLOADED;
+            } else {
+                this.dl.copy();
+                return State.SKIPPED;
+            }
+        }
+    }
+
+    private static final class Downloader extends Task {
+        private Downloader(Downloadable dl, Result result) {
+            super(dl, result);
+        }
+
+        @Override
+        protected State execute() throws Exception {
+            if (this.dl.needToDownload()) {
+                this.dl.download();
+                return State.DOWNLOADED;
             }
+
+            return State.SKIPPED;
         }
     }
-}
\ No newline at end of file
+}
@@ -17,13 +17,16 @@
  */
 package com.atlauncher.collection;
 
+import com.atlauncher.data.Downloadable;
 import com.atlauncher.data.json.DecompType;
 import com.atlauncher.data.json.DownloadType;
 import com.atlauncher.data.json.Mod;
 import com.atlauncher.data.json.ModType;
 import com.atlauncher.workers.InstanceInstaller;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 public final class ModList extends LinkedList<Mod> {
     public boolean hasDependency(Mod mod) {
@@ -217,15 +220,22 @@ public final class ModList extends LinkedList<Mod> {
         return null;
     }
 
-    public DownloadPool downloadPool(InstanceInstaller installer) {
-        DownloadPool pool = new DownloadPool();
+    /**
+     * Gets the downloads of the mods in this list which come from our servers, along with the mod each is for. Mods
+     * which a server install gets from their own server url are left out, as they're downloaded by the mod itself.
+     *
+     * @param installer the install the mods are being downloaded for
+     * @return the downloads, in the same order as the mods
+     */
+    public Map<Downloadable, Mod> downloadables(InstanceInstaller installer) {
+        Map<Downloadable, Mod> downloadables = new LinkedHashMap<>();
 
         for (Mod mod : this) {
-            if (mod.download == DownloadType.SERVER) {
-                pool.add(mod.generateDownloadable(installer));
+            if (mod.download == DownloadType.SERVER && !(installer.server && mod.serverUrl != null)) {
+                downloadables.put(mod.generateDownloadable(installer), mod);
             }
         }
 
-        return pool;
+        return downloadables;
     }
 }
\ No newline at end of file
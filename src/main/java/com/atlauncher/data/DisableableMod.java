@@ -20,18 +20,14 @@ package com.atlauncher.data;
 import com.atlauncher.FileSystem;
 import com.atlauncher.data.json.ModType;
 import com.atlauncher.managers.LogManager;
+import com.atlauncher.utils.CompressionUtils;
 import com.atlauncher.utils.FileUtils;
 
 import java.awt.Color;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
 
 public class DisableableMod implements Serializable {
     private static final long serialVersionUID = 8429405767313518704L;
@@ -110,25 +106,7 @@ public class DisableableMod implements Serializable {
                     Path outputTmpFile = FileSystem.TMP.resolve(instance.getSafeName() + "-minecraft.jar");
                     if (FileUtils.hasMetaInf(inputFile)) {
                         try {
-                            JarInputStream input = new JarInputStream(new FileInputStream(inputFile.toFile()));
-                            JarOutputStream output = new JarOutputStream(new FileOutputStream(outputTmpFile.toFile()));
-                            JarEntry entry;
-
-                            while ((entry = input.getNextJarEntry()) != null) {
-                                if (entry.getName().contains("META-INF")) {
-                                    continue;
-                                }
-                                output.putNextEntry(entry);
-                                byte buffer[] = new byte[1024];
-                                int amo;
-                                while ((amo = input.read(buffer, 0, 1024)) != -1) {
-                                    output.write(buffer, 0, amo);
-                                }
-                                output.closeEntry();
-                            }
-
-                            input.close();
-                            output.close();
+                            CompressionUtils.stripMetaInf(inputFile, outputTmpFile);
 
                             FileUtils.delete(inputFile);
                             FileUtils.moveFile(outputTmpFile, inputFile);
@@ -23,28 +23,55 @@ import com.atlauncher.Gsons;
 import com.atlauncher.Network;
 import com.atlauncher.managers.LogManager;
 import com.atlauncher.managers.ServerManager;
+import com.atlauncher.thread.DownloadScheduler;
 import com.atlauncher.utils.FileUtils;
 import com.atlauncher.utils.Hashing;
+import com.atlauncher.utils.MetadataCache;
+import com.atlauncher.utils.RetryPolicy;
 import com.atlauncher.utils.Utils;
+import com.atlauncher.utils.VerificationLedger;
 import com.atlauncher.workers.InstanceInstaller;
 import com.squareup.okhttp.CacheControl;
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Callback;
 import com.squareup.okhttp.Request;
 import com.squareup.okhttp.Response;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class Downloadable {
-    public static final int MAX_ATTEMPTS = 3;
+    public static final int MAX_ATTEMPTS = RetryPolicy.DOWNLOAD.getMaxAttempts();
     public static final CacheControl CACHE_CONTROL = new CacheControl.Builder().noStore().noCache().maxAge(0,
             TimeUnit.MILLISECONDS).build();
+    public static final long SEGMENT_THRESHOLD = Long.valueOf(System.getProperty("com.atlauncher.data" +
+            ".Downloadable.segmentThreshold", "16777216"));
+    public static final int SEGMENTS = Integer.valueOf(System.getProperty("com.atlauncher.data.Downloadable" +
+            ".segments", "4"));
+    /**
+     * How long to wait for a server which hasn't been measured yet before sending a hedged request to the next best
+     * server. Once measured, the server's 95th percentile time to first byte is used instead.
+     */
+    public static final long HEDGE_DELAY = Long.valueOf(System.getProperty("com.atlauncher.data.Downloadable" +
+            ".hedgeDelay", "1000"));
 
     public final String URL;
     public final Path to;
@@ -53,13 +80,21 @@ public final class Downloadable {
     public final boolean copy;
     public final String filename;
     private final InstanceInstaller installer;
-    private final List<Server> servers = ServerManager.getServers();
+    private final List<Server> triedServers = new LinkedList<>();
     public int size;
     public boolean checkForNewness = false;
+    public boolean resumable = false;
     private String url;
     private String hash;
+    private String validator;
+    private boolean segmented = true;
+    private boolean stored = false;
+    private DownloadScheduler.Priority priority = DownloadScheduler.Priority.BULK;
+    private MetadataCache.Entry cached;
+    private Hashing.HashCode streamedHash;
     private Server server;
     private Response response;
+    private Response probed;
 
     public Downloadable(String url, boolean atlauncher) {
         this(url, null, null, null, null, -1, atlauncher, false, null);
@@ -91,7 +126,8 @@ public final class Downloadable {
         this.filename = filename;
 
         if (this.atlauncher) {
-            this.url = ServerManager.getFileURL(url);
+            this.server = ServerManager.getBestServer();
+            this.url = this.server.getFileURL(url);
         } else {
             this.url = url;
         }
@@ -104,7 +140,7 @@ public final class Downloadable {
 
     public int code() {
         try {
-            this.execute();
+            this.executeHedged();
             return this.response.code();
         } catch (Exception e) {
             LogManager.logStackTrace(e);
@@ -119,7 +155,11 @@ public final class Downloadable {
             }
         }
 
-        this.execute();
+        if (this.cached != null) {
+            return Gsons.DEFAULT.fromJson(this.readBody(), tClass);
+        }
+
+        this.executeHedged();
         return Gsons.DEFAULT.fromJson(this.response.body().charStream(), tClass);
     }
 
@@ -130,7 +170,11 @@ public final class Downloadable {
             }
         }
 
-        this.execute();
+        if (this.cached != null) {
+            return Gsons.DEFAULT.fromJson(this.readBody(), type);
+        }
+
+        this.executeHedged();
         return Gsons.DEFAULT.fromJson(this.response.body().charStream(), type);
     }
 
@@ -142,11 +186,116 @@ public final class Downloadable {
         this.checkForNewness = true;
     }
 
+    /**
+     * Marks this file as one whose body should be cached, so later requests for it only download it again if it's
+     * changed since. Only meant for small files read with {@link #getTextBody()} or fromJson.
+     */
+    public void conditional() {
+        this.cached = MetadataCache.get(this.URL);
+        if (this.cached == null) {
+            // Nothing cached yet, but the response should still be cached for next time
+            this.cached = MetadataCache.EMPTY;
+        }
+    }
+
+    /**
+     * Marks this file as one the install can't continue without, so it's downloaded ahead of bulk files.
+     */
+    public void critical() {
+        this.priority = DownloadScheduler.Priority.CRITICAL;
+    }
+
+    /**
+     * Marks this file as one which will be added to the {@link com.atlauncher.utils.ContentStore} once downloaded, so
+     * when it's checked by MD5 its SHA-1 is worked out in the same read rather than reading it all in again later.
+     */
+    public void stored() {
+        this.stored = true;
+    }
+
+    public DownloadScheduler.Priority getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Gets the host this file will be downloaded from.
+     *
+     * @return the host, or null if the url couldn't be parsed
+     */
+    public String getHost() {
+        try {
+            return new URI(this.url).getHost();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Makes this download resumable, so that if the transfer fails part way through, the next attempt will only
+     * request the bytes it doesn't already have instead of starting again from the beginning.
+     */
+    public void resumable() {
+        this.resumable = true;
+    }
+
+    /**
+     * Sends a HEAD request for this file, if one hasn't been sent already, so the size, hash and validator the server
+     * has for it can be read without downloading it. The response is kept so nothing needs asking twice, and so a
+     * segmented transfer doesn't need to send its own HEAD request.
+     *
+     * @return true if the server responded successfully
+     */
+    public boolean probe() {
+        if (this.probed != null) {
+            return this.probed.isSuccessful();
+        }
+
+        try {
+            LogManager.debug("Probing " + this.url, 3);
+
+            Response head = this.call(this.newRequest().head());
+            head.body().close();
+            this.probed = head;
+
+            if (!head.isSuccessful()) {
+                return false;
+            }
+
+            String length = head.header("Content-Length");
+            if (this.size == -1 && length != null) {
+                this.size = Math.max(0, Integer.parseInt(length));
+            }
+
+            return true;
+        } catch (Exception e) {
+            LogManager.logStackTrace("Error probing " + this.url, e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks if the size or hash of this file still need asking the server for.
+     *
+     * @return true if {@link #probe()} would send a request
+     */
+    public boolean needsProbe() {
+        return this.probed == null && (this.size == -1 || this.hash == null || this.hash.isEmpty());
+    }
+
     private String getHashFromURL() throws IOException {
-        this.execute();
-        String etag = this.response.header("ETag");
+        Response response;
+        if (this.probe()) {
+            response = this.probed;
+        } else {
+            // Some servers don't answer HEAD requests properly, so fall back to asking for the whole file
+            this.execute();
+            response = this.response;
+            response.body().close();
+        }
+
+        String etag = response.header("ETag");
         if (etag == null) {
-            etag = this.response.header(Constants.LAUNCHER_NAME + "-MD5");
+            etag = response.header(Constants.LAUNCHER_NAME + "-MD5");
         }
 
         if (etag == null) {
@@ -175,15 +324,10 @@ public final class Downloadable {
 
     public int getFilesize() {
         try {
-            if (this.size == -1) {
+            if (this.size == -1 && !this.probe()) {
                 this.execute();
-                int size = Integer.parseInt(response.header("Content-Length"));
-
-                if (size == -1) {
-                    this.size = 0;
-                } else {
-                    this.size = size;
-                }
+                this.response.body().close();
+                this.size = Math.max(0, Integer.parseInt(this.response.header("Content-Length")));
             }
         } catch (Exception ignored) {
             return -1;
@@ -204,77 +348,562 @@ public final class Downloadable {
                 }
             }
 
-            if (this.md5()) {
-                return !Hashing.md5(this.to).equals(Hashing.HashCode.fromString(this.getHash()));
-            } else {
-                return !Hashing.sha1(this.to).equals(Hashing.HashCode.fromString(this.getHash()));
-            }
+            return !this.hashOf(this.to).equals(Hashing.HashCode.fromString(this.getHash()));
         }
 
         return true;
     }
 
     private boolean getNextServer() {
-        for (Server server : this.servers) {
-            if (this.server != server) {
-                LogManager.warn("Server " + this.server.getName() + " Not Available");
-                this.servers.remove(this.server);
-                this.server = server;
-                return true;
+        if (this.server == null) {
+            return false;
+        }
+
+        this.server.recordFailure();
+        this.triedServers.add(this.server);
+
+        Server next = ServerManager.getNextServer(this.triedServers);
+        if (next == null) {
+            return false;
+        }
+
+        LogManager.warn("Server " + this.server.getName() + " Not Available");
+        this.server = next;
+        this.probed = null;
+        return true;
+    }
+
+    private Request.Builder newRequest() {
+        if (this.atlauncher && this.server != null && !this.server.allowRequest()) {
+            // The server has failed too many times recently, so give it a rest and use another if there is one
+            List<Server> tried = new LinkedList<>(this.triedServers);
+            tried.add(this.server);
+
+            Server next = ServerManager.getNextServer(tried);
+            if (next != null && next.isAvailable()) {
+                LogManager.debug("Server " + this.server.getName() + " is resting, using " + next.getName() + " " +
+                        "instead", 3);
+                this.server = next;
+                this.url = next.getFileURL(this.URL);
+                this.probed = null;
+            }
+        }
+
+        return this.newRequest(this.url);
+    }
+
+    private Request.Builder newRequest(String url) {
+        Request.Builder builder = new Request.Builder().url(url).addHeader("User-Agent", Network.USER_AGENT)
+                .addHeader("Expires", "0").cacheControl(CACHE_CONTROL);
+
+        if (this.installer != null) {
+            // Lets the progress client count the bytes towards the install and apply its bandwidth limit
+            builder.tag(this.installer);
+        }
+
+        if (this.cached != null) {
+            if (this.cached.getETag() != null) {
+                builder.header("If-None-Match", this.cached.getETag());
+            }
+
+            if (this.cached.getLastModified() != null) {
+                builder.header("If-Modified-Since", this.cached.getLastModified());
+            }
+        }
+
+        return builder;
+    }
+
+    private boolean isSuccessful(Response response) {
+        return response.isSuccessful() || this.isNotModified(response);
+    }
+
+    private boolean isNotModified(Response response) {
+        return response.code() == 304 && this.cached != null && this.cached.getBody() != null;
+    }
+
+    /**
+     * Reads the body of a request for a small file, using the cached body if the server says it hasn't changed and
+     * caching it for next time if it has.
+     */
+    private String readBody() throws IOException {
+        this.executeHedged();
+
+        if (this.isNotModified(this.response)) {
+            this.response.body().close();
+            LogManager.debug(this.URL + " hasn't changed, using cached copy", 3);
+            return this.cached.getBody();
+        }
+
+        String body = this.response.body().string();
+        if (this.cached != null) {
+            MetadataCache.put(this.URL, this.response.header("ETag"), this.response.header("Last-Modified"), body);
+        }
+
+        return body;
+    }
+
+    private Call newCall(Request.Builder builder) {
+        return (this.installer != null ? Network.PROGRESS_CLIENT : Network.CLIENT).newCall(builder.build());
+    }
+
+    private Response call(Request.Builder builder) throws IOException {
+        long start = System.currentTimeMillis();
+
+        try {
+            Response response = this.newCall(builder).execute();
+            if (this.server != null) {
+                record(this.server, response, start);
+            }
+            return response;
+        } catch (IOException e) {
+            if (this.server != null) {
+                this.server.recordFailure();
             }
+            throw e;
         }
+    }
+
+    /**
+     * Records a response against the server it came from. Server errors count as failures, so a server which is up but
+     * can't serve files is rested the same as one which is down.
+     */
+    private static void record(Server server, Response response, long start) {
+        if (response.code() >= 500) {
+            server.recordFailure();
+        } else {
+            server.recordResponse(System.currentTimeMillis() - start);
+        }
+    }
 
-        return false;
+    private void recordTransfer(long bytes, long start) {
+        if (this.server != null) {
+            this.server.recordTransfer(bytes, System.currentTimeMillis() - start);
+        }
     }
 
     private void execute() throws IOException {
         LogManager.debug("Opening connection to " + this.url, 3);
 
-        Request.Builder builder = new Request.Builder().url(this.url).addHeader("User-Agent", Network.USER_AGENT)
-                .addHeader("Expires", "0").cacheControl(CACHE_CONTROL);
-
-        this.response = (this.installer != null ? Network.PROGRESS_CLIENT : Network.CLIENT).newCall(builder.build())
-                .execute();
+        this.response = this.call(this.newRequest());
 
-        if (!this.response.isSuccessful()) {
+        if (!this.isSuccessful(this.response)) {
             throw new IOException(this.url + " request wasn't successful: " + this.response);
         }
     }
 
-    private void downloadDirect() {
+    /**
+     * Executes a request for a small file, such as a JSON file or the ping endpoint, where how quickly the server
+     * responds matters more than how fast it transfers. If the best server hasn't responded within its usual time to
+     * first byte, the same request is sent to the next best server and whichever responds successfully first is used.
+     * Requests are only hedged when the server is left on Auto, so a server the user picked is the only one used.
+     */
+    private void executeHedged() throws IOException {
+        Server runnerUp = null;
+        if (this.atlauncher && this.to == null && this.server != null && ServerManager.isAuto()) {
+            List<Server> tried = new LinkedList<>(this.triedServers);
+            tried.add(this.server);
+            runnerUp = ServerManager.getNextServer(tried);
+        }
+
+        if (runnerUp == null) {
+            this.execute();
+            return;
+        }
+
+        LogManager.debug("Opening connection to " + this.url, 3);
+
+        Hedge hedge = new Hedge();
+        try {
+            hedge.send(this.server, this.url, false);
+
+            Hedge.Attempt attempt = hedge.poll(this.server.getTTFB95(HEDGE_DELAY));
+            if ((attempt == null || !attempt.isSuccessful()) && runnerUp.allowRequest()) {
+                LogManager.debug("No response from " + this.server.getName() + " yet, also trying " + runnerUp
+                        .getName(), 3);
+                hedge.send(runnerUp, runnerUp.getFileURL(this.URL), true);
+            }
+
+            IOException failure = null;
+            while (attempt != null || hedge.isPending()) {
+                if (attempt == null) {
+                    attempt = hedge.poll(Long.MAX_VALUE);
+                }
+
+                if (attempt.isSuccessful()) {
+                    this.server = attempt.server;
+                    this.url = attempt.server.getFileURL(this.URL);
+                    this.response = hedge.finish(attempt);
+                    return;
+                }
+
+                failure = attempt.failure != null ? attempt.failure : new IOException(attempt.server.getFileURL(this
+                        .URL) + " request wasn't successful: " + attempt.response);
+                attempt.close();
+                attempt = null;
+            }
+
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while requesting " + this.url, e);
+        } finally {
+            hedge.finish(null);
+        }
+    }
+
+    private Hashing.DigestingChannel digestingChannel() throws IOException, NoSuchAlgorithmException {
+        ReadableByteChannel rbc = Channels.newChannel(this.response.body().byteStream());
+        return this.md5() ? Hashing.md5Channel(rbc) : Hashing.sha1Channel(rbc);
+    }
+
+    private void downloadDirect() throws IOException {
         try (FileChannel fc = FileChannel.open(this.to, Utils.WRITE);
-             ReadableByteChannel rbc = Channels.newChannel(this.response.body().byteStream())) {
-            fc.transferFrom(rbc, 0, Long.MAX_VALUE);
-        } catch (Exception e) {
-            LogManager.logStackTrace(e);
+             Hashing.DigestingChannel rbc = this.digestingChannel()) {
+            long start = System.currentTimeMillis();
+            long read = fc.transferFrom(rbc, 0, Long.MAX_VALUE);
+            this.recordTransfer(read, start);
+            this.checkComplete(this.response, read, read);
+            this.streamedHash = rbc.hash();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Couldn't hash " + this.url, e);
         }
     }
 
-    private boolean downloadRec(int attempt) {
-        if (attempt <= MAX_ATTEMPTS) {
-            Hashing.HashCode fileHash = Hashing.HashCode.EMPTY;
-            if (Files.exists(this.to)) {
-                if (this.md5()) {
-                    fileHash = Hashing.md5(this.to);
+    /**
+     * Checks a transfer received the whole of the response body, going by its Content-Length or, if the server didn't
+     * send one, the size of the file from its manifest.
+     *
+     * @param response the response the bytes were read from
+     * @param received the number of bytes read from the response
+     * @param fileSize the size of the file once the bytes were written
+     * @throws IOException if the transfer stopped early
+     */
+    private void checkComplete(Response response, long received, long fileSize) throws IOException {
+        long length = -1;
+        try {
+            length = Long.parseLong(response.header("Content-Length"));
+        } catch (NumberFormatException ignored) {
+        }
+
+        if (length != -1) {
+            if (received != length) {
+                throw new IOException(this.url + " ended after " + received + " of " + length + " bytes");
+            }
+        } else if (this.size > 0 && fileSize != this.size) {
+            throw new IOException(this.url + " ended with " + fileSize + " of " + this.size + " bytes");
+        }
+    }
+
+    private Path getPartFile() {
+        return this.to.resolveSibling(this.to.getFileName().toString() + ".part");
+    }
+
+    /**
+     * Downloads the file into a .part file next to it, picking up from the end of any .part file left over from a
+     * previous attempt by sending a Range request. The If-Range header makes sure the server sends the whole file
+     * instead if it has changed since the bytes we have were downloaded, and if the server doesn't support ranges at
+     * all we just get the whole file back. Once the transfer completes the .part file is moved into place.
+     */
+    private void downloadResumable() throws IOException {
+        Path part = this.getPartFile();
+
+        try {
+            long offset = Files.exists(part) ? Files.size(part) : 0;
+
+            if (offset > 0 && this.validator == null) {
+                // Without an ETag or Last-Modified from the original response we can't be sure the bytes we have are
+                // from the same version of the file, so start again
+                FileUtils.delete(part);
+                offset = 0;
+            }
+
+            Request.Builder builder = this.newRequest();
+            if (offset > 0) {
+                LogManager.debug("Resuming download of " + this.url + " from byte " + offset, 3);
+                builder.header("Range", "bytes=" + offset + "-").header("If-Range", this.validator);
+            } else {
+                LogManager.debug("Opening connection to " + this.url, 3);
+            }
+
+            this.response = this.call(builder);
+
+            if (this.response.code() == 416) {
+                // The server won't serve the range we asked for, so throw away what we have and get the whole file
+                LogManager.debug("Server rejected range request for " + this.url + ", downloading the whole file", 3);
+                FileUtils.delete(part);
+                offset = 0;
+                this.response = this.call(this.newRequest());
+            }
+
+            if (!this.response.isSuccessful()) {
+                throw new IOException(this.url + " request wasn't successful: " + this.response);
+            }
+
+            if (this.response.code() != 206) {
+                // A full response either means the server doesn't do ranges or the file changed, both mean start over
+                offset = 0;
+            }
+
+            this.validator = this.getValidator(this.response);
+
+            Hashing.HashCode hash;
+            try (FileChannel fc = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 Hashing.DigestingChannel rbc = this.digestingChannel()) {
+                if (offset == 0) {
+                    fc.truncate(0);
                 } else {
-                    fileHash = Hashing.sha1(this.to);
+                    // Only the bytes we already had need reading back to finish off the hash
+                    rbc.update(part);
+                }
+
+                long start = System.currentTimeMillis();
+                long position = offset;
+                long read;
+                while ((read = fc.transferFrom(rbc, position, Long.MAX_VALUE)) > 0) {
+                    position += read;
                 }
+                this.recordTransfer(position - offset, start);
+
+                // Leaves the .part file where it is for the next attempt to carry on from
+                this.checkComplete(this.response, position - offset, position);
+
+                hash = rbc.hash();
             }
-            
-            if (App.skipHashChecking || fileHash.equals(Hashing.HashCode.fromString(this.getHash()))) {
-                return true;
+
+            if (!FileUtils.moveFile(part, this.to, true)) {
+                throw new IOException("Couldn't move " + part + " to " + this.to);
             }
+            this.streamedHash = hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Couldn't hash " + this.url, e);
+        }
+    }
 
-            if (Files.exists(this.to)) {
-                FileUtils.delete(this.to);
+    private String getValidator(Response response) {
+        String etag = response.header("ETag");
+
+        // Weak ETags can't be used with If-Range
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+
+        return response.header("Last-Modified");
+    }
+
+    /**
+     * Downloads the file in several byte ranges at once, each written straight into its place in a preallocated .part
+     * file, which is then moved into place once all the ranges are done. This is only done for resumable files bigger
+     * than {@link #SEGMENT_THRESHOLD} on servers which say they support ranges. Each segment past the first takes a
+     * connection from the {@link DownloadScheduler}, so there are only as many segments as it has connections free.
+     *
+     * @return true if the file was downloaded in segments, false if it wasn't possible and another way should be used
+     */
+    private boolean downloadSegmented() {
+        Path part = this.getPartFile();
+        String host = null;
+        int reserved = 0;
+
+        try {
+            if (!this.probe() || !"bytes".equalsIgnoreCase(this.probed.header("Accept-Ranges"))) {
+                return false;
+            }
+
+            Response head = this.probed;
+
+            String length = head.header("Content-Length");
+            long size = length == null ? -1 : Long.parseLong(length);
+            if (size < SEGMENT_THRESHOLD || SEGMENTS < 2) {
+                return false;
+            }
+
+            if (this.size == -1) {
+                this.size = (int) size;
+            }
+
+            String validator = this.getValidator(head);
+
+            // Every segment comes from the server the file was probed on, rather than each asking the breaker again
+            Server server = this.server;
+            String url = this.url;
+
+            // This download already has a connection to the host, so only the other segments need one reserving
+            host = this.getHost();
+            reserved = DownloadScheduler.reserve(host, SEGMENTS - 1);
+            int segments = reserved + 1;
+            if (segments < 2) {
+                return false;
             }
 
+            LogManager.debug("Downloading " + url + " in " + segments + " segments", 3);
+
+            if (Files.exists(part)) {
+                FileUtils.delete(part);
+            }
+
+            long segmentSize = (size + segments - 1) / segments;
+            List<Call> calls = new LinkedList<>();
+            AtomicBoolean failed = new AtomicBoolean(false);
+            CountDownLatch latch = new CountDownLatch(segments);
+
+            try (FileChannel fc = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                // Preallocate the file so every segment can write straight into its place
+                fc.write(ByteBuffer.allocate(1), size - 1);
+
+                for (int i = 0; i < segments; i++) {
+                    long start = i * segmentSize;
+                    long end = Math.min(size, start + segmentSize) - 1;
+
+                    Request.Builder builder = this.newRequest(url).header("Range", "bytes=" + start + "-" + end);
+                    if (validator != null) {
+                        builder.header("If-Range", validator);
+                    }
+
+                    Call call = this.newCall(builder);
+                    calls.add(call);
+                    call.enqueue(new Segment(call, server, url, fc, start, end, failed, latch));
+                }
+
+                while (!latch.await(250, TimeUnit.MILLISECONDS)) {
+                    if (failed.get() || (this.installer != null && this.installer.isCancelled())) {
+                        failed.set(true);
+                        for (Call call : calls) {
+                            call.cancel();
+                        }
+                    }
+                }
+            }
+
+            if (failed.get()) {
+                FileUtils.delete(part);
+                return false;
+            }
+
+            if (!FileUtils.moveFile(part, this.to, true)) {
+                throw new IOException("Couldn't move " + part + " to " + this.to);
+            }
+            return true;
+        } catch (Exception e) {
+            LogManager.logStackTrace("Error downloading " + this.url + " in segments", e);
+            if (Files.exists(part)) {
+                FileUtils.delete(part);
+            }
+            return false;
+        } finally {
+            DownloadScheduler.release(host, reserved);
+        }
+    }
+
+    private void transfer() throws IOException {
+        if (this.resumable) {
+            if (this.segmented) {
+                // Only try segments once, if they fail then fall back to a normal resumable download
+                this.segmented = false;
+                if (this.downloadSegmented()) {
+                    return;
+                }
+            }
+
+            this.downloadResumable();
+        } else {
+            this.execute();
             this.downloadDirect();
         }
+    }
+
+    private Hashing.HashCode hashOf(Path file) {
+        if (!this.md5()) {
+            return VerificationLedger.sha1(file);
+        }
+
+        if (this.stored) {
+            return VerificationLedger.digest(file, VerificationLedger.MD5, VerificationLedger.SHA1)[0];
+        }
+
+        return VerificationLedger.md5(file);
+    }
+
+    private boolean downloadRec(int attempt) {
+        Hashing.HashCode fileHash = Hashing.HashCode.EMPTY;
+        if (Files.exists(this.to)) {
+            if (this.streamedHash != null) {
+                // Hashed as it was downloaded, so no need to read it all back in again
+                fileHash = this.streamedHash;
+                VerificationLedger.record(this.to, this.md5() ? VerificationLedger.MD5 : VerificationLedger.SHA1,
+                        fileHash);
+            } else {
+                fileHash = this.hashOf(this.to);
+            }
+        }
+
+        if (App.skipHashChecking || fileHash.equals(Hashing.HashCode.fromString(this.getHash()))) {
+            return true;
+        }
+
+        // Checked after the hash so the bytes from the last attempt still get verified
+        if (attempt > RetryPolicy.DOWNLOAD.getMaxAttempts()) {
+            return false;
+        }
+
+        if (Files.exists(this.to)) {
+            FileUtils.delete(this.to);
+        }
+
+        this.streamedHash = null;
+
+        if (this.installer != null && this.installer.isCancelled()) {
+            return false;
+        }
+
+        if (attempt > 1 && !RetryPolicy.DOWNLOAD.backoff(attempt - 1)) {
+            return false;
+        }
+
+        try {
+            this.transfer();
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error downloading " + this.url + (this.resumable ? ", will resume from where " +
+                    "it stopped" : ""), e);
+        }
 
         return this.downloadRec(attempt + 1);
     }
 
+    /**
+     * Downloads a file which has no hash to check it against, trying again (and picking up where it stopped for
+     * resumable files) until a transfer gets the whole file or the retries run out.
+     *
+     * @throws IOException if the file couldn't be downloaded
+     */
+    private void downloadUnverified() throws IOException {
+        IOException failure = null;
+        for (int attempt = 1; attempt <= RetryPolicy.DOWNLOAD.getMaxAttempts(); attempt++) {
+            if (this.installer != null && this.installer.isCancelled()) {
+                throw new IOException("Install cancelled while downloading " + this.to.getFileName());
+            }
+
+            if (attempt > 1 && !RetryPolicy.DOWNLOAD.backoff(attempt - 1)) {
+                break;
+            }
+
+            if (Files.exists(this.to)) {
+                FileUtils.delete(this.to);
+            }
+
+            try {
+                this.transfer();
+                return;
+            } catch (IOException e) {
+                failure = e;
+                LogManager.logStackTrace("Error downloading " + this.url + (this.resumable ? ", will resume from " +
+                        "where it stopped" : ""), e);
+            }
+        }
+
+        throw failure != null ? failure : new IOException("Couldn't download " + this.url);
+    }
+
     public void copy() {
         if (this.copyTo != null && this.copy) {
             if (Files.exists(this.copyTo)) {
@@ -287,7 +916,11 @@ public final class Downloadable {
     }
 
     public void download() throws IOException {
-        this.execute();
+        if (this.installer != null) {
+            if (this.installer.isCancelled()) {
+                throw new IOException("Install cancelled before downloading " + this.to.getFileName());
+            }
+        }
 
         Path oldPath = null;
         if (Files.exists(this.to)) {
@@ -295,12 +928,6 @@ public final class Downloadable {
             FileUtils.moveFile(this.to, oldPath, true);
         }
 
-        if (this.installer != null) {
-            if (this.installer.isCancelled()) {
-                return;
-            }
-        }
-
         if (Files.exists(this.to) && Files.isRegularFile(this.to)) {
             FileUtils.delete(this.to);
         }
@@ -310,67 +937,300 @@ public final class Downloadable {
         }
 
         Hashing.HashCode expected = Hashing.HashCode.fromString(this.getHash());
-        if (expected.equals(Hashing.HashCode.EMPTY)) {
-            this.downloadDirect();
-        } else {
-            boolean finished = this.downloadRec(1);
-            if (!finished) {
-                if (this.atlauncher) {
-                    if (this.getNextServer()) {
-                        LogManager.warn("Error downloading " + this.to.getFileName() + " from " + this.url + ". " +
-                                "Expected hash of " + expected.toString() + " but got " + this.hash + " instead. " +
-                                "Trying another server!");
-                        this.url = this.server.getFileURL(this.URL);
-                    } else {
-                        FileUtils.copyFile(this.to, FileSystem.FAILED_DOWNLOADS);
-                        LogManager.error("Failed to download file " + this.to.getFileName() + " from all " +
-                                Constants.LAUNCHER_NAME + " servers. Copied to FailedDownloads Folder. Cancelling " +
-                                "install!");
-                        if (this.installer != null) {
-                            this.installer.cancel(true);
-                        }
-                    }
+        try {
+            if (expected.equals(Hashing.HashCode.EMPTY)) {
+                this.downloadUnverified();
+            } else {
+                this.downloadVerified(expected);
+            }
+        } finally {
+            if (oldPath != null && Files.exists(oldPath)) {
+                FileUtils.delete(oldPath);
+            }
+        }
+    }
+
+    /**
+     * Downloads a file which has a hash to check it against, moving on to the next server for files from the
+     * {@link Constants#LAUNCHER_NAME} servers when one keeps sending a file which doesn't match.
+     *
+     * @param expected the hash the file should have
+     * @throws IOException if no download of the file matched the expected hash, so the file mustn't be used
+     */
+    private void downloadVerified(Hashing.HashCode expected) throws IOException {
+        while (!this.downloadRec(1)) {
+            if (this.installer != null && this.installer.isCancelled()) {
+                throw new IOException("Install cancelled while downloading " + this.to.getFileName());
+            }
+
+            if (this.atlauncher && this.getNextServer()) {
+                LogManager.warn("Error downloading " + this.to.getFileName() + " from " + this.url + ". " +
+                        "Expected hash of " + expected.toString() + " but got " + this.hash + " instead. " +
+                        "Trying another server!");
+                this.url = this.server.getFileURL(this.URL);
+                continue;
+            }
+
+            FileUtils.copyFile(this.to, FileSystem.FAILED_DOWNLOADS);
+            if (this.atlauncher) {
+                LogManager.error("Failed to download file " + this.to.getFileName() + " from all " +
+                        Constants.LAUNCHER_NAME + " servers. Copied to FailedDownloads Folder. Cancelling " +
+                        "install!");
+            } else {
+                LogManager.error("Error downloading " + this.to.getFileName() + " from " + this.url + ". Expected" +
+                        " hash of " + expected.toString() + " but got " + this.hash + " instead. Copied to " +
+                        "FailedDownloads folder & cancelling install!");
+            }
+            if (this.installer != null) {
+                this.installer.cancel(true);
+            }
+
+            throw new IOException("Couldn't download " + this.to.getFileName() + " matching the expected hash of " +
+                    expected.toString());
+        }
+
+        if (this.copyTo != null && this.copy) {
+            // The downloaded file was already checked against the expected hash, so only the copy needs hashing
+            Hashing.HashCode fileHash2 = Hashing.HashCode.EMPTY;
+            if (Files.exists(this.copyTo)) {
+                if (this.md5()) {
+                    fileHash2 = VerificationLedger.md5(this.copyTo);
                 } else {
-                    FileUtils.copyFile(this.to, FileSystem.FAILED_DOWNLOADS);
-                    LogManager.error("Error downloading " + this.to.getFileName() + " from " + this.url + ". Expected" +
-                            " hash of " + expected.toString() + " but got " + this.hash + " instead. Copied to " +
-                            "FailedDownloads folder & cancelling install!");
-                    if (this.installer != null) {
-                        this.installer.cancel(true);
-                    }
+                    fileHash2 = VerificationLedger.sha1(this.copyTo);
                 }
-            } else if (this.copyTo != null && this.copy) {
-                Hashing.HashCode fileHash2 = Hashing.HashCode.EMPTY;
+            }
+
+            if (!fileHash2.equals(expected)) {
                 if (Files.exists(this.copyTo)) {
-                    if (this.md5()) {
-                        fileHash2 = Hashing.md5(this.to);
-                    } else {
-                        fileHash2 = Hashing.sha1(this.to);
+                    FileUtils.delete(this.copyTo);
+                }
+
+                FileUtils.createDirectory(this.copyTo.getParent());
+                FileUtils.copyFile(this.to, this.copyTo, true);
+            }
+        }
+    }
+
+    public String getTextBody() {
+        try {
+            return this.readBody();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One byte range of a segmented download. The outcome of each segment is recorded against the server it came
+     * from, the same as any other request, so the server's circuit breaker always hears back about its requests.
+     */
+    private static final class Segment implements Callback {
+        private final Call call;
+        private final Server server;
+        private final String url;
+        private final FileChannel fc;
+        private final long start;
+        private final long end;
+        private final AtomicBoolean failed;
+        private final CountDownLatch latch;
+        private final long requested = System.currentTimeMillis();
+
+        private Segment(Call call, Server server, String url, FileChannel fc, long start, long end, AtomicBoolean
+                failed, CountDownLatch latch) {
+            this.call = call;
+            this.server = server;
+            this.url = url;
+            this.fc = fc;
+            this.start = start;
+            this.end = end;
+            this.failed = failed;
+            this.latch = latch;
+        }
+
+        @Override
+        public void onFailure(Request request, IOException e) {
+            // Being cancelled because another segment failed isn't this server's fault
+            if (this.server != null && !this.call.isCanceled()) {
+                this.server.recordFailure();
+            }
+
+            if (!this.failed.getAndSet(true)) {
+                LogManager.logStackTrace("Error downloading bytes " + this.start + "-" + this.end + " of " + this
+                        .url, e);
+            }
+            this.latch.countDown();
+        }
+
+        @Override
+        public void onResponse(Response response) throws IOException {
+            if (this.server != null) {
+                record(this.server, response, this.requested);
+            }
+
+            try (InputStream is = response.body().byteStream()) {
+                // Anything other than a partial response means the file changed or the range was ignored
+                if (response.code() != 206) {
+                    throw new IOException("Expected partial content for bytes " + this.start + "-" + this.end + " of " +
+                            this.url + " but got " + response);
+                }
+
+                long transferStart = System.currentTimeMillis();
+                byte[] bits = new byte[8192];
+                long position = this.start;
+                int len;
+                while (!this.failed.get() && (len = is.read(bits)) != -1) {
+                    ByteBuffer buffer = ByteBuffer.wrap(bits, 0, len);
+                    while (buffer.hasRemaining()) {
+                        position += this.fc.write(buffer, position);
                     }
                 }
 
-                if (!fileHash2.equals(expected)) {
-                    if (Files.exists(this.copyTo)) {
-                        FileUtils.delete(this.copyTo);
+                if (this.failed.get()) {
+                    return;
+                }
+
+                if (position != this.end + 1) {
+                    throw new IOException("Segment " + this.start + "-" + this.end + " of " + this.url + " ended " +
+                            "early at " + position);
+                }
+
+                if (this.server != null) {
+                    this.server.recordTransfer(position - this.start, System.currentTimeMillis() - transferStart);
+                }
+            } catch (IOException e) {
+                if (this.server != null && response.code() == 206 && !this.call.isCanceled()) {
+                    // The server answered but the body didn't all arrive
+                    this.server.recordFailure();
+                }
+
+                if (!this.failed.getAndSet(true)) {
+                    LogManager.logStackTrace("Error downloading bytes " + this.start + "-" + this.end + " of " + this
+                            .url, e);
+                }
+            } finally {
+                this.latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * The requests sent to different servers for the same file by {@link #executeHedged()}. Responses which lose the
+     * race are closed as soon as they arrive so their connections go back to the pool.
+     */
+    private final class Hedge {
+        private final BlockingQueue<Attempt> attempts = new LinkedBlockingQueue<>();
+        private final List<Call> calls = new LinkedList<>();
+        private int pending = 0;
+        private boolean finished = false;
+
+        /**
+         * Sends the request to a server.
+         *
+         * @param server  the server to send the request to
+         * @param url     the URL of the file on the server
+         * @param allowed if the server's circuit breaker was asked to let the request through, so it's given back if
+         *                the request is cancelled
+         */
+        private void send(final Server server, String url, final boolean allowed) {
+            final long start = System.currentTimeMillis();
+            final Call call = Downloadable.this.newCall(Downloadable.this.newRequest(url));
+
+            synchronized (this) {
+                this.calls.add(call);
+                this.pending++;
+            }
+
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Request request, IOException e) {
+                    // Losing the race isn't the server's fault
+                    if (!call.isCanceled()) {
+                        server.recordFailure();
+                    } else if (allowed) {
+                        server.releaseRequest();
                     }
+                    offer(new Attempt(call, server, null, e));
+                }
 
-                    FileUtils.createDirectory(this.copyTo.getParent());
-                    FileUtils.copyFile(this.to, this.copyTo, true);
+                @Override
+                public void onResponse(Response response) throws IOException {
+                    record(server, response, start);
+                    offer(new Attempt(call, server, response, null));
                 }
+            });
+        }
+
+        private synchronized void offer(Attempt attempt) {
+            if (this.finished) {
+                attempt.close();
+            } else {
+                this.attempts.add(attempt);
             }
         }
 
-        if (oldPath != null && Files.exists(oldPath)) {
-            FileUtils.delete(oldPath);
+        private Attempt poll(long millis) throws InterruptedException {
+            Attempt attempt = this.attempts.poll(millis, TimeUnit.MILLISECONDS);
+            if (attempt != null) {
+                synchronized (this) {
+                    this.pending--;
+                }
+            }
+            return attempt;
         }
-    }
 
-    public String getTextBody() {
-        try {
-            this.execute();
-            return this.response.body().string();
-        } catch (IOException e) {
-            return null;
+        private synchronized boolean isPending() {
+            return this.pending > 0;
+        }
+
+        /**
+         * Stops waiting on any other requests, cancelling them and closing any responses which have already come in.
+         *
+         * @param winner the attempt being used, which is left open
+         * @return the response of the winning attempt
+         */
+        private synchronized Response finish(Attempt winner) {
+            if (!this.finished) {
+                this.finished = true;
+
+                for (Call call : this.calls) {
+                    if (winner == null || call != winner.call) {
+                        call.cancel();
+                    }
+                }
+
+                Attempt attempt;
+                while ((attempt = this.attempts.poll()) != null) {
+                    attempt.close();
+                }
+            }
+
+            return winner == null ? null : winner.response;
+        }
+
+        private final class Attempt {
+            private final Call call;
+            private final Server server;
+            private final Response response;
+            private final IOException failure;
+
+            private Attempt(Call call, Server server, Response response, IOException failure) {
+                this.call = call;
+                this.server = server;
+                this.response = response;
+                this.failure = failure;
+            }
+
+            private boolean isSuccessful() {
+                return this.response != null && Downloadable.this.isSuccessful(this.response);
+            }
+
+            private void close() {
+                if (this.response != null) {
+                    try {
+                        this.response.body().close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
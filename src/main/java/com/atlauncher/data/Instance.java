@@ -35,6 +35,7 @@ import com.atlauncher.utils.FileUtils;
 import com.atlauncher.utils.HTMLUtils;
 import com.atlauncher.utils.Utils;
 import com.atlauncher.utils.walker.SendOpenEyeReportsVisitor;
+import com.atlauncher.workers.InstanceVerifier;
 
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
@@ -1366,6 +1367,26 @@ public class Instance implements Cloneable {
         return installedOptionalMods;
     }
 
+    /**
+     * Checks the files of this Instance against what installing it should have put there.
+     *
+     * @return the files found to be missing, corrupt or not part of the install
+     * @see com.atlauncher.workers.InstanceVerifier
+     */
+    public InstanceVerifier.Report verify() {
+        return new InstanceVerifier(this).verify();
+    }
+
+    /**
+     * Downloads again only the files of this Instance found to be missing or corrupt by {@link #verify()}.
+     *
+     * @param report the report from verifying this Instance
+     * @return true if every missing and corrupt file was repaired
+     */
+    public boolean repair(InstanceVerifier.Report report) {
+        return new InstanceVerifier(this).repair(report);
+    }
+
     public Map<String, Object> getShareCodeData() {
         Map<String, Object> data = new HashMap<String, Object>();
         Map<String, Object> mods = new HashMap<String, Object>();
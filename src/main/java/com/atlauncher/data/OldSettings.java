@@ -30,7 +30,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
 
 import javax.swing.JDialog;
 import javax.swing.JLabel;
@@ -56,11 +56,11 @@ import com.atlauncher.managers.MinecraftVersionManager;
 import com.atlauncher.managers.PackManager;
 import com.atlauncher.managers.SettingsManager;
 import com.atlauncher.nio.JsonFile;
+import com.atlauncher.thread.DownloadScheduler;
 import com.atlauncher.utils.ATLauncherAPI;
 import com.atlauncher.utils.FileUtils;
 import com.atlauncher.utils.HTMLUtils;
 import com.atlauncher.utils.NetworkUtils;
-import com.atlauncher.utils.Utils;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -90,9 +90,7 @@ public class OldSettings {
             this.offlineMode = true;
         }
 
-        if (this.hasUpdatedFiles()) {
-            this.downloadUpdatedFiles();
-        }
+        this.downloadUpdatedFiles();
 
         if (!App.noLauncherUpdate) {
             checkForLauncherUpdate();
@@ -227,6 +225,7 @@ public class OldSettings {
     public void checkMojangStatus() {
         try {
             Downloadable dl = new Downloadable("http://status.mojang.com/check", false);
+            dl.conditional();
             String resp = dl.getTextBody();
 
             if (resp == null) {
@@ -370,6 +369,7 @@ public class OldSettings {
 
     private DownloadPool getLauncherFiles() {
         Downloadable dl = new Downloadable("launcher/json/hashes.json", true);
+        dl.conditional();
         try {
             List<DownloadableFile> files = dl.fromJson(new TypeToken<List<DownloadableFile>>() {
             }.getType());
@@ -395,15 +395,20 @@ public class OldSettings {
         }
     }
 
+    /**
+     * Downloads any of the launcher files which have changed, fetching the list of them only once.
+     */
     private void downloadUpdatedFiles() {
-        LogManager.info("Downloading launcher files");
-
         DownloadPool pool = this.getLauncherFiles();
 
-        if (pool != null) {
-            pool.downloadAll();
+        if (pool == null || !pool.any()) {
+            return;
         }
 
+        LogManager.info("Downloading launcher files");
+
+        pool.downloadAll();
+
         LogManager.info("Finished downloading launcher files");
 
         LanguageManager.loadLanguages();
@@ -420,9 +425,7 @@ public class OldSettings {
         App.TASKPOOL.execute(new Runnable() {
             @Override
             public void run() {
-                if (hasUpdatedFiles()) {
-                    downloadUpdatedFiles();
-                }
+                downloadUpdatedFiles();
                 if (!App.noLauncherUpdate) {
                     checkForLauncherUpdate();
                 }
@@ -473,9 +476,9 @@ public class OldSettings {
             java.lang.reflect.Type type = new TypeToken<List<LauncherLibrary>>() {
             }.getType();
             List<LauncherLibrary> libraries = JsonFile.of("libraries.json", type);
-            ExecutorService executor = Utils.generateDownloadExecutor();
+            final CountDownLatch latch = new CountDownLatch(libraries.size());
             for (final LauncherLibrary lib : libraries) {
-                executor.execute(new Runnable() {
+                DownloadScheduler.submit(new Runnable() {
                     @Override
                     public void run() {
                         try {
@@ -493,13 +496,13 @@ public class OldSettings {
                             }
                         } catch (Exception e) {
                             LogManager.logStackTrace("Error downloading library " + lib.getName(), e);
+                        } finally {
+                            latch.countDown();
                         }
                     }
                 });
             }
-            executor.shutdown();
-            while (!executor.isTerminated()) {
-            }
+            latch.await();
         } catch (Exception e) {
             LogManager.logStackTrace(e);
         }
@@ -541,6 +544,7 @@ public class OldSettings {
         LogManager.debug("Loading users");
 
         Downloadable download = new Downloadable("launcher/json/users.json", true);
+        download.conditional();
 
         try {
             java.lang.reflect.Type type = new TypeToken<List<PackUsers>>() {
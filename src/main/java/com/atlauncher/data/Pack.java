@@ -23,6 +23,7 @@ import com.atlauncher.data.json.Version;
 import com.atlauncher.data.version.PackVersion;
 import com.atlauncher.managers.AccountManager;
 import com.atlauncher.managers.PackManager;
+import com.atlauncher.utils.RetryPolicy;
 import com.atlauncher.utils.Utils;
 
 import javax.swing.ImageIcon;
@@ -273,11 +274,13 @@ public class Pack {
         if (this.json == null || !this.jsonVersion.equalsIgnoreCase(version) || (isTester() && redownload)) {
             String path = "packs/" + getSafeName() + "/versions/" + version + "/Configs.json";
             Downloadable download = new Downloadable(path, true);
+            download.conditional();
             int tries = 1;
-            do {
+            this.json = download.getTextBody();
+            while (this.json == null && RetryPolicy.METADATA.canRetry(tries) && RetryPolicy.METADATA.backoff(tries)) {
                 this.json = download.getTextBody();
                 tries++;
-            } while (json == null && tries < 5);
+            }
             this.jsonVersion = version;
         }
         return this.json;
@@ -17,7 +17,32 @@
  */
 package com.atlauncher.data;
 
+import com.atlauncher.utils.CircuitBreaker;
+
+import java.util.Arrays;
+
 public class Server {
+    /**
+     * How much weight each new measurement is given in the moving averages, the rest coming from earlier ones.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * How many time to first byte measurements are kept for working out the 95th percentile.
+     */
+    private static final int SAMPLES = 32;
+
+    /**
+     * The size of the file the score is worked out for, roughly that of a typical mod.
+     */
+    private static final double SCORE_BYTES = 1024 * 1024;
+
+    private final long[] ttfbSamples = new long[SAMPLES];
+    private final CircuitBreaker breaker = new CircuitBreaker();
+    private int ttfbCount = 0;
+    private double ttfb = -1;
+    private double throughput = -1;
+    private int failures = 0;
 
     private String name;
     private String baseURL;
@@ -73,6 +98,108 @@ public class Server {
         this.userSelectable = selectable;
     }
 
+    /**
+     * Records how long this server took to respond to a request, from sending it to receiving the headers.
+     *
+     * @param millis the time to first byte in milliseconds
+     */
+    public synchronized void recordResponse(long millis) {
+        this.ttfbSamples[this.ttfbCount++ % SAMPLES] = millis;
+        this.ttfb = this.ttfb < 0 ? millis : (SMOOTHING * millis) + ((1 - SMOOTHING) * this.ttfb);
+        this.failures = 0;
+        this.breaker.recordSuccess();
+    }
+
+    /**
+     * Records how quickly a body was downloaded from this server. Small transfers are ignored as they say more about
+     * latency than throughput.
+     *
+     * @param bytes  the number of bytes downloaded
+     * @param millis how long it took to download them in milliseconds
+     */
+    public synchronized void recordTransfer(long bytes, long millis) {
+        if (bytes < 64 * 1024) {
+            return;
+        }
+
+        double rate = (double) bytes / Math.max(1, millis);
+        this.throughput = this.throughput < 0 ? rate : (SMOOTHING * rate) + ((1 - SMOOTHING) * this.throughput);
+    }
+
+    /**
+     * Records that a request to this server failed or returned a bad file.
+     */
+    public synchronized void recordFailure() {
+        this.failures++;
+        this.breaker.recordFailure();
+    }
+
+    /**
+     * Checks if this server's circuit breaker would let a request through, without counting as one.
+     *
+     * @return true if requests can be sent to this server
+     */
+    public boolean isAvailable() {
+        return this.breaker.isAvailable();
+    }
+
+    /**
+     * Asks this server's circuit breaker to let a request through. Should be called just before a request is sent.
+     *
+     * @return true if the request can be sent, false if the server is resting after failing too many times
+     */
+    public boolean allowRequest() {
+        return this.breaker.allowRequest();
+    }
+
+    /**
+     * Gives back a request let through by {@link #allowRequest()} which was cancelled before it finished, so it
+     * doesn't hold up this server's circuit breaker.
+     */
+    public void releaseRequest() {
+        this.breaker.release();
+    }
+
+    public synchronized boolean isMeasured() {
+        return this.ttfb >= 0;
+    }
+
+    /**
+     * Gets the estimated time in milliseconds it would take this server to serve a typical file, lower being better.
+     * Servers which have recently failed are penalised for each failure in a row.
+     *
+     * @return the score of this server, or -1 if it hasn't been measured yet
+     */
+    public synchronized double getScore() {
+        if (this.ttfb < 0) {
+            return -1;
+        }
+
+        double score = this.ttfb;
+        if (this.throughput > 0) {
+            score += SCORE_BYTES / this.throughput;
+        }
+
+        return score * (1 << Math.min(this.failures, 10));
+    }
+
+    /**
+     * Gets the 95th percentile of the recent times to first byte from this server.
+     *
+     * @param fallback the time to return if this server hasn't been measured yet
+     * @return the 95th percentile time to first byte in milliseconds
+     */
+    public synchronized long getTTFB95(long fallback) {
+        int count = Math.min(this.ttfbCount, SAMPLES);
+        if (count == 0) {
+            return fallback;
+        }
+
+        long[] sorted = Arrays.copyOf(this.ttfbSamples, count);
+        Arrays.sort(sorted);
+        return sorted[Math.min(count - 1, (int) Math.ceil(count * 0.95) - 1)];
+    }
+
     public String toString() {
         if (this.disabled) {
             return "(X) " + this.name;
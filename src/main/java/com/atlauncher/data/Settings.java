@@ -37,6 +37,9 @@ import java.util.Properties;
 
 @Json
 public class Settings {
+    public static final int DEFAULT_CONCURRENT_CONNECTIONS = 8;
+    public static final int DEFAULT_CONCURRENT_CONNECTIONS_PER_HOST = 6;
+
     // Non Gsonable fields
     public transient Server selectedServer = null;
     public transient Proxy proxy = null;
@@ -69,6 +72,9 @@ public class Settings {
     public int proxyPort; // The proxies port
     public Proxy.Type proxyType; // The type of proxy (socks, http)
     public int concurrentConnections; // Number of concurrent connections to open when downloading
+    public int concurrentConnectionsPerHost; // Number of those connections which can be open to a single host
+    public int downloadSpeedLimit; // Maximum speed in KB/s of all downloads together, 0 for no limit
+    public int installDownloadSpeedLimit; // Maximum speed in KB/s of the downloads for each install, 0 for no limit
     public int daysOfLogsToKeep; // Number of days of logs to keep
     public String theme; // The theme to use
     public String dateFormat; // The date format to use
@@ -126,7 +132,10 @@ public class Settings {
         this.proxyType = Proxy.Type.DIRECT;
 
         this.serverCheckerWait = 5;
-        this.concurrentConnections = 8;
+        this.concurrentConnections = DEFAULT_CONCURRENT_CONNECTIONS;
+        this.concurrentConnectionsPerHost = DEFAULT_CONCURRENT_CONNECTIONS_PER_HOST;
+        this.downloadSpeedLimit = 0;
+        this.installDownloadSpeedLimit = 0;
         this.daysOfLogsToKeep = 7;
 
         this.theme = Constants.LAUNCHER_NAME;
@@ -247,6 +256,7 @@ public class Settings {
         checkProxy();
         checkServerCheckerWait();
         checkConcurrentConnections();
+        checkDownloadSpeedLimits();
         checkDaysOfLogsToKeep();
         checkDateFormat();
         addAddedPacks();
@@ -373,6 +383,26 @@ public class Settings {
 
             this.concurrentConnections = 8;
         }
+
+        if (this.concurrentConnectionsPerHost < 1) {
+            // Concurrent connections per host should be more than or equal to 1
+            LogManager.warn("Tried to set the number of concurrent connections per host to " + this
+                    .concurrentConnectionsPerHost + " which is not valid! Must be 1 or more. Setting back to default " +
+                    "of " + DEFAULT_CONCURRENT_CONNECTIONS_PER_HOST + "!");
+
+            this.concurrentConnectionsPerHost = DEFAULT_CONCURRENT_CONNECTIONS_PER_HOST;
+        }
+    }
+
+    private void checkDownloadSpeedLimits() {
+        if (this.downloadSpeedLimit < 0 || this.installDownloadSpeedLimit < 0) {
+            // Speed limits should be 0 (no limit) or more
+            LogManager.warn("Tried to set the download speed limits to " + this.downloadSpeedLimit + " and " + this
+                    .installDownloadSpeedLimit + " which is not valid! Must be 0 or more. Removing the limits!");
+
+            this.downloadSpeedLimit = Math.max(0, this.downloadSpeedLimit);
+            this.installDownloadSpeedLimit = Math.max(0, this.installDownloadSpeedLimit);
+        }
     }
 
     private void checkDaysOfLogsToKeep() {
@@ -24,6 +24,8 @@ import com.atlauncher.data.Downloadable;
 import com.atlauncher.managers.LogManager;
 import com.atlauncher.utils.FileUtils;
 import com.atlauncher.utils.Hashing;
+import com.atlauncher.utils.RetryPolicy;
+import com.atlauncher.utils.VerificationLedger;
 import com.atlauncher.workers.InstanceInstaller;
 
 import java.awt.Color;
@@ -32,7 +34,7 @@ import java.nio.file.Path;
 
 @Json
 public final class Mod {
-    public static final int MAX_ATTEMPTS = 5;
+    public static final int MAX_ATTEMPTS = RetryPolicy.MOD.getMaxAttempts();
 
     public final String name;
     public final String version;
@@ -180,8 +182,13 @@ public final class Mod {
     }
 
     public Downloadable generateDownloadable(InstanceInstaller installer) {
-        return new Downloadable(this.getUrl(), this.md5.toString(), FileSystem.DOWNLOADS.resolve(this.getFile()),
-                this.filesize, true, installer);
+        Downloadable dl = new Downloadable(this.getUrl(), this.md5.toString(), FileSystem.DOWNLOADS.resolve(this
+                .getFile()), this.filesize, true, installer);
+        dl.resumable();
+        if (!(installer.server ? this.isServerOptional() : this.optional)) {
+            dl.critical();
+        }
+        return dl;
     }
 
     private void downloadClient(InstanceInstaller installer, int attempt) throws Exception {
@@ -191,7 +198,7 @@ public final class Mod {
                 FileUtils.delete(fileLoc);
             } else if (this.download != DownloadType.DIRECT) {
                 if (this.hasMD5()) {
-                    if (Hashing.md5(fileLoc).equals(this.md5)) {
+                    if (VerificationLedger.md5(fileLoc).equals(this.md5)) {
                         return;
                     } else {
                         FileUtils.delete(fileLoc);
@@ -212,8 +219,8 @@ public final class Mod {
 
         this.download.download(installer, fileLoc, this);
 
-        if (this.hasMD5() && !Hashing.md5(fileLoc).equals(this.md5)) {
-            if (attempt < MAX_ATTEMPTS) {
+        if (this.hasMD5() && !VerificationLedger.md5(fileLoc).equals(this.md5)) {
+            if (RetryPolicy.MOD.canRetry(attempt) && RetryPolicy.MOD.backoff(attempt)) {
                 FileUtils.delete(fileLoc);
                 this.downloadClient(installer, attempt + 1);
             } else {
@@ -230,7 +237,7 @@ public final class Mod {
                 FileUtils.delete(fileLoc);
             } else if (this.download != DownloadType.DIRECT) {
                 if (this.serverMD5 != null && !this.serverMD5.equals(Hashing.HashCode.EMPTY)) {
-                    if (Hashing.md5(fileLoc).equals(this.serverMD5)) {
+                    if (VerificationLedger.md5(fileLoc).equals(this.serverMD5)) {
                         return;
                     } else {
                         FileUtils.delete(fileLoc);
@@ -252,6 +259,8 @@ public final class Mod {
                     dl.checkForNewness();
                 }
 
+                dl.resumable();
+
                 if (dl.needToDownload()) {
                     dl.download();
                 }
@@ -260,8 +269,9 @@ public final class Mod {
             }
         }
 
-        if (this.serverMD5 != null && !this.serverMD5.equals(Hashing.HashCode.EMPTY)) {
-            if (attempt < MAX_ATTEMPTS) {
+        if (this.serverMD5 != null && !this.serverMD5.equals(Hashing.HashCode.EMPTY) && !VerificationLedger.md5
+                (fileLoc).equals(this.serverMD5)) {
+            if (RetryPolicy.MOD.canRetry(attempt) && RetryPolicy.MOD.backoff(attempt)) {
                 FileUtils.delete(fileLoc);
                 this.downloadServer(installer, attempt + 1);
             } else {
@@ -272,8 +282,10 @@ public final class Mod {
     }
 
     protected Downloadable generateDownloadable(Path to, InstanceInstaller installer, boolean server) {
-        return new Downloadable(this.getUrl(), this.md5 == null ? null : this.md5.toString(), to, -1, server,
-                installer);
+        Downloadable dl = new Downloadable(this.getUrl(), this.md5 == null ? null : this.md5.toString(), to, this
+                .filesize > 0 ? this.filesize : -1, server, installer);
+        dl.resumable();
+        return dl;
     }
 
     public void download(InstanceInstaller installer) throws Exception {
@@ -292,6 +304,19 @@ public final class Mod {
         type.install(installer, this);
     }
 
+    /**
+     * Checks if this mod has to be installed in order along with the other mods which do, rather than as soon as it's
+     * been downloaded.
+     *
+     * @param installer the install this mod is for
+     * @return true if this mod must be installed in the order it's listed
+     * @see ModType#isOrdered()
+     */
+    public boolean isOrdered(InstanceInstaller installer) {
+        ModType type = this.getType(installer);
+        return type == null || type.isOrdered();
+    }
+
     public String getFile() {
         if (this.filePrefix != null) {
             return this.filePrefix + this.file;
@@ -21,6 +21,7 @@ import com.atlauncher.FileSystem;
 import com.atlauncher.annot.Json;
 import com.atlauncher.managers.LogManager;
 import com.atlauncher.utils.CompressionUtils;
+import com.atlauncher.utils.ContentStore;
 import com.atlauncher.utils.FileUtils;
 import com.atlauncher.workers.InstanceInstaller;
 
@@ -31,7 +32,7 @@ import java.nio.file.Path;
 
 @Json
 public enum ModType {
-    JAR() {
+    JAR(true) {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             if (installer.server && mod.getType(installer) == ModType.JAR) {
@@ -39,7 +40,7 @@ public enum ModType {
                 return;
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.jarmods);
+            ContentStore.install(mod.getFile(installer), installer.jarmods, false);
             installer.addToJarOrder(mod.getFile());
         }
 
@@ -55,7 +56,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.dependencies);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.dependencies);
+            ContentStore.install(mod.getFile(installer), installer.dependencies, false);
         }
 
         @Override
@@ -70,7 +71,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.dependencies);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.dependencies);
+            ContentStore.install(mod.getFile(installer), installer.dependencies, false);
         }
 
         @Override
@@ -78,15 +79,15 @@ public enum ModType {
             return null;
         }
     },
-    FORGE() {
+    FORGE(true) {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             if (installer.server && mod.getType(installer) == ModType.FORGE) {
-                FileUtils.copyFile(mod.getFile(installer), installer.root);
+                ContentStore.install(mod.getFile(installer), installer.root, false);
                 return;
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.jarmods);
+            ContentStore.install(mod.getFile(installer), installer.jarmods, false);
             installer.addToJarOrder(mod.getFile());
         }
 
@@ -103,7 +104,7 @@ public enum ModType {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             if (installer.server) {
-                FileUtils.copyFile(mod.getFile(installer), installer.root);
+                ContentStore.install(mod.getFile(installer), installer.root, false);
             }
         }
 
@@ -119,7 +120,7 @@ public enum ModType {
     MODS() {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
-            FileUtils.copyFile(mod.getFile(installer), installer.mods);
+            ContentStore.install(mod.getFile(installer), installer.mods, false);
         }
 
         @Override
@@ -134,7 +135,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.plugins);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.plugins);
+            ContentStore.install(mod.getFile(installer), installer.plugins, false);
         }
 
         @Override
@@ -149,7 +150,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.ic2);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.ic2);
+            ContentStore.install(mod.getFile(installer), installer.ic2, false);
         }
 
         @Override
@@ -164,7 +165,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.denlib);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.denlib);
+            ContentStore.install(mod.getFile(installer), installer.denlib, false);
         }
 
         @Override
@@ -179,7 +180,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.flans);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.flans);
+            ContentStore.install(mod.getFile(installer), installer.flans, false);
         }
 
         @Override
@@ -195,9 +196,9 @@ public enum ModType {
                     FileUtils.createDirectory(installer.coremods);
                 }
 
-                FileUtils.copyFile(mod.getFile(installer), installer.coremods);
+                ContentStore.install(mod.getFile(installer), installer.coremods, false);
             } else {
-                FileUtils.copyFile(mod.getFile(installer), installer.mods);
+                ContentStore.install(mod.getFile(installer), installer.mods, false);
             }
         }
 
@@ -210,7 +211,7 @@ public enum ModType {
             }
         }
     },
-    EXTRACT() {
+    EXTRACT(true) {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             switch (mod.extractTo) {
@@ -246,7 +247,7 @@ public enum ModType {
             return null;
         }
     },
-    DECOMP() {
+    DECOMP(true) {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             Path tmpDecomp = FileSystem.TMP.resolve(mod.getSafeName());
@@ -318,7 +319,7 @@ public enum ModType {
             return null;
         }
     },
-    MILLENAIRE() {
+    MILLENAIRE(true) {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             Path fileLoc = mod.getFile(installer);
@@ -357,7 +358,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.texturepacks);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.texturepacks);
+            ContentStore.install(mod.getFile(installer), installer.texturepacks, false);
         }
 
         @Override
@@ -372,7 +373,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.resourcepacks);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.resourcepacks);
+            ContentStore.install(mod.getFile(installer), installer.resourcepacks, false);
         }
 
         @Override
@@ -380,7 +381,7 @@ public enum ModType {
             return installer.resourcepacks;
         }
     },
-    TEXTUREPACKEXTRACT() {
+    TEXTUREPACKEXTRACT(true) {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             if (!Files.exists(installer.texturepacks)) {
@@ -396,7 +397,7 @@ public enum ModType {
             return null;
         }
     },
-    RESOURCEPACKEXTRACT() {
+    RESOURCEPACKEXTRACT(true) {
         @Override
         public void install(InstanceInstaller installer, Mod mod) throws Exception {
             if (!Files.exists(installer.getTempResourcePacksDirectory())) {
@@ -419,7 +420,7 @@ public enum ModType {
                 FileUtils.createDirectory(installer.shaderpacks);
             }
 
-            FileUtils.copyFile(mod.getFile(installer), installer.shaderpacks);
+            ContentStore.install(mod.getFile(installer), installer.shaderpacks, false);
         }
 
         @Override
@@ -428,6 +429,27 @@ public enum ModType {
         }
     };
 
+    private final boolean ordered;
+
+    ModType() {
+        this(false);
+    }
+
+    ModType(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Checks if mods of this type have to be installed one after the other in the order they're listed, because they
+     * add to the jar order or extract into folders other mods may also extract into. Mods of other types only copy
+     * their own file into place, so can be installed in any order, at the same time as each other.
+     *
+     * @return true if mods of this type must be installed in order
+     */
+    public boolean isOrdered() {
+        return this.ordered;
+    }
+
     public abstract void install(InstanceInstaller installer, Mod mod) throws Exception;
 
     public abstract Path getInstallDirectory(InstanceInstaller installer, Mod mod);
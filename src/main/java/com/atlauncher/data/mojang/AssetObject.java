@@ -19,6 +19,7 @@ package com.atlauncher.data.mojang;
 
 import com.atlauncher.managers.LogManager;
 import com.atlauncher.utils.Hashing;
+import com.atlauncher.utils.VerificationLedger;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -49,6 +50,6 @@ public class AssetObject {
             LogManager.logStackTrace("Error getting file size from " + path, e);
         }
 
-        return (size != this.size) || (!Hashing.HashCode.fromString(this.hash).equals(Hashing.sha1(path)));
+        return (size != this.size) || (!Hashing.HashCode.fromString(this.hash).equals(VerificationLedger.sha1(path)));
     }
 }
@@ -21,4 +21,25 @@ import java.util.List;
 
 public class ExtractRule {
     public List<String> exclude;
+
+    /**
+     * Checks if an entry is excluded by this rule. Rules list either exact entry names or, ending in a slash, whole
+     * directories (such as META-INF/).
+     *
+     * @param name the name of the entry in the zip
+     * @return if the entry shouldn't be extracted
+     */
+    public boolean excludes(String name) {
+        if (this.exclude == null) {
+            return false;
+        }
+
+        for (String entry : this.exclude) {
+            if (name.equals(entry) || (entry.endsWith("/") && name.startsWith(entry))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
 }
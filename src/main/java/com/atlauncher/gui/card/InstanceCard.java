@@ -40,6 +40,7 @@ import com.atlauncher.utils.ATLauncherAPI;
 import com.atlauncher.utils.CompressionUtils;
 import com.atlauncher.utils.FileUtils;
 import com.atlauncher.utils.HTMLUtils;
+import com.atlauncher.workers.InstanceVerifier;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -471,6 +472,9 @@ public class InstanceCard extends CollapsiblePanel {
                     JMenuItem updateItem = new JMenuItem(LanguageManager.localize("common.update"));
                     rightClickMenu.add(updateItem);
 
+                    JMenuItem verifyItem = new JMenuItem(LanguageManager.localize("instance.verify"));
+                    rightClickMenu.add(verifyItem);
+
                     if (!instance.hasUpdate()) {
                         updateItem.setEnabled(false);
                     }
@@ -536,6 +540,13 @@ public class InstanceCard extends CollapsiblePanel {
                         }
                     });
 
+                    verifyItem.addActionListener(new ActionListener() {
+                        @Override
+                        public void actionPerformed(ActionEvent e) {
+                            verifyFiles();
+                        }
+                    });
+
                     shareCodeItem.addActionListener(new ActionListener() {
                         @Override
                         public void actionPerformed(ActionEvent e) {
@@ -572,6 +583,55 @@ public class InstanceCard extends CollapsiblePanel {
         });
     }
 
+    private void verifyFiles() {
+        final ProgressDialog dialog = new ProgressDialog(LanguageManager.localize("instance.verifytitle"), 0,
+                LanguageManager.localize("instance.verifyingfiles"), null);
+        dialog.addThread(new Thread() {
+            @Override
+            public void run() {
+                dialog.setReturnValue(instance.verify());
+                dialog.close();
+            }
+        });
+        dialog.start();
+
+        final InstanceVerifier.Report report = (InstanceVerifier.Report) dialog.getReturnValue();
+        if (report == null) {
+            return;
+        }
+
+        if (report.isClean()) {
+            App.TOASTER.pop(LanguageManager.localize("instance.verifyclean"));
+            return;
+        }
+
+        int broken = report.getMissing().size() + report.getCorrupt().size();
+        int ret = JOptionPane.showConfirmDialog(App.frame, HTMLUtils.centerParagraph(LanguageManager
+                .localizeWithReplace("instance.verifybroken", String.valueOf(broken))), LanguageManager.localize
+                ("instance.verifytitle"), JOptionPane.YES_NO_OPTION);
+        if (ret != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        final ProgressDialog repairDialog = new ProgressDialog(LanguageManager.localize("instance.verifytitle"), 0,
+                LanguageManager.localize("instance.repairingfiles"), null);
+        repairDialog.addThread(new Thread() {
+            @Override
+            public void run() {
+                repairDialog.setReturnValue(instance.repair(report));
+                repairDialog.close();
+            }
+        });
+        repairDialog.start();
+
+        if (Boolean.TRUE.equals(repairDialog.getReturnValue())) {
+            App.TOASTER.pop(LanguageManager.localizeWithReplace("instance.repaired", String.valueOf(report
+                    .getRepaired())));
+        } else {
+            App.TOASTER.popError(LanguageManager.localize("instance.repairfailed"));
+        }
+    }
+
     @Subscribe
     public void onRelocalization(EventHandler.RelocalizationEvent e) {
         this.playButton.setText(LanguageManager.localize("common.play"));
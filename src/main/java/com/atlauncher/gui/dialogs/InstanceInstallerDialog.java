@@ -29,6 +29,7 @@ import com.atlauncher.managers.SettingsManager;
 import com.atlauncher.utils.ATLauncherAPI;
 import com.atlauncher.utils.FileUtils;
 import com.atlauncher.utils.HTMLUtils;
+import com.atlauncher.workers.InstallPlan;
 import com.atlauncher.workers.InstanceInstaller;
 
 import javax.swing.JButton;
@@ -40,6 +41,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
@@ -65,6 +67,7 @@ public class InstanceInstallerDialog extends JDialog {
     private JPanel middle;
     private JPanel bottom;
     private JButton install;
+    private JButton estimate;
     private JButton cancel;
     private JProgressBar progressBar;
     private JProgressBar subProgressBar;
@@ -502,6 +505,7 @@ public class InstanceInstallerDialog extends JDialog {
 
                 if (isReinstall) {
                     instanceInstaller.setInstance(instance);
+                    instanceInstaller.setUpdate(isUpdate);
                 }
 
                 instanceInstaller.execute();
@@ -510,6 +514,36 @@ public class InstanceInstallerDialog extends JDialog {
 
             }
         });
+        estimate = new JButton(LanguageManager.localize("instance.estimate"));
+        estimate.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                PackVersion version = (PackVersion) versionsDropDown.getSelectedItem();
+                final InstanceInstaller planner = new InstanceInstaller((isServer ? "" : instanceNameField.getText()),
+                        pack, version, isReinstall, shareCode, isServer, false);
+                if (isReinstall) {
+                    planner.setInstance(instance);
+                    planner.setUpdate(isUpdate);
+                }
+
+                estimate.setEnabled(false);
+                new SwingWorker<InstallPlan, Void>() {
+                    @Override
+                    protected InstallPlan doInBackground() throws Exception {
+                        return planner.plan();
+                    }
+
+                    @Override
+                    protected void done() {
+                        estimate.setEnabled(true);
+                        try {
+                            showEstimate(get());
+                        } catch (InterruptedException | ExecutionException e) {
+                            LogManager.logStackTrace("Error working out the install estimate", e);
+                        }
+                    }
+                }.execute();
+            }
+        });
         cancel = new JButton(LanguageManager.localize("common.cancel"));
         cancel.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
@@ -517,6 +551,7 @@ public class InstanceInstallerDialog extends JDialog {
             }
         });
         bottom.add(install);
+        bottom.add(estimate);
         bottom.add(cancel);
 
         add(top, BorderLayout.NORTH);
@@ -524,4 +559,28 @@ public class InstanceInstallerDialog extends JDialog {
         add(bottom, BorderLayout.SOUTH);
         setVisible(true);
     }
+
+    private void showEstimate(InstallPlan plan) {
+        String text = LanguageManager.localize("instance.estimatedownloads") + ": " + plan.getSteps(InstallPlan
+                .Action.DOWNLOAD).size() + " (" + megabytes(plan.getSize(InstallPlan.Action.DOWNLOAD)) + ")<br/>" +
+                LanguageManager.localize("instance.estimatecached") + ": " + plan.getSteps(InstallPlan.Action
+                .CACHED).size() + " (" + megabytes(plan.getSize(InstallPlan.Action.CACHED)) + ")<br/>" +
+                LanguageManager.localize("instance.estimatecopies") + ": " + plan.getSteps(InstallPlan.Action.COPY)
+                .size() + "<br/>" + LanguageManager.localize("instance.estimateextracts") + ": " + plan.getSteps
+                (InstallPlan.Action.EXTRACT).size() + "<br/><br/>" + LanguageManager.localize("instance" +
+                ".estimateread") + ": " + megabytes(plan.getBytesRead()) + "<br/>" + LanguageManager.localize
+                ("instance.estimatewritten") + ": " + megabytes(plan.getBytesWritten());
+
+        if (plan.getUnknownSizes() != 0) {
+            text += "<br/><br/>" + LanguageManager.localizeWithReplace("instance.estimateunknown", String.valueOf(plan
+                    .getUnknownSizes()));
+        }
+
+        JOptionPane.showMessageDialog(this, HTMLUtils.centerParagraph(text), LanguageManager.localize("instance" +
+                ".estimatetitle"), JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / 1024f / 1024f);
+    }
 }
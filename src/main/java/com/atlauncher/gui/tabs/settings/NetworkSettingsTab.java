@@ -47,6 +47,15 @@ public class NetworkSettingsTab extends AbstractSettingsTab {
     private JLabelWithHover concurrentConnectionsLabel;
     private JTextField concurrentConnections;
 
+    private JLabelWithHover concurrentConnectionsPerHostLabel;
+    private JTextField concurrentConnectionsPerHost;
+
+    private JLabelWithHover downloadSpeedLimitLabel;
+    private JTextField downloadSpeedLimit;
+
+    private JLabelWithHover installDownloadSpeedLimitLabel;
+    private JTextField installDownloadSpeedLimit;
+
     private JLabelWithHover enableProxyLabel;
     private JCheckBox enableProxy;
 
@@ -100,6 +109,55 @@ public class NetworkSettingsTab extends AbstractSettingsTab {
         concurrentConnections.setText(SettingsManager.getConcurrentConnections() + "");
         add(concurrentConnections, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy++;
+        gbc.insets = LABEL_INSETS;
+        gbc.anchor = GridBagConstraints.BASELINE_TRAILING;
+        concurrentConnectionsPerHostLabel = new JLabelWithHover(LanguageManager.localize("settings" +
+                ".concurrentconnectionsperhost") + ":", HELP_ICON, "<html>" + LanguageManager.localizeWithReplace
+                ("settings.concurrentconnectionsperhosthelp", "<br/><br/>") + "</html>");
+        add(concurrentConnectionsPerHostLabel, gbc);
+
+        gbc.gridx++;
+        gbc.insets = FIELD_INSETS;
+        gbc.anchor = GridBagConstraints.BASELINE_LEADING;
+        concurrentConnectionsPerHost = new JTextField(4);
+        concurrentConnectionsPerHost.setText(SettingsManager.getConcurrentConnectionsPerHost() + "");
+        add(concurrentConnectionsPerHost, gbc);
+
+        // Download Speed Limit Settings
+        gbc.gridx = 0;
+        gbc.gridy++;
+        gbc.insets = LABEL_INSETS;
+        gbc.anchor = GridBagConstraints.BASELINE_TRAILING;
+        downloadSpeedLimitLabel = new JLabelWithHover(LanguageManager.localize("settings.downloadspeedlimit") + ":",
+                HELP_ICON, "<html>" + LanguageManager.localizeWithReplace("settings.downloadspeedlimithelp",
+                "<br/><br/>") + "</html>");
+        add(downloadSpeedLimitLabel, gbc);
+
+        gbc.gridx++;
+        gbc.insets = FIELD_INSETS;
+        gbc.anchor = GridBagConstraints.BASELINE_LEADING;
+        downloadSpeedLimit = new JTextField(6);
+        downloadSpeedLimit.setText(SettingsManager.getDownloadSpeedLimit() + "");
+        add(downloadSpeedLimit, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy++;
+        gbc.insets = LABEL_INSETS;
+        gbc.anchor = GridBagConstraints.BASELINE_TRAILING;
+        installDownloadSpeedLimitLabel = new JLabelWithHover(LanguageManager.localize("settings" +
+                ".installdownloadspeedlimit") + ":", HELP_ICON, "<html>" + LanguageManager.localizeWithReplace
+                ("settings.installdownloadspeedlimithelp", "<br/><br/>") + "</html>");
+        add(installDownloadSpeedLimitLabel, gbc);
+
+        gbc.gridx++;
+        gbc.insets = FIELD_INSETS;
+        gbc.anchor = GridBagConstraints.BASELINE_LEADING;
+        installDownloadSpeedLimit = new JTextField(6);
+        installDownloadSpeedLimit.setText(SettingsManager.getInstallDownloadSpeedLimit() + "");
+        add(installDownloadSpeedLimit, gbc);
+
         // Enable Proxy
 
         gbc.gridx = 0;
@@ -202,9 +260,25 @@ public class NetworkSettingsTab extends AbstractSettingsTab {
                     JOptionPane.PLAIN_MESSAGE);
             return false;
         }
+        if (parseConnections(concurrentConnectionsPerHost) < 1) {
+            JOptionPane.showMessageDialog(App.frame, LanguageManager.localize("settings" +
+                            ".concurrentconnectionsperhostinvalid"), LanguageManager.localize("settings.help"),
+                    JOptionPane.PLAIN_MESSAGE);
+            return false;
+        }
         return true;
     }
 
+    private static int parseConnections(JTextField field) {
+        String text = field.getText().replaceAll("[^0-9]", "");
+        return text.isEmpty() ? 0 : Integer.parseInt(text);
+    }
+
+    private static int parseSpeedLimit(JTextField field) {
+        String text = field.getText().replaceAll("[^0-9]", "");
+        return text.isEmpty() ? 0 : Integer.parseInt(text);
+    }
+
     public boolean isValidProxyPort() {
         if (!enableProxy.isSelected()) {
             return true;
@@ -268,6 +342,9 @@ public class NetworkSettingsTab extends AbstractSettingsTab {
         SettingsManager.setServer((Server) server.getSelectedItem());
         SettingsManager.setConcurrentConnections(Integer.parseInt(concurrentConnections.getText().replaceAll("[^0-9]",
                 "")));
+        SettingsManager.setConcurrentConnectionsPerHost(parseConnections(concurrentConnectionsPerHost));
+        SettingsManager.setDownloadSpeedLimit(parseSpeedLimit(downloadSpeedLimit));
+        SettingsManager.setInstallDownloadSpeedLimit(parseSpeedLimit(installDownloadSpeedLimit));
         SettingsManager.setEnableProxy(enableProxy.isSelected());
         if (enableProxy.isSelected()) {
             SettingsManager.setProxyHost(proxyHost.getText());
@@ -293,6 +370,20 @@ public class NetworkSettingsTab extends AbstractSettingsTab {
                 "" +
                 ".concurrentconnectionshelp", "<br/><br/>") + "</html>");
 
+        this.concurrentConnectionsPerHostLabel.setText(LanguageManager.localize("settings" +
+                ".concurrentconnectionsperhost") + ":");
+        this.concurrentConnectionsPerHostLabel.setToolTipText("<html>" + LanguageManager.localizeWithReplace
+                ("settings.concurrentconnectionsperhosthelp", "<br/><br/>") + "</html>");
+
+        this.downloadSpeedLimitLabel.setText(LanguageManager.localize("settings.downloadspeedlimit") + ":");
+        this.downloadSpeedLimitLabel.setToolTipText("<html>" + LanguageManager.localizeWithReplace("settings" +
+                ".downloadspeedlimithelp", "<br/><br/>") + "</html>");
+
+        this.installDownloadSpeedLimitLabel.setText(LanguageManager.localize("settings.installdownloadspeedlimit") +
+                ":");
+        this.installDownloadSpeedLimitLabel.setToolTipText("<html>" + LanguageManager.localizeWithReplace("settings"
+                + ".installdownloadspeedlimithelp", "<br/><br/>") + "</html>");
+
         this.enableProxyLabel.setText(LanguageManager.localize("settings.enableproxy") + "?");
         this.enableProxyLabel.setToolTipText(LanguageManager.localize("settings.enableproxyhelp"));
 
@@ -24,7 +24,9 @@ import com.atlauncher.data.Account;
 import com.atlauncher.data.Instance;
 import com.atlauncher.evnt.EventHandler;
 import com.atlauncher.nio.JsonFile;
+import com.atlauncher.utils.ContentStore;
 import com.atlauncher.utils.FileUtils;
+import com.atlauncher.utils.UpdateJournal;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
@@ -38,6 +40,12 @@ import java.util.Comparator;
 import java.util.List;
 
 public class InstanceManager {
+    /**
+     * If the instances have been loaded before. Unfinished updates are only rolled back on the first load, as after
+     * that an update may be running while the instances are loaded again.
+     */
+    private static boolean loaded = false;
+
     public static List<Instance> getInstances() {
         return Data.INSTANCES;
     }
@@ -88,6 +96,11 @@ public class InstanceManager {
                         continue;
                     }
 
+                    if (!loaded) {
+                        // Puts back the files of an update which was still going when the launcher closed
+                        UpdateJournal.recover(instance.getRootDirectory());
+                    }
+
                     if (!Files.exists(instance.getRootDirectory().resolve("disabledmods"))) {
                         FileUtils.createDirectory(instance.getRootDirectory().resolve("disabledmods"));
                     }
@@ -102,6 +115,7 @@ public class InstanceManager {
         } catch (Exception e) {
             LogManager.logStackTrace(e);
         }
+        loaded = true;
         LogManager.debug("Finished loading instances");
     }
 
@@ -197,6 +211,7 @@ public class InstanceManager {
     public static void removeInstance(Instance instance) {
         if (Data.INSTANCES.remove(instance)) {
             FileUtils.delete(instance.getRootDirectory());
+            ContentStore.release(instance.getRootDirectory());
             InstanceManager.saveInstances();
             EventHandler.EVENT_BUS.publish(EventHandler.get(EventHandler.InstancesChangeEvent.class));
         }
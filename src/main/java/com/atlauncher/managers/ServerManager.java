@@ -20,7 +20,11 @@ package com.atlauncher.managers;
 import com.atlauncher.data.Constants;
 import com.atlauncher.data.Server;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 public class ServerManager {
@@ -61,13 +65,107 @@ public class ServerManager {
     }
 
     /**
-     * Gets the URL for a file on the user selected server
+     * Gets the servers which files can be downloaded from, best first. If the user has picked a server it always comes
+     * first, otherwise servers are ordered by how quickly they've been serving files, with servers which haven't been
+     * used yet after them. Servers whose circuit breaker is open are left out while any others are available.
+     *
+     * @return the servers to try, best first
+     */
+    public static List<Server> getRankedServers() {
+        final Server active = SettingsManager.getActiveServer();
+
+        List<Server> servers = new ArrayList<>();
+        List<Server> resting = new ArrayList<>();
+        for (Server server : ServerManager.SERVERS) {
+            if (!server.isDisabled() && (!server.isMaster() || server.isUserSelectable() || server == active)) {
+                if (server.isAvailable()) {
+                    servers.add(server);
+                } else {
+                    resting.add(server);
+                }
+            }
+        }
+
+        if (servers.isEmpty()) {
+            // Every server has failed too many times recently, so rather than having nowhere to download from, rank
+            // them all as usual
+            servers = resting;
+        }
+
+        final boolean auto = isAuto(active);
+        Collections.sort(servers, new Comparator<Server>() {
+            @Override
+            public int compare(Server a, Server b) {
+                if (!auto && (a == active || b == active)) {
+                    return a == active ? -1 : 1;
+                }
+
+                double scoreA = a.getScore();
+                double scoreB = b.getScore();
+
+                if (scoreA < 0 || scoreB < 0) {
+                    // Unmeasured servers go last, in the order they're listed apart from the selected server first
+                    if (scoreA >= 0 || scoreB >= 0) {
+                        return scoreA >= 0 ? -1 : 1;
+                    }
+
+                    return a == active ? -1 : (b == active ? 1 : 0);
+                }
+
+                return Double.compare(scoreA, scoreB);
+            }
+        });
+
+        return servers;
+    }
+
+    /**
+     * Checks if the user has left the server to download from on Auto, rather than picking a server themselves.
+     *
+     * @return if the server to download from is picked automatically
+     */
+    public static boolean isAuto() {
+        return isAuto(SettingsManager.getActiveServer());
+    }
+
+    private static boolean isAuto(Server active) {
+        return active == null || active.getName().equals("Auto");
+    }
+
+    /**
+     * Gets the best server to download from.
+     *
+     * @return the best server to download from
+     */
+    public static Server getBestServer() {
+        List<Server> servers = getRankedServers();
+        return servers.isEmpty() ? SettingsManager.getActiveServer() : servers.get(0);
+    }
+
+    /**
+     * Gets the next best server to download from, skipping any which have already been tried.
+     *
+     * @param tried the servers which have already been tried
+     * @return the next server to try, or null if all of them have been tried
+     */
+    public static Server getNextServer(Collection<Server> tried) {
+        for (Server server : getRankedServers()) {
+            if (!tried.contains(server)) {
+                return server;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the URL for a file on the best server
      *
      * @param filename Filename including directories on the server
      * @return URL of the file
      */
     public static String getFileURL(String filename) {
-        return SettingsManager.getActiveServer().getFileURL(filename);
+        return getBestServer().getFileURL(filename);
     }
 
     /**
@@ -57,6 +57,8 @@ public class SettingsManager {
         // Validates all the settings to make sure they're valid and deals with converting (such as strings to value)
         settings.validate();
 
+        Network.BANDWIDTH.setRate(SettingsManager.settings.downloadSpeedLimit * 1024L);
+
         if (newFile) {
             SettingsManager.saveSettings();
         }
@@ -357,6 +359,11 @@ public class SettingsManager {
     }
 
     public static int getConcurrentConnections() {
+        if (SettingsManager.settings == null) {
+            // Downloads can be scheduled before the settings have been loaded
+            return Settings.DEFAULT_CONCURRENT_CONNECTIONS;
+        }
+
         return SettingsManager.settings.concurrentConnections;
     }
 
@@ -364,6 +371,41 @@ public class SettingsManager {
         SettingsManager.settings.concurrentConnections = concurrentConnections;
     }
 
+    public static int getConcurrentConnectionsPerHost() {
+        if (SettingsManager.settings == null) {
+            // Downloads can be scheduled before the settings have been loaded
+            return Settings.DEFAULT_CONCURRENT_CONNECTIONS_PER_HOST;
+        }
+
+        return SettingsManager.settings.concurrentConnectionsPerHost;
+    }
+
+    public static void setConcurrentConnectionsPerHost(int concurrentConnectionsPerHost) {
+        SettingsManager.settings.concurrentConnectionsPerHost = concurrentConnectionsPerHost;
+    }
+
+    public static int getDownloadSpeedLimit() {
+        return SettingsManager.settings.downloadSpeedLimit;
+    }
+
+    public static void setDownloadSpeedLimit(int downloadSpeedLimit) {
+        SettingsManager.settings.downloadSpeedLimit = downloadSpeedLimit;
+        Network.BANDWIDTH.setRate(downloadSpeedLimit * 1024L);
+    }
+
+    public static int getInstallDownloadSpeedLimit() {
+        if (SettingsManager.settings == null) {
+            // Installs can be planned before the settings have been loaded, and there's no limit by default
+            return 0;
+        }
+
+        return SettingsManager.settings.installDownloadSpeedLimit;
+    }
+
+    public static void setInstallDownloadSpeedLimit(int installDownloadSpeedLimit) {
+        SettingsManager.settings.installDownloadSpeedLimit = installDownloadSpeedLimit;
+    }
+
     public static int getDaysOfLogsToKeep() {
         return SettingsManager.settings.daysOfLogsToKeep;
     }
@@ -0,0 +1,265 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.thread;
+
+import com.atlauncher.managers.SettingsManager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The single, long lived scheduler that all downloads in the launcher are run on. Threads are created lazily and die
+ * off after a period of inactivity so an idle launcher doesn't hold onto any of them.
+ *
+ * No more downloads are run at once than the users concurrent connections setting, and no more of those to any one
+ * host than the concurrent connections per host setting. Waiting downloads are started in order of their {@link Priority},
+ * so files an install can't carry on without are downloaded before ones which can wait.
+ */
+public final class DownloadScheduler {
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new DownloadThreadFactory());
+
+    /**
+     * The tasks waiting to be run for each priority, queued by the host they download from (or null for those which
+     * don't count towards any host's limit), so hosts which are already at their limit can be skipped over as a whole.
+     */
+    private static final Map<Priority, Map<String, Deque<Job>>> ready = new EnumMap<>(Priority.class);
+    private static final Map<String, Integer> runningPerHost = new HashMap<>();
+    private static int running = 0;
+    private static int queued = 0;
+
+    static {
+        for (Priority priority : Priority.values()) {
+            ready.put(priority, new LinkedHashMap<String, Deque<Job>>());
+        }
+    }
+
+    private DownloadScheduler() {
+    }
+
+    /**
+     * Submits a task to be run on one of the download threads at bulk priority.
+     *
+     * @param task the task to run
+     * @return the future representing the pending completion of the task
+     */
+    public static Future<?> submit(Runnable task) {
+        return submit(task, null, Priority.BULK);
+    }
+
+    /**
+     * Submits a task to be run on one of the download threads once there's a free connection to its host.
+     *
+     * @param task     the task to run
+     * @param host     the host the task downloads from, or null if it shouldn't count towards any host's limit
+     * @param priority how soon the task should be run compared to other waiting tasks
+     * @return the future representing the pending completion of the task
+     */
+    public static synchronized Future<?> submit(Runnable task, String host, Priority priority) {
+        Job job = new Job(task, host);
+
+        Map<String, Deque<Job>> hosts = ready.get(priority);
+        Deque<Job> jobs = hosts.get(host);
+        if (jobs == null) {
+            jobs = new ArrayDeque<>();
+            hosts.put(host, jobs);
+        }
+
+        jobs.add(job);
+        queued++;
+        promote();
+        return job;
+    }
+
+    /**
+     * Gets the number of tasks waiting to be run.
+     *
+     * @return the number of tasks waiting for a free connection
+     */
+    public static synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    public static synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * Takes up to the given number of extra connections to a host for a task which is already running, such as one
+     * downloading a single file in several parts at once, so they count towards the limits like any other download.
+     * Only connections which are free are taken, as anything waiting would already have been started on them.
+     *
+     * @param host   the host the extra connections are to
+     * @param wanted the most extra connections wanted
+     * @return the number of connections taken, which must be given back with {@link #release(String, int)}
+     */
+    public static synchronized int reserve(String host, int wanted) {
+        int max = Math.max(1, SettingsManager.getConcurrentConnections());
+        int maxPerHost = Math.max(1, Math.min(SettingsManager.getConcurrentConnectionsPerHost(), max));
+
+        int free = max - running;
+        if (host != null) {
+            Integer count = runningPerHost.get(host);
+            free = Math.min(free, maxPerHost - (count == null ? 0 : count));
+        }
+
+        int taken = Math.max(0, Math.min(wanted, free));
+        for (int i = 0; i < taken; i++) {
+            started(host);
+        }
+        return taken;
+    }
+
+    /**
+     * Gives back connections taken with {@link #reserve(String, int)}, starting any waiting tasks they make room for.
+     *
+     * @param host  the host the connections were to
+     * @param count the number of connections to give back
+     */
+    public static synchronized void release(String host, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            stopped(host);
+        }
+        promote();
+    }
+
+    private static synchronized void finished(Job job) {
+        stopped(job.host);
+        promote();
+    }
+
+    private static void started(String host) {
+        running++;
+
+        if (host != null) {
+            Integer count = runningPerHost.get(host);
+            runningPerHost.put(host, count == null ? 1 : count + 1);
+        }
+    }
+
+    private static void stopped(String host) {
+        running--;
+
+        if (host != null) {
+            int count = runningPerHost.get(host) - 1;
+            if (count == 0) {
+                runningPerHost.remove(host);
+            } else {
+                runningPerHost.put(host, count);
+            }
+        }
+    }
+
+    /**
+     * Starts as many waiting tasks as the limits allow, highest priority first. Only the head of each host's queue is
+     * looked at, and hosts already at their limit are skipped without looking at their tasks. The concurrent
+     * connections settings are read each time as they can be changed at any time from the settings tab.
+     */
+    private static void promote() {
+        int max = Math.max(1, SettingsManager.getConcurrentConnections());
+        int maxPerHost = Math.max(1, Math.min(SettingsManager.getConcurrentConnectionsPerHost(), max));
+
+        for (Priority priority : Priority.values()) {
+            Iterator<Map.Entry<String, Deque<Job>>> hosts = ready.get(priority).entrySet().iterator();
+            while (running < max && hosts.hasNext()) {
+                Map.Entry<String, Deque<Job>> entry = hosts.next();
+                String host = entry.getKey();
+                Deque<Job> jobs = entry.getValue();
+
+                while (running < max && !jobs.isEmpty()) {
+                    if (host != null) {
+                        Integer count = runningPerHost.get(host);
+                        if (count != null && count >= maxPerHost) {
+                            break;
+                        }
+                    }
+
+                    Job job = jobs.poll();
+                    queued--;
+                    started(host);
+                    EXECUTOR.execute(job);
+                }
+
+                if (jobs.isEmpty()) {
+                    hosts.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * How soon a download should be started compared to others which are waiting.
+     */
+    public enum Priority {
+        /**
+         * Files the install can't continue without, such as the Minecraft jar, libraries and required mods.
+         */
+        CRITICAL,
+
+        /**
+         * Files which can be downloaded once the critical ones are under way, such as assets and optional mods.
+         */
+        BULK
+    }
+
+    private static final class Job extends FutureTask<Object> {
+        private final String host;
+
+        private Job(Runnable task, String host) {
+            super(task, null);
+            this.host = host;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                finished(this);
+            }
+        }
+    }
+
+    private static final class DownloadThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ATLauncher-Download-" + this.count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
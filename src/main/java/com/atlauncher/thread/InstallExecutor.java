@@ -0,0 +1,93 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.thread;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The single, long lived executor that the work of installs other than downloading is run on, such as the stages of
+ * an install, installing mods as they're downloaded and extracting natives. Threads are created lazily and die off
+ * after a period of inactivity so an idle launcher doesn't hold onto any of them.
+ *
+ * No more than {@link #MAX_THREADS} tasks are run at once. Tasks are never queued: once every thread is busy, a task
+ * is run by the thread which submitted it. Tasks which wait on other tasks (such as a stage waiting on the mods it's
+ * installing) therefore can't end up waiting on work that has no thread to run it.
+ */
+public final class InstallExecutor {
+    /**
+     * The most tasks run at once on the install threads.
+     */
+    public static final int MAX_THREADS = Integer.valueOf(System.getProperty("com.atlauncher.thread.InstallExecutor" +
+            ".maxThreads", "8"));
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(0, Math.max(1, MAX_THREADS),
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new InstallThreadFactory(), new
+            ThreadPoolExecutor.CallerRunsPolicy());
+
+    private InstallExecutor() {
+    }
+
+    /**
+     * Gets the executor to run tasks on, such as for use with a {@link java.util.concurrent.CompletionService}. It
+     * can't be shut down, as it's shared by every install.
+     *
+     * @return the install executor
+     */
+    public static Executor getExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Submits a task to be run on one of the install threads.
+     *
+     * @param task the task to run
+     * @return the future representing the pending completion of the task
+     */
+    public static Future<?> submit(Runnable task) {
+        return EXECUTOR.submit(task);
+    }
+
+    /**
+     * Submits a task to be run on one of the install threads.
+     *
+     * @param task the task to run
+     * @return the future representing the pending result of the task
+     */
+    public static <T> Future<T> submit(Callable<T> task) {
+        return EXECUTOR.submit(task);
+    }
+
+    private static final class InstallThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ATLauncher-Install-" + this.count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
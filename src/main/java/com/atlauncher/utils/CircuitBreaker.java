@@ -0,0 +1,167 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+/**
+ * Stops requests being sent to a server which keeps failing, giving it time to recover rather than adding to its load.
+ *
+ * The breaker starts closed, letting every request through. After a number of failures in a row it opens, and no
+ * requests are let through for a cool down period. Once that's passed it's half open, letting a single request through
+ * to see if the server has recovered. If that request succeeds the breaker closes again, otherwise it opens again for
+ * twice as long as before, up to a limit.
+ */
+public final class CircuitBreaker {
+    /**
+     * How many failures in a row open a breaker by default.
+     */
+    public static final int THRESHOLD = Integer.valueOf(System.getProperty("com.atlauncher.utils.CircuitBreaker" +
+            ".threshold", "5"));
+
+    /**
+     * How long in milliseconds a breaker stays open the first time it opens by default.
+     */
+    public static final long COOL_DOWN = Long.valueOf(System.getProperty("com.atlauncher.utils.CircuitBreaker" +
+            ".coolDown", "30000"));
+
+    /**
+     * The longest time in milliseconds a breaker stays open by default, however many times it's failed while half open.
+     */
+    public static final long MAX_COOL_DOWN = Long.valueOf(System.getProperty("com.atlauncher.utils.CircuitBreaker" +
+            ".maxCoolDown", "300000"));
+
+    private final int threshold;
+    private final long coolDown;
+    private final long maxCoolDown;
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private int trips = 0;
+    private long openUntil = 0;
+    private boolean probing = false;
+
+    public CircuitBreaker() {
+        this(THRESHOLD, COOL_DOWN, MAX_COOL_DOWN);
+    }
+
+    /**
+     * Creates a breaker with the given limits.
+     *
+     * @param threshold   how many failures in a row open the breaker
+     * @param coolDown    how long in milliseconds the breaker stays open the first time it opens
+     * @param maxCoolDown the longest time in milliseconds the breaker stays open
+     */
+    public CircuitBreaker(int threshold, long coolDown, long maxCoolDown) {
+        this.threshold = Math.max(1, threshold);
+        this.coolDown = Math.max(0, coolDown);
+        this.maxCoolDown = Math.max(this.coolDown, maxCoolDown);
+    }
+
+    /**
+     * Checks if a request can be sent, without counting as the trial request if half open.
+     *
+     * @return true if the breaker is closed, or it's half open and no trial request has been sent yet
+     */
+    public synchronized boolean isAvailable() {
+        switch (this.getState()) {
+            case OPEN:
+                return false;
+            case HALF_OPEN:
+                return !this.probing;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Asks to send a request. If the breaker is half open, the first caller is let through as the trial request and
+     * the rest are turned away until it finishes.
+     *
+     * @return true if the request can be sent
+     */
+    public synchronized boolean allowRequest() {
+        switch (this.getState()) {
+            case OPEN:
+                return false;
+            case HALF_OPEN:
+                if (this.probing) {
+                    return false;
+                }
+
+                this.probing = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Gives back the trial request let through by {@link #allowRequest()} when it was cancelled before finding out if
+     * the server has recovered, so another trial request can be sent. Does nothing unless the breaker is half open.
+     */
+    public synchronized void release() {
+        if (this.getState() == State.HALF_OPEN) {
+            this.probing = false;
+        }
+    }
+
+    /**
+     * Records that a request succeeded, closing the breaker.
+     */
+    public synchronized void recordSuccess() {
+        this.state = State.CLOSED;
+        this.failures = 0;
+        this.trips = 0;
+        this.probing = false;
+    }
+
+    /**
+     * Records that a request failed, opening the breaker if it was half open or this makes too many failures in a row.
+     */
+    public synchronized void recordFailure() {
+        State state = this.getState();
+        if (state == State.OPEN) {
+            // Requests sent before the breaker opened can still be finishing, they shouldn't make it open for longer
+            return;
+        }
+
+        this.failures++;
+        if (state == State.HALF_OPEN || this.failures >= this.threshold) {
+            this.open();
+        }
+    }
+
+    public synchronized State getState() {
+        if (this.state == State.OPEN && System.currentTimeMillis() >= this.openUntil) {
+            this.state = State.HALF_OPEN;
+            this.probing = false;
+        }
+
+        return this.state;
+    }
+
+    private void open() {
+        long coolDown = Math.min(this.maxCoolDown, this.coolDown << Math.min(this.trips, 20));
+        this.trips++;
+        this.state = State.OPEN;
+        this.openUntil = System.currentTimeMillis() + coolDown;
+        this.probing = false;
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+}
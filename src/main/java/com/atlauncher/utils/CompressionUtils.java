@@ -23,22 +23,46 @@ import com.atlauncher.utils.walker.ZipVisitor;
 import org.tukaani.xz.XZInputStream;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Pack200;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 public final class CompressionUtils {
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int LOCAL_LENGTH = 30;
+    private static final int CENTRAL_LENGTH = 46;
+    private static final int END_LENGTH = 22;
+    private static final int DATA_DESCRIPTOR_FLAG = 1 << 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     public static void unzip(Path zip, Path dest) throws IOException {
         if (Files.exists(dest)) {
             FileUtils.delete(dest);
@@ -155,6 +179,68 @@ public final class CompressionUtils {
         }
     }
 
+    /**
+     * Copies a jar or zip file without anything under META-INF, such as the signatures which stop a jar from loading
+     * once other files have been added to it.
+     *
+     * @param in  the file to copy
+     * @param out the file to copy it to
+     * @throws IOException if the file couldn't be read or written
+     * @see #filterZip(Path, Path, EntryFilter)
+     */
+    public static void stripMetaInf(Path in, Path out) throws IOException {
+        filterZip(in, out, new EntryFilter() {
+            @Override
+            public boolean accept(String name) {
+                return !name.startsWith("META-INF/");
+            }
+        });
+    }
+
+    /**
+     * Copies a zip file with only the entries the filter accepts. The entries kept are copied across byte for byte,
+     * still compressed, with only the central directory at the end of the file written fresh, so nothing is inflated
+     * or deflated again. Zip files this can't copy as is (such as zip64 files) are read in and compressed again
+     * instead.
+     *
+     * @param in     the file to copy
+     * @param out    the file to copy it to
+     * @param filter decides which entries to keep
+     * @throws IOException if the file couldn't be read or written
+     */
+    public static void filterZip(Path in, Path out, EntryFilter filter) throws IOException {
+        try (FileChannel input = FileChannel.open(in, StandardOpenOption.READ);
+             FileChannel output = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption
+                     .TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (copyEntries(input, output, filter)) {
+                return;
+            }
+        }
+
+        LogManager.debug("Zip file " + in + " can't be copied as is, compressing it again instead");
+
+        try (ZipFile zip = new ZipFile(in.toFile());
+             ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(out))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!filter.accept(entry.getName())) {
+                    continue;
+                }
+
+                output.putNextEntry(new ZipEntry(entry.getName()));
+                try (InputStream input = zip.getInputStream(entry)) {
+                    int read;
+                    while ((read = input.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                }
+                output.closeEntry();
+            }
+        }
+    }
+
     private static FileSystem createZipFileSystem(Path zip, boolean create) throws IOException {
         URI uri = URI.create("jar:file:" + zip.toUri().getPath());
 
@@ -166,4 +252,183 @@ public final class CompressionUtils {
 
         return FileSystems.newFileSystem(uri, env);
     }
-}
\ No newline at end of file
+
+    /**
+     * Copies the accepted entries from one zip file to another without decompressing them.
+     *
+     * @return false if the zip file uses features this can't copy (zip64 or spanning disks), in which case nothing
+     * useful has been written
+     */
+    private static boolean copyEntries(FileChannel input, FileChannel output, EntryFilter filter) throws IOException {
+        long size = input.size();
+        int tailLength = (int) Math.min(size, END_LENGTH + 0xFFFF);
+        ByteBuffer tail = read(input, size - tailLength, tailLength);
+
+        int end = -1;
+        for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end == -1) {
+            throw new ZipException("No end of central directory found");
+        }
+
+        int count = unsignedShort(tail, end + 10);
+        long directorySize = unsignedInt(tail, end + 12);
+        long directoryOffset = unsignedInt(tail, end + 16);
+        int commentLength = Math.min(unsignedShort(tail, end + 20), tailLength - end - END_LENGTH);
+        if (unsignedShort(tail, end + 4) != 0 || unsignedShort(tail, end + 6) != 0 || unsignedShort(tail, end + 8) !=
+                count || count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            return false;
+        }
+
+        ByteBuffer directory = read(input, directoryOffset, (int) directorySize);
+        List<Entry> entries = new ArrayList<>(count);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (directory.getInt(position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Bad central directory entry at " + (directoryOffset + position));
+            }
+
+            int nameLength = unsignedShort(directory, position + 28);
+            int length = CENTRAL_LENGTH + nameLength + unsignedShort(directory, position + 30) + unsignedShort
+                    (directory, position + 32);
+            long compressedSize = unsignedInt(directory, position + 20);
+            long offset = unsignedInt(directory, position + 42);
+            if (compressedSize == 0xFFFFFFFFL || unsignedInt(directory, position + 24) == 0xFFFFFFFFL || offset ==
+                    0xFFFFFFFFL || unsignedShort(directory, position + 34) != 0) {
+                return false;
+            }
+
+            byte[] name = new byte[nameLength];
+            ByteBuffer slice = directory.duplicate();
+            slice.position(position + CENTRAL_LENGTH);
+            slice.get(name);
+
+            entries.add(new Entry(new String(name, StandardCharsets.UTF_8), position, length, unsignedShort(directory,
+                    position + 8), compressedSize, offset));
+            position += length;
+        }
+
+        ByteBuffer newDirectory = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+        int kept = 0;
+        for (Entry entry : entries) {
+            if (!filter.accept(entry.name)) {
+                continue;
+            }
+
+            ByteBuffer header = read(input, entry.offset, LOCAL_LENGTH);
+            if (header.getInt(0) != LOCAL_SIGNATURE) {
+                throw new ZipException("Bad local header for " + entry.name + " at " + entry.offset);
+            }
+
+            long dataEnd = entry.offset + LOCAL_LENGTH + unsignedShort(header, 26) + unsignedShort(header, 28) + entry
+                    .compressedSize;
+            if ((entry.flags & DATA_DESCRIPTOR_FLAG) != 0) {
+                // The signature on a data descriptor is optional, so check for it to know how long the descriptor is
+                dataEnd += read(input, dataEnd, 4).getInt(0) == DATA_DESCRIPTOR_SIGNATURE ? 16 : 12;
+            }
+
+            long offset = output.position();
+            transfer(input, entry.offset, dataEnd - entry.offset, output);
+
+            ByteBuffer record = directory.duplicate();
+            record.position(entry.directoryPosition);
+            record.limit(entry.directoryPosition + entry.directoryLength);
+            int start = newDirectory.position();
+            newDirectory.put(record);
+            newDirectory.putInt(start + 42, (int) offset);
+            kept++;
+        }
+
+        long newDirectoryOffset = output.position();
+        newDirectory.flip();
+        int newDirectorySize = newDirectory.remaining();
+        write(output, newDirectory);
+
+        ByteBuffer newEnd = ByteBuffer.allocate(END_LENGTH + commentLength).order(ByteOrder.LITTLE_ENDIAN);
+        newEnd.putInt(END_SIGNATURE);
+        newEnd.putShort((short) 0);
+        newEnd.putShort((short) 0);
+        newEnd.putShort((short) kept);
+        newEnd.putShort((short) kept);
+        newEnd.putInt(newDirectorySize);
+        newEnd.putInt((int) newDirectoryOffset);
+        newEnd.putShort((short) commentLength);
+        ByteBuffer comment = tail.duplicate();
+        comment.position(end + END_LENGTH);
+        comment.limit(end + END_LENGTH + commentLength);
+        newEnd.put(comment);
+        newEnd.flip();
+        write(output, newEnd);
+
+        return true;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) == -1) {
+                throw new EOFException("Unexpected end of zip file at " + (position + buffer.position()));
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void transfer(FileChannel input, long position, long count, FileChannel output) throws IOException {
+        while (count > 0) {
+            long transferred = input.transferTo(position, count, output);
+            if (transferred <= 0) {
+                throw new EOFException("Unexpected end of zip file at " + position);
+            }
+
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private static int unsignedShort(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    private static long unsignedInt(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Decides which entries to keep when copying a zip file.
+     */
+    public interface EntryFilter {
+        boolean accept(String name);
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final int directoryPosition;
+        private final int directoryLength;
+        private final int flags;
+        private final long compressedSize;
+        private final long offset;
+
+        private Entry(String name, int directoryPosition, int directoryLength, int flags, long compressedSize, long
+                offset) {
+            this.name = name;
+            this.directoryPosition = directoryPosition;
+            this.directoryLength = directoryLength;
+            this.flags = flags;
+            this.compressedSize = compressedSize;
+            this.offset = offset;
+        }
+    }
+}
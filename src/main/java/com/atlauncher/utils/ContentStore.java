@@ -0,0 +1,412 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.FileSystem;
+import com.atlauncher.managers.LogManager;
+import com.atlauncher.nio.JsonFile;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A store of files shared between instances, kept under Configs/Store and named by their SHA-1 hash. Files installed
+ * through the store are hard linked into the instance rather than copied, so every instance using the same library,
+ * jar or mod shares a single copy on disk. When a hard link can't be made (such as when the instance is on a different
+ * drive) the file is copied instead.
+ *
+ * Each object in the store keeps track of the installed files linked to it, so it can be removed once nothing uses it.
+ * A file's reference is moved when it's installed over with a different file, dropped when it's removed through
+ * {@link #forget(Path)}, and dropped by {@link #prune(Path)} once it's been deleted or replaced outside of the store.
+ *
+ * The store can be moved somewhere else with the com.atlauncher.utils.ContentStore.dir system property.
+ */
+public final class ContentStore {
+    private static final Map<String, Set<String>> references = new ConcurrentHashMap<>();
+    private static final Map<String, String> files = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+    private static volatile Path loaded = null;
+    private static volatile boolean dirty = false;
+    private static boolean hooked = false;
+
+    private ContentStore() {
+    }
+
+    /**
+     * Installs a file into an instance, hard linking it from the store where possible and copying it otherwise.
+     *
+     * @param from         the file to install
+     * @param to           the directory to install it into, or the path to install it to if withFilename is true
+     * @param withFilename if the to path includes the filename to install the file as
+     * @return if the file was installed or not
+     */
+    public static boolean install(Path from, Path to, boolean withFilename) {
+        Path target = withFilename ? to : to.resolve(from.getFileName());
+
+        if (!Files.isRegularFile(from)) {
+            return copy(from, target);
+        }
+
+        Hashing.HashCode hash = VerificationLedger.sha1(from);
+        if (hash.equals(Hashing.HashCode.EMPTY)) {
+            return copy(from, target);
+        }
+
+        Path object = store(from, hash.toString());
+        if (object == null) {
+            return copy(from, target);
+        }
+
+        try {
+            if (Files.exists(target) && Files.isSameFile(object, target)) {
+                reference(hash.toString(), target);
+                return true;
+            }
+
+            if (!Files.exists(target.getParent())) {
+                FileUtils.createDirectory(target.getParent());
+            }
+
+            Files.deleteIfExists(target);
+            Files.createLink(target, object);
+            reference(hash.toString(), target);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            LogManager.debug("Couldn't link " + target + " to the store, copying it instead: " + e.getMessage());
+            return copy(from, target);
+        }
+    }
+
+    /**
+     * Installs a file into an instance in place of a broken copy. As the broken copy is likely hard linked to the
+     * store, the object in the store is thrown away first if it no longer matches its hash, so it's stored again from
+     * the given file rather than linked back in as it is.
+     *
+     * @param from the file to install
+     * @param to   the path to install it to
+     * @return if the file was installed or not
+     */
+    public static boolean reinstall(Path from, Path to) {
+        Hashing.HashCode hash = VerificationLedger.sha1(from);
+        if (!hash.equals(Hashing.HashCode.EMPTY)) {
+            Path object = object(hash.toString());
+            if (Files.exists(object) && !VerificationLedger.sha1(object).equals(hash)) {
+                try {
+                    Files.delete(object);
+                } catch (IOException e) {
+                    LogManager.logStackTrace("Error removing broken object " + object + " from the store", e);
+                }
+            }
+        }
+
+        try {
+            Files.deleteIfExists(to);
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error removing broken file " + to, e);
+        }
+
+        return install(from, to, true);
+    }
+
+    /**
+     * Forgets an installed file which has been, or is about to be, removed, removing the object it was linked to if
+     * nothing else uses it.
+     *
+     * @param file the installed file
+     */
+    public static void forget(Path file) {
+        load();
+
+        String key = key(file);
+        synchronized (lock) {
+            String hash = files.remove(key);
+            if (hash != null) {
+                unreference(hash, key);
+            }
+        }
+    }
+
+    /**
+     * Forgets all the files the given instance was using from the store, removing any which are no longer used by any
+     * instance.
+     *
+     * @param instance the root directory of the instance
+     */
+    public static void release(Path instance) {
+        forgetAll(instance, false);
+    }
+
+    /**
+     * Forgets the files in the given instance which have been deleted, or replaced by something other than a link to
+     * the store, since they were installed (such as by reinstalling the instance or the user removing a mod). Objects
+     * no longer used by anything are removed.
+     *
+     * @param instance the root directory of the instance
+     */
+    public static void prune(Path instance) {
+        forgetAll(instance, true);
+    }
+
+    /**
+     * Gets how many installed files are linked to the object with the given hash.
+     *
+     * @param hash the SHA-1 hash of the object
+     * @return the number of files using the object
+     */
+    public static int getReferenceCount(String hash) {
+        load();
+
+        synchronized (lock) {
+            Set<String> users = references.get(hash);
+            return users == null ? 0 : users.size();
+        }
+    }
+
+    /**
+     * Writes the reference index out to disk if anything has changed since it was loaded or last saved.
+     */
+    public static void save() {
+        if (loaded == null || !dirty) {
+            return;
+        }
+
+        synchronized (lock) {
+            dirty = false;
+
+            Map<String, Set<String>> copy = new HashMap<>();
+            for (Map.Entry<String, Set<String>> entry : references.entrySet()) {
+                copy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            }
+
+            Path file = loaded.resolve("references.json");
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                FileUtils.createDirectory(loaded);
+                new JsonFile(tmp, true).write(copy);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception e) {
+                dirty = true;
+                LogManager.logStackTrace("Error saving the store references", e);
+            }
+        }
+    }
+
+    private static boolean copy(Path from, Path to) {
+        forget(to);
+        return FileUtils.copyFile(from, to, true);
+    }
+
+    private static Path store(Path from, String hash) {
+        Path object = object(hash);
+        if (Files.exists(object)) {
+            return object;
+        }
+
+        FileUtils.createDirectory(object.getParent());
+
+        // Copied rather than linked, as files in the Downloads and Libraries folders can be rewritten in place
+        Path tmp = object.resolveSibling(hash + ".tmp" + Thread.currentThread().getId());
+        try {
+            Files.copy(from, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, object, StandardCopyOption.ATOMIC_MOVE);
+            return object;
+        } catch (FileAlreadyExistsException e) {
+            return object;
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error adding " + from + " to the store", e);
+            return null;
+        } finally {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void reference(String hash, Path file) {
+        load();
+
+        String key = key(file);
+        synchronized (lock) {
+            String old = files.put(key, hash);
+            if (hash.equals(old)) {
+                return;
+            }
+
+            if (old != null) {
+                unreference(old, key);
+            }
+
+            Set<String> users = references.get(hash);
+            if (users == null) {
+                users = new HashSet<>();
+                references.put(hash, users);
+            }
+
+            users.add(key);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Drops one file's reference to an object, removing the object if nothing else uses it. Must be called holding
+     * the lock.
+     */
+    private static void unreference(String hash, String key) {
+        Set<String> users = references.get(hash);
+        if (users == null || !users.remove(key)) {
+            return;
+        }
+
+        dirty = true;
+
+        if (users.isEmpty()) {
+            references.remove(hash);
+            delete(hash);
+        }
+    }
+
+    private static void forgetAll(Path instance, boolean onlyStale) {
+        load();
+
+        String prefix = key(instance) + File.separator;
+        synchronized (lock) {
+            Iterator<Map.Entry<String, Set<String>>> it = references.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Set<String>> entry = it.next();
+
+                Iterator<String> users = entry.getValue().iterator();
+                while (users.hasNext()) {
+                    String key = users.next();
+                    if (!key.startsWith(prefix) || (onlyStale && isLinked(key, entry.getKey()))) {
+                        continue;
+                    }
+
+                    users.remove();
+                    if (entry.getKey().equals(files.get(key))) {
+                        files.remove(key);
+                    }
+                    dirty = true;
+                }
+
+                if (entry.getValue().isEmpty()) {
+                    it.remove();
+                    delete(entry.getKey());
+                }
+            }
+        }
+
+        save();
+    }
+
+    private static boolean isLinked(String key, String hash) {
+        try {
+            return Files.isSameFile(Paths.get(key), object(hash));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void delete(String hash) {
+        Path object = object(hash);
+        try {
+            Files.deleteIfExists(object);
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error removing " + object + " from the store", e);
+        }
+    }
+
+    private static Path directory() {
+        String dir = System.getProperty("com.atlauncher.utils.ContentStore.dir");
+        return dir == null ? FileSystem.STORE : Paths.get(dir);
+    }
+
+    private static Path object(String hash) {
+        return directory().resolve("objects").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static void load() {
+        Path dir = directory();
+        if (dir.equals(loaded)) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (dir.equals(loaded)) {
+                return;
+            }
+
+            if (loaded != null) {
+                // The store has been moved, so save what we have before switching to the new one
+                save();
+            }
+
+            references.clear();
+            files.clear();
+            dirty = false;
+
+            Path file = dir.resolve("references.json");
+            if (Files.exists(file)) {
+                try {
+                    Map<String, Set<String>> map = new JsonFile(file).convert(new TypeToken<Map<String,
+                            Set<String>>>() {
+                    }.getType());
+
+                    if (map != null) {
+                        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+                            references.put(entry.getKey(), new HashSet<>(entry.getValue()));
+                            for (String key : entry.getValue()) {
+                                files.put(key, entry.getKey());
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    LogManager.logStackTrace("Error loading the store references, starting with none", e);
+                }
+            }
+
+            if (!hooked) {
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        save();
+                    }
+                }));
+                hooked = true;
+            }
+
+            loaded = dir;
+        }
+    }
+}
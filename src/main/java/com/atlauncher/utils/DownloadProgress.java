@@ -0,0 +1,187 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.listener.ProgressListener;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the bytes downloaded for a single install. Every download thread adds to its own stripe of the counter, so
+ * threads downloading at the same time don't fight over one value, and nothing is sent to the UI as bytes come in.
+ * Instead a single timer shared by every install samples the total at a fixed rate and tells the listener if it has
+ * changed.
+ */
+public final class DownloadProgress implements ProgressListener {
+    /**
+     * How often, in milliseconds, the progress of running installs is sent to their listeners.
+     */
+    public static final long REFRESH_MILLIS = Long.valueOf(System.getProperty("com.atlauncher.utils" +
+            ".DownloadProgress.refreshMillis", "100"));
+
+    private static final ScheduledExecutorService SAMPLER = Executors.newSingleThreadScheduledExecutor(new
+            ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ATLauncher-Progress");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Each stripe is padded out to its own cache line so threads adding to neighbouring stripes don't slow each other
+     * down.
+     */
+    private static final int PADDING = 8;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+    private final Listener listener;
+    private volatile long base = 0;
+    private volatile long total = 0;
+    private long sampled = 0;
+    private int active = 0;
+    private ScheduledFuture<?> sampling;
+
+    public DownloadProgress(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void update(long bytesRead, long contentLength, boolean done) {
+        if (bytesRead > 0) {
+            this.add(bytesRead);
+        }
+    }
+
+    /**
+     * Adds to the bytes downloaded. Safe to call from any number of threads at once.
+     *
+     * @param bytes the number of bytes downloaded
+     */
+    public void add(long bytes) {
+        this.cells.addAndGet((int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING, bytes);
+    }
+
+    /**
+     * Gets the bytes downloaded since {@link #start(long)} was last called.
+     *
+     * @return the number of bytes downloaded
+     */
+    public long getDownloaded() {
+        return this.sum() - this.base;
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Starts counting a new set of downloads from zero, sending the progress to the listener whenever it changes until
+     * {@link #stop()} is called. If downloads are already being counted (such as when two stages of an install
+     * download at the same time) the new downloads are counted along with them, adding to the total, and the count
+     * carries on until both have called {@link #stop()}.
+     *
+     * @param total the total number of bytes expected to be downloaded, or 0 if not known
+     */
+    public synchronized void start(long total) {
+        if (this.active++ > 0) {
+            this.total += total;
+            return;
+        }
+
+        this.base = this.sum();
+        this.total = total;
+        this.sampled = 0;
+        this.sampling = SAMPLER.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DownloadProgress.this) {
+                    // Don't send anything once stopped, in case the install has moved on to showing something else
+                    if (sampling != null) {
+                        sample();
+                    }
+                }
+            }
+        }, 0, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sending progress to the listener, after sending it the final count if it's changed since it was last sent.
+     * While other downloads started with {@link #start(long)} are still being counted, this only stops counting the
+     * downloads this call was paired with.
+     */
+    public synchronized void stop() {
+        if (this.active == 0 || --this.active > 0) {
+            return;
+        }
+
+        if (this.sampling != null) {
+            this.sampling.cancel(false);
+            this.sampling = null;
+            this.sample();
+        }
+    }
+
+    /**
+     * Checks if downloads are being counted, from the first call to {@link #start(long)} until every one of them has
+     * been paired with a call to {@link #stop()}.
+     *
+     * @return if downloads are being counted
+     */
+    public synchronized boolean isActive() {
+        return this.active > 0;
+    }
+
+    private void sample() {
+        long downloaded = this.getDownloaded();
+        if (downloaded != this.sampled) {
+            this.sampled = downloaded;
+            this.listener.progressed(downloaded, this.total);
+        }
+    }
+
+    private long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += this.cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    /**
+     * Receives the progress of an install's downloads.
+     */
+    public interface Listener {
+        void progressed(long downloaded, long total);
+    }
+}
@@ -165,6 +165,48 @@ public class FileUtils {
         return true;
     }
 
+    /**
+     * Puts a file in place as a hard link to another file, so both share the same data on disk. If a hard link can't
+     * be made (such as across drives) a symbolic link is tried, and if that isn't allowed either the file is copied.
+     *
+     * @param from the path of the file to link to
+     * @param to   the path of the link to create
+     * @return if the file was put in place or not
+     */
+    public static boolean linkFile(Path from, Path to) {
+        if (!Files.isRegularFile(from)) {
+            LogManager.error("File " + from + " cannot be linked to from " + to + " as it isn't a file!");
+            return false;
+        }
+
+        try {
+            if (Files.exists(to) && Files.isSameFile(from, to)) {
+                return true;
+            }
+
+            if (!Files.exists(to.getParent())) {
+                FileUtils.createDirectory(to.getParent());
+            }
+
+            Files.deleteIfExists(to);
+        } catch (IOException e) {
+            LogManager.logStackTrace("Failed to link file " + from + " to " + to, e);
+            return false;
+        }
+
+        try {
+            Files.createLink(to, from);
+            return true;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            try {
+                Files.createSymbolicLink(to, from.toAbsolutePath());
+                return true;
+            } catch (IOException | UnsupportedOperationException | SecurityException e1) {
+                return copyFile(from, to, true);
+            }
+        }
+    }
+
     public static boolean copyDirectory(Path from, Path to) {
         return copyDirectory(from, to, false);
     }
@@ -295,7 +337,7 @@ public class FileUtils {
                 if (entry.getName().endsWith("aux.class")) {
                     entryName = "aux_class";
                 }
-                if (extractRule != null && extractRule.exclude.contains(entryName)) {
+                if (extractRule != null && extractRule.excludes(entryName)) {
                     continue;
                 }
                 if (entry.isDirectory()) {
@@ -308,6 +350,9 @@ public class FileUtils {
                     BufferedInputStream bis = new BufferedInputStream(zipFile.getInputStream(entry));
                     int b;
                     byte buffer[] = new byte[1024];
+                    // Removed first rather than written over, as it may be hard linked to the store and other
+                    // instances
+                    Files.deleteIfExists(destinationFilePath.toPath());
                     FileOutputStream fos = new FileOutputStream(destinationFilePath);
                     BufferedOutputStream bos = new BufferedOutputStream(fos, 1024);
                     while ((b = bis.read(buffer, 0, 1024)) != -1) {
@@ -335,6 +380,8 @@ public class FileUtils {
             URI base = file.toURI();
             Deque<File> queue = new LinkedList<File>();
             queue.push(file);
+            // Removed first rather than written over, as it may be hard linked to the store and other instances
+            Files.deleteIfExists(out);
             OutputStream stream = new FileOutputStream(out.toFile());
             Closeable res = stream;
             ZipOutputStream zout = null;
@@ -18,48 +18,121 @@
 package com.atlauncher.utils;
 
 import com.atlauncher.collection.Caching;
-import com.atlauncher.io.ByteArrayInputStream;
 import com.atlauncher.io.ByteArrayOutputStream;
 import com.atlauncher.managers.LogManager;
 
-import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 public final class Hashing {
+    public static final String MD5 = "MD5";
+    public static final String SHA1 = "SHA-1";
+
+    /**
+     * The size of the direct buffers files are read through when they're hashed.
+     */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
     private static final char[] hex = "0123456789abcdef".toCharArray();
-    private static final SoftReference<Caching.Cache<Object, HashCode>> hashcodes = new SoftReference<>(Caching
-            .<Object, HashCode>newLRU());
+
+    /**
+     * Buffers left over from earlier hashing, so hashing lots of files doesn't allocate a new direct buffer for each.
+     * Only a few are kept, any more are left for the garbage collector.
+     */
+    private static final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(Math.max(2, Runtime
+            .getRuntime().availableProcessors() * 2));
+    private static final Caching.Cache<Object, HashCode> hashcodes = Caching.newLRU();
 
     public static HashCode md5(Path file) {
+        return digest(file, MD5)[0];
+    }
+
+    /**
+     * Works out several hashes of a file in a single pass over it. The file is read through a pooled direct buffer,
+     * rather than memory mapped, as on Windows a mapped file can't be moved or deleted until the mapping is garbage
+     * collected.
+     *
+     * @param file       the file to hash
+     * @param algorithms the names of the algorithms to use, such as {@link #MD5} and {@link #SHA1}
+     * @return the hashes of the file in the same order as the algorithms, all {@link HashCode#EMPTY} if the file
+     * doesn't exist or couldn't be read
+     */
+    public static HashCode[] digest(Path file, String... algorithms) {
+        HashCode[] hashes = new HashCode[algorithms.length];
+        Arrays.fill(hashes, HashCode.EMPTY);
+
         if (!Files.exists(file)) {
-            return HashCode.EMPTY;
+            return hashes;
         }
 
-        try (Hasher hasher = new MD5Hasher(Files.newInputStream(file))) {
-            return hasher.hash();
+        try {
+            MessageDigest[] digests = new MessageDigest[algorithms.length];
+            for (int i = 0; i < algorithms.length; i++) {
+                digests[i] = MessageDigest.getInstance(algorithms[i]);
+            }
+
+            update(file, digests);
+
+            for (int i = 0; i < digests.length; i++) {
+                hashes[i] = new HashCode(digests[i].digest());
+            }
         } catch (Exception e) {
-            LogManager.logStackTrace("Error hashing (MD5) file " + file.getFileName(), e);
-            return HashCode.EMPTY;
+            LogManager.logStackTrace("Error hashing (" + Arrays.toString(algorithms) + ") file " + file.getFileName
+                    (), e);
+            Arrays.fill(hashes, HashCode.EMPTY);
+        }
+
+        return hashes;
+    }
+
+    private static void update(Path file, MessageDigest... digests) throws IOException {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (fc.read(buffer) != -1) {
+                buffer.flip();
+                for (MessageDigest digest : digests) {
+                    // Each digest reads the same bytes, so rewind to where they start for the next one
+                    buffer.mark();
+                    digest.update(buffer);
+                    buffer.reset();
+                }
+                buffer.clear();
+            }
+        } finally {
+            buffer.clear();
+            buffers.offer(buffer);
         }
     }
 
+    private static HashCode digest(byte[] bytes, String algorithm) throws NoSuchAlgorithmException {
+        return new HashCode(MessageDigest.getInstance(algorithm).digest(bytes));
+    }
+
     private static HashCode md5Internal(String str) {
         if (str == null || str.isEmpty()) {
             return HashCode.EMPTY;
         }
 
-        try (Hasher hasher = new MD5Hasher(new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8)))) {
-            return hasher.hash();
+        try {
+            return digest(str.getBytes(StandardCharsets.UTF_8), MD5);
         } catch (Exception e) {
             LogManager.logStackTrace("Error hashing (MD5) string " + str, e);
             return HashCode.EMPTY;
@@ -77,9 +150,7 @@ public final class Hashing {
             oos.writeObject(obj);
             oos.flush();
 
-            try (Hasher hasher = new MD5Hasher(new ByteArrayInputStream(bos.toByteArray()))) {
-                return hasher.hash();
-            }
+            return digest(bos.toByteArray(), MD5);
         } catch (Exception e) {
             LogManager.logStackTrace("Error hashing (MD5) object " + obj.getClass(), e);
             return HashCode.EMPTY;
@@ -88,12 +159,12 @@ public final class Hashing {
 
     public static HashCode md5(String str) {
         try {
-            HashCode code = hashcodes.get().get(str);
+            HashCode code = hashcodes.get(str);
             if (code != null) {
                 return code;
             }
             code = md5Internal(str);
-            hashcodes.get().put(str, code);
+            hashcodes.put(str, code);
             return code;
         } catch (Exception e) {
             LogManager.logStackTrace("Error hashing (MD5) string " + str, e);
@@ -103,12 +174,12 @@ public final class Hashing {
 
     public static HashCode md5(Object obj) {
         try {
-            HashCode code = hashcodes.get().get(obj);
+            HashCode code = hashcodes.get(obj);
             if (code != null) {
                 return code;
             }
             code = md5Internal(obj);
-            hashcodes.get().put(obj, code);
+            hashcodes.put(obj, code);
             return code;
         } catch (Exception e) {
             LogManager.logStackTrace("Error hashing (MD5) obj " + obj.getClass(), e);
@@ -117,16 +188,7 @@ public final class Hashing {
     }
 
     public static HashCode sha1(Path file) {
-        if (!Files.exists(file)) {
-            return HashCode.EMPTY;
-        }
-
-        try (Hasher hasher = new SHA1Hasher(Files.newInputStream(file))) {
-            return hasher.hash();
-        } catch (Exception e) {
-            LogManager.logStackTrace("Error hashing (SHA-1) file " + file.getFileName(), e);
-            return HashCode.EMPTY;
-        }
+        return digest(file, SHA1)[0];
     }
 
     public static HashCode sha1(String str) {
@@ -134,234 +196,295 @@ public final class Hashing {
             return HashCode.EMPTY;
         }
 
-        try (Hasher hasher = new SHA1Hasher(new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8)))) {
-            return hasher.hash();
+        try {
+            return digest(str.getBytes(StandardCharsets.UTF_8), SHA1);
         } catch (Exception e) {
             LogManager.logStackTrace("Error hashing (SHA-1) string " + str, e);
             return HashCode.EMPTY;
         }
     }
 
-    private interface Hasher extends Closeable {
-        public HashCode hash();
+    /**
+     * Wraps the given channel so that an MD5 hash is worked out of all the bytes read through it.
+     *
+     * @param channel the channel to read from
+     * @return the wrapped channel
+     */
+    public static DigestingChannel md5Channel(ReadableByteChannel channel) throws NoSuchAlgorithmException {
+        return new DigestingChannel(channel, MessageDigest.getInstance(MD5));
+    }
+
+    /**
+     * Wraps the given channel so that a SHA-1 hash is worked out of all the bytes read through it.
+     *
+     * @param channel the channel to read from
+     * @return the wrapped channel
+     */
+    public static DigestingChannel sha1Channel(ReadableByteChannel channel) throws NoSuchAlgorithmException {
+        return new DigestingChannel(channel, MessageDigest.getInstance(SHA1));
     }
 
-    private static final class SHA1Hasher implements Hasher {
-        private final InputStream is;
+    /**
+     * A channel which works out the hash of the bytes read through it as they pass, so a file being downloaded can be
+     * checked without reading it back off the disk afterwards.
+     */
+    public static final class DigestingChannel implements ReadableByteChannel {
+        private final ReadableByteChannel channel;
         private final MessageDigest digest;
 
-        private SHA1Hasher(InputStream is) throws NoSuchAlgorithmException {
-            this.is = is;
-            this.digest = MessageDigest.getInstance("SHA-1");
+        private DigestingChannel(ReadableByteChannel channel, MessageDigest digest) {
+            this.channel = channel;
+            this.digest = digest;
         }
 
-        @Override
-        public HashCode hash() {
-            try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-                byte[] buffer = new byte[8192];
-                int len;
-                while ((len = this.is.read(buffer, 0, 8192)) != -1) {
-                    bos.write(buffer, 0, len);
-                }
-
-                return new HashCode(this.digest.digest(bos.toByteArray()));
-            } catch (Exception e) {
-                LogManager.logStackTrace("Error hashing (MD5)", e);
-                return null;
-            }
+        /**
+         * Adds the contents of the given file to the hash, for when the bytes read through this channel are being
+         * appended to the end of the file.
+         *
+         * @param file the file to add to the hash
+         */
+        public void update(Path file) throws IOException {
+            Hashing.update(file, this.digest);
         }
 
         @Override
-        public void close() throws IOException {
-            this.is.close();
-        }
-    }
-
-    private static final class MD5Hasher implements Hasher {
-        private final InputStream is;
-        private final MessageDigest digest;
+        public int read(ByteBuffer dst) throws IOException {
+            int start = dst.position();
+            int read = this.channel.read(dst);
+
+            if (read > 0) {
+                ByteBuffer bytes = dst.duplicate();
+                bytes.limit(dst.position());
+                bytes.position(start);
+                this.digest.update(bytes);
+            }
 
-        private MD5Hasher(InputStream is) throws NoSuchAlgorithmException {
-            this.is = is;
-            this.digest = MessageDigest.getInstance("MD5");
+            return read;
         }
 
-        @Override
+        /**
+         * Gets the hash of all the bytes read so far. This can only be called once.
+         *
+         * @return the hash of the bytes read
+         */
         public HashCode hash() {
-            try {
-                byte[] buffer = new byte[1024];
-                for (int read = this.is.read(buffer, 0, 1024); read > -1; read = this.is.read(buffer, 0, 1024)) {
-                    this.digest.update(buffer, 0, read);
-                }
+            return new HashCode(this.digest.digest());
+        }
 
-                return new HashCode(this.digest.digest());
-            } catch (Exception e) {
-                LogManager.logStackTrace("Error hashing (MD5)", e);
-                return HashCode.EMPTY;
-            }
+        @Override
+        public boolean isOpen() {
+            return this.channel.isOpen();
         }
 
         @Override
         public void close() throws IOException {
-            this.is.close();
+            this.channel.close();
         }
     }
 
+    /**
+     * A hash, such as an MD5 or SHA-1 hash. Hashes of up to 24 bytes (which covers both MD5 and SHA-1) are held in
+     * three longs rather than an array, so creating, comparing and hashing them doesn't touch any memory beyond the
+     * object itself. Any bytes past the first 24 are kept in an array.
+     */
     public static final class HashCode implements Serializable, Cloneable {
-        private static final SoftReference<Caching.Cache<String, HashCode>> hashescache = new SoftReference<>(Caching
-                .<String, HashCode>newLRU());
+        private static final long serialVersionUID = 1L;
 
-        public static final HashCode EMPTY = new HashCode(new byte[0]);
+        /**
+         * The value of each hex character, or -1 for characters which aren't hex.
+         */
+        private static final byte[] DECODE = new byte[128];
 
-        public static HashCode fromString(String str) {
-            try {
-                HashCode code = hashescache.get().get(str);
-                if (code != null) {
-                    return code;
-                }
-                code = fromStringInternal(str);
-                hashescache.get().put(str, code);
-                return code;
-            } catch (Exception e) {
-                return fromStringInternal(str);
+        static {
+            Arrays.fill(DECODE, (byte) -1);
+            for (int i = 0; i < 10; i++) {
+                DECODE['0' + i] = (byte) i;
+            }
+            for (int i = 0; i < 6; i++) {
+                DECODE['a' + i] = (byte) (10 + i);
+                DECODE['A' + i] = (byte) (10 + i);
             }
         }
 
-        private static HashCode fromStringInternal(String str) {
-            if (str == null || str.isEmpty()) {
-                return EMPTY;
-            }
+        private static final Caching.Cache<HashCode, HashCode> interned = Caching.newLRU();
 
-            if (!(str.length() >= 2)) {
-                return EMPTY;
-            }
+        public static final HashCode EMPTY = new HashCode(new byte[0]);
 
-            if (!(str.length() % 2 == 0)) {
+        /**
+         * Parses a hash from its hex string.
+         *
+         * @param str the hex string
+         * @return the hash, or {@link #EMPTY} if the string is empty or isn't a whole number of bytes
+         */
+        public static HashCode fromString(String str) {
+            if (str == null || str.length() < 2 || str.length() % 2 != 0) {
                 return EMPTY;
             }
 
-            byte[] bits = new byte[str.length() / 2];
-            for (int i = 0; i < str.length(); i += 2) {
-                int ch1 = decode(str.charAt(i)) << 4;
-                int ch2 = decode(str.charAt(i + 1));
-                bits[i / 2] = (byte) (ch1 + ch2);
-            }
-
-            return new HashCode(bits);
+            return new HashCode(str);
         }
 
-        private static byte[] decode(String str) {
-            byte[] bits = new byte[str.length() / 2];
-            for (int i = 0; i < str.length(); i += 2) {
-                int ch1 = decode(str.charAt(i)) << 4;
-                int ch2 = decode(str.charAt(i + 1));
-                bits[i / 2] = (byte) (ch1 + ch2);
-            }
+        private final int length;
+        private final long h0;
+        private final long h1;
+        private final long h2;
+        private final byte[] rest;
+        private transient String string;
 
-            return bits;
+        private HashCode(byte[] bytes) {
+            this.length = bytes.length;
+            this.h0 = word(bytes, 0);
+            this.h1 = word(bytes, 8);
+            this.h2 = word(bytes, 16);
+            this.rest = bytes.length > 24 ? Arrays.copyOfRange(bytes, 24, bytes.length) : null;
         }
 
-        private static int decode(char c) {
-            if (c >= '0' && c <= '9') {
-                return c - '0';
-            }
-
-            if (c >= 'a' && c <= 'f') {
-                return c - 'a' + 10;
+        public HashCode(String hash) {
+            if (hash.length() % 2 != 0) {
+                throw new IllegalStateException("Hex string has an odd number of characters: " + hash.length());
             }
 
-            throw new IllegalStateException("Illegal hex character: " + c);
-        }
-
-        private final byte[] bits;
+            this.length = hash.length() / 2;
+            this.h0 = word(hash, 0, this.length);
+            this.h1 = word(hash, 8, this.length);
+            this.h2 = word(hash, 16, this.length);
 
-        private HashCode(byte[] bits) {
-            this.bits = bits;
-        }
-
-        public HashCode(String hash) {
-            this(decode(hash));
+            if (this.length > 24) {
+                this.rest = new byte[this.length - 24];
+                for (int i = 0; i < this.rest.length; i++) {
+                    this.rest[i] = (byte) decode(hash, 24 + i);
+                }
+            } else {
+                this.rest = null;
+            }
         }
 
         public HashCode intern() {
-            for (Map.Entry<String, HashCode> code : hashescache.get()) {
-                if (code.getValue().equals(this)) {
-                    return code.getValue();
-                }
+            HashCode code = interned.get(this);
+            if (code != null) {
+                return code;
             }
 
+            interned.put(this, this);
             return this;
         }
 
         public int asInt() {
-            if (!(this.bits.length >= 4)) {
-                throw new IllegalStateException("HashCode#asInt() requires >= 4 bytes, it only has " + this.bits
-                        .length);
+            if (!(this.length >= 4)) {
+                throw new IllegalStateException("HashCode#asInt() requires >= 4 bytes, it only has " + this.length);
             }
 
-            return (this.bits[0] & 0xFF) | ((this.bits[1] & 0xFF) << 8) | ((this.bits[2] & 0xFF) << 16) | ((this
-                    .bits[3] & 0xFF) << 24);
+            return Integer.reverseBytes((int) (this.h0 >>> 32));
         }
 
         public int bits() {
-            return this.bits.length * 8;
+            return this.length * 8;
         }
 
+        /**
+         * Gets the bytes of this hash. As the bytes aren't stored as an array, a new array is made on every call.
+         *
+         * @return the bytes of this hash
+         */
         public byte[] bytes() {
-            return this.bits;
+            byte[] bytes = new byte[this.length];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) this.byteAt(i);
+            }
+            return bytes;
         }
 
+        /**
+         * Checks if this hash has the same bits as the given one, taking the same time no matter where they differ.
+         *
+         * @param code the hash to compare with
+         * @return true if the hashes are the same
+         */
         public boolean hasSameBits(HashCode code) {
-            if (this.bits.length != code.bits.length) {
+            if (this.length != code.length) {
                 return false;
             }
 
-            boolean equal = true;
-            for (int i = 0; i < this.bits.length; i++) {
-                equal &= (this.bits[i] == code.bits[i]);
+            long diff = (this.h0 ^ code.h0) | (this.h1 ^ code.h1) | (this.h2 ^ code.h2);
+            if (this.rest != null) {
+                return MessageDigest.isEqual(this.rest, code.rest) & diff == 0;
             }
 
-            return equal;
+            return diff == 0;
         }
 
         @Override
         public boolean equals(Object obj) {
-            if (obj instanceof HashCode) {
-                HashCode code = (HashCode) obj;
-                return this.bits() == code.bits() && this.hasSameBits(code);
+            if (this == obj) {
+                return true;
             }
 
-            return false;
+            return obj instanceof HashCode && this.hasSameBits((HashCode) obj);
         }
 
         @Override
         protected Object clone() throws CloneNotSupportedException {
-            byte[] bits = new byte[this.bits.length];
-            System.arraycopy(bits, 0, this.bits, 0, this.bits.length);
-            return new HashCode(bits);
+            // Nothing about a hash can be changed, so the copy can share the bytes past the first 24
+            return super.clone();
         }
 
         @Override
         public int hashCode() {
-            if (this.bits() >= 32) {
-                return this.asInt();
+            // The bits of a hash are already evenly spread, so any of them make a good hash code
+            return (int) (this.h0 >>> 32) ^ (int) this.h0 ^ (int) this.h1;
+        }
+
+        @Override
+        public String toString() {
+            String string = this.string;
+            if (string == null) {
+                char[] chars = new char[this.length * 2];
+                for (int i = 0; i < this.length; i++) {
+                    int b = this.byteAt(i);
+                    chars[i * 2] = hex[b >>> 4];
+                    chars[i * 2 + 1] = hex[b & 0xF];
+                }
+                this.string = string = new String(chars);
+            }
+            return string;
+        }
+
+        private int byteAt(int index) {
+            if (index >= 24) {
+                return this.rest[index - 24] & 0xFF;
+            }
+
+            long word = index < 8 ? this.h0 : index < 16 ? this.h1 : this.h2;
+            return (int) (word >>> (56 - (index % 8) * 8)) & 0xFF;
+        }
+
+        private static long word(byte[] bytes, int from) {
+            long word = 0;
+            for (int i = from; i < from + 8; i++) {
+                word = (word << 8) | (i < bytes.length ? bytes[i] & 0xFF : 0);
             }
+            return word;
+        }
 
-            int val = (this.bits[0] & 0xFF);
-            for (int i = 1; i < this.bits.length; i++) {
-                val |= ((this.bits[i] & 0xFF) << (i * 8));
+        private static long word(String hash, int from, int length) {
+            long word = 0;
+            for (int i = from; i < from + 8; i++) {
+                word = (word << 8) | (i < length ? decode(hash, i) : 0);
             }
+            return word;
+        }
 
-            return val;
+        private static int decode(String hash, int index) {
+            return (decode(hash.charAt(index * 2)) << 4) | decode(hash.charAt(index * 2 + 1));
         }
 
-        @Override
-        public String toString() {
-            StringBuilder sb = new StringBuilder(2 * this.bits.length);
-            for (byte b : this.bits) {
-                sb.append(hex[(b >> 4) & 0xF]).append(hex[b & 0xF]);
+        private static int decode(char c) {
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0) {
+                throw new IllegalStateException("Illegal hex character: " + c);
             }
-            return sb.toString();
+
+            return value;
         }
     }
-}
\ No newline at end of file
+}
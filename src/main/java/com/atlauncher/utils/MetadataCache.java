@@ -0,0 +1,128 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.FileSystem;
+import com.atlauncher.annot.Json;
+import com.atlauncher.managers.LogManager;
+import com.atlauncher.nio.JsonFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps the last body of small metadata files (such as hashes.json and users.json) along with the ETag and
+ * Last-Modified headers they were sent with, so the next request for them can ask the server to only send the body if
+ * it's changed. A 304 Not Modified response then means the cached body can be used as is.
+ */
+public final class MetadataCache {
+    /**
+     * An entry with nothing cached, for files which should be cached but haven't been yet.
+     */
+    public static final Entry EMPTY = new Entry(null, null, null, null);
+
+    private static final Path DIR = FileSystem.CACHE.resolve("metadata");
+
+    private MetadataCache() {
+    }
+
+    /**
+     * Gets the cached response for the given url.
+     *
+     * @param url the url the file was downloaded from
+     * @return the cached response, or null if there isn't one
+     */
+    public static Entry get(String url) {
+        Path file = file(url);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            Entry entry = new JsonFile(file).convert(Entry.class);
+            if (entry != null && url.equals(entry.url) && entry.body != null && entry.hasValidator()) {
+                return entry;
+            }
+        } catch (Exception e) {
+            LogManager.logStackTrace("Error reading cached response for " + url, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Caches a response, as long as the server sent something to revalidate it with.
+     *
+     * @param url          the url the file was downloaded from
+     * @param etag         the ETag header of the response, if any
+     * @param lastModified the Last-Modified header of the response, if any
+     * @param body         the body of the response
+     */
+    public static void put(String url, String etag, String lastModified, String body) {
+        Entry entry = new Entry(url, etag, lastModified, body);
+        if (body == null || !entry.hasValidator()) {
+            return;
+        }
+
+        Path file = file(url);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp" + Thread.currentThread().getId());
+        try {
+            FileUtils.createDirectory(DIR);
+            new JsonFile(tmp, true).write(entry);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LogManager.logStackTrace("Error caching response for " + url, e);
+        }
+    }
+
+    private static Path file(String url) {
+        return DIR.resolve(Hashing.md5(url).toString() + ".json");
+    }
+
+    @Json
+    public static final class Entry {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final String body;
+
+        private Entry(String url, String etag, String lastModified, String body) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        public String getETag() {
+            return this.etag;
+        }
+
+        public String getLastModified() {
+            return this.lastModified;
+        }
+
+        public String getBody() {
+            return this.body;
+        }
+
+        private boolean hasValidator() {
+            return this.etag != null || this.lastModified != null;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.FileSystem;
+import com.atlauncher.data.mojang.ExtractRule;
+import com.atlauncher.managers.LogManager;
+import com.atlauncher.thread.InstallExecutor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A cache of extracted natives under Configs/Cache/natives, so the natives for a version of Minecraft are only
+ * extracted once and then linked into every instance using them rather than extracted again for each one.
+ *
+ * Each set of natives is keyed by the SHA-1 hashes of the libraries they came from along with what each library's
+ * extract rule excludes, so a changed library or rule gets a fresh set. The libraries in a set are extracted at the
+ * same time on the {@link InstallExecutor}, then merged in the order they're given so a file in more than one library ends up from the last one, the
+ * same as extracting them one after another.
+ *
+ * The cache can be moved somewhere else with the com.atlauncher.utils.NativesCache.dir system property.
+ */
+public final class NativesCache {
+    private static final String COMPLETE = ".complete";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Map<String, Object> locks = new HashMap<>();
+
+    private NativesCache() {
+    }
+
+    /**
+     * Puts the natives from the given libraries into a directory, extracting them into the cache first if they aren't
+     * there already.
+     *
+     * @param version   the version of Minecraft the natives are for
+     * @param libraries the libraries to extract, in order, and the extract rule for each (which may be null)
+     * @param natives   the directory to put the natives in
+     * @return if the natives were put in place or not
+     */
+    public static boolean install(String version, Map<Path, ExtractRule> libraries, Path natives) {
+        if (libraries.isEmpty()) {
+            return true;
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (Map.Entry<Path, ExtractRule> library : libraries.entrySet()) {
+            Hashing.HashCode hash = VerificationLedger.sha1(library.getKey());
+            if (hash.equals(Hashing.HashCode.EMPTY)) {
+                LogManager.error("Couldn't hash the library " + library.getKey() + " to find its natives");
+                return false;
+            }
+
+            key.append(hash).append(':');
+            if (library.getValue() != null && library.getValue().exclude != null) {
+                List<String> exclude = new ArrayList<>(library.getValue().exclude);
+                Collections.sort(exclude);
+                for (String entry : exclude) {
+                    key.append(entry).append(',');
+                }
+            }
+            key.append(';');
+        }
+
+        String name = version + "-" + Hashing.sha1(key.toString());
+        Path dir = directory().resolve(name);
+
+        synchronized (lock(name)) {
+            if (!Files.exists(dir.resolve(COMPLETE)) && !extract(libraries, dir)) {
+                return false;
+            }
+        }
+
+        return link(dir, natives);
+    }
+
+    private static Path directory() {
+        String dir = System.getProperty("com.atlauncher.utils.NativesCache.dir");
+        return dir == null ? FileSystem.CACHE.resolve("natives") : Paths.get(dir);
+    }
+
+    private static Object lock(String name) {
+        synchronized (locks) {
+            Object lock = locks.get(name);
+            if (lock == null) {
+                lock = new Object();
+                locks.put(name, lock);
+            }
+
+            return lock;
+        }
+    }
+
+    private static boolean extract(Map<Path, ExtractRule> libraries, Path dir) {
+        Path tmp = dir.resolveSibling(dir.getFileName() + ".tmp");
+        List<Future<Void>> futures = new ArrayList<>();
+
+        try {
+            if (Files.exists(tmp)) {
+                FileUtils.deleteDirectory(tmp);
+            }
+            if (Files.exists(dir)) {
+                FileUtils.deleteDirectory(dir);
+            }
+
+            List<Path> parts = new ArrayList<>();
+            for (final Map.Entry<Path, ExtractRule> library : libraries.entrySet()) {
+                final Path part = tmp.resolve(String.valueOf(parts.size()));
+                parts.add(part);
+                futures.add(InstallExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        extract(library.getKey(), library.getValue(), part);
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+            Path merged = tmp.resolve("natives");
+            Files.createDirectories(merged);
+            for (Path part : parts) {
+                merge(part, merged);
+            }
+
+            Files.createDirectories(dir.getParent());
+            Files.move(merged, dir, StandardCopyOption.ATOMIC_MOVE);
+            Files.createFile(dir.resolve(COMPLETE));
+            return true;
+        } catch (IOException | ExecutionException e) {
+            LogManager.logStackTrace("Error extracting natives into " + dir, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            if (Files.exists(tmp)) {
+                FileUtils.deleteDirectory(tmp);
+            }
+        }
+    }
+
+    private static void extract(Path library, ExtractRule rule, Path out) throws IOException {
+        Files.createDirectories(out);
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipFile zip = new ZipFile(library.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.endsWith("aux.class")) {
+                    name = "aux_class";
+                }
+
+                if (entry.isDirectory() || name.equals(".minecraft") || (rule != null && rule.excludes(name))) {
+                    continue;
+                }
+
+                Path target = out.resolve(name).normalize();
+                if (!target.startsWith(out)) {
+                    throw new IOException("Entry " + entry.getName() + " in " + library + " is outside the natives");
+                }
+
+                Files.createDirectories(target.getParent());
+                try (InputStream in = zip.getInputStream(entry); OutputStream os = Files.newOutputStream(target)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        os.write(buffer, 0, read);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void merge(final Path from, final Path to) throws IOException {
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = to.resolve(from.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean link(final Path dir, final Path natives) {
+        final boolean[] linked = {true};
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.getParent().equals(dir) && file.getFileName().toString().equals(COMPLETE)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    if (!FileUtils.linkFile(file, natives.resolve(dir.relativize(file).toString()))) {
+                        linked[0] = false;
+                        return FileVisitResult.TERMINATE;
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error linking natives from " + dir + " into " + natives, e);
+            return false;
+        }
+
+        return linked[0];
+    }
+}
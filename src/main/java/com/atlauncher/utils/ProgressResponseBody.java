@@ -14,11 +14,25 @@ import java.io.IOException;
 public class ProgressResponseBody extends ResponseBody {
     private final ResponseBody responseBody;
     private final ProgressListener progressListener;
+    private final TokenBucket[] buckets;
     private BufferedSource bufferedSource;
 
     public ProgressResponseBody(ResponseBody responseBody, ProgressListener progressListener) {
+        this(responseBody, progressListener, new TokenBucket[0]);
+    }
+
+    /**
+     * Wraps a response body to report progress to the given listener and limit how fast it can be read.
+     *
+     * @param responseBody     the body to wrap
+     * @param progressListener the listener to report progress to, or null to not report progress
+     * @param buckets          the bandwidth limits this body shares with other transfers, narrowest first
+     */
+    public ProgressResponseBody(ResponseBody responseBody, ProgressListener progressListener, TokenBucket...
+            buckets) {
         this.responseBody = responseBody;
         this.progressListener = progressListener;
+        this.buckets = buckets;
     }
 
     @Override
@@ -43,9 +57,23 @@ public class ProgressResponseBody extends ResponseBody {
         return new ForwardingSource(source) {
             @Override
             public long read(Buffer sink, long byteCount) throws IOException {
-                long bytesRead = super.read(sink, byteCount);
+                long[] allowed = new long[buckets.length];
+                long allowedCount = byteCount;
+                for (int i = 0; i < buckets.length; i++) {
+                    allowed[i] = allowedCount = buckets[i].acquire(allowedCount);
+                }
+
+                long bytesRead = super.read(sink, allowedCount);
+
+                // Give back anything not read, including what narrower buckets took before a wider one allowed less
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i].release(allowed[i] - Math.max(0, bytesRead));
+                }
+
                 // read() returns the number of bytes read, or -1 if this source is exhausted.
-                progressListener.update(bytesRead, responseBody.contentLength(), bytesRead == -1);
+                if (progressListener != null) {
+                    progressListener.update(bytesRead, responseBody.contentLength(), bytesRead == -1);
+                }
                 return bytesRead;
             }
         };
@@ -0,0 +1,130 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.util.Random;
+
+/**
+ * How many times to try something which can fail, such as a download, and how long to wait between tries. The wait
+ * grows exponentially with each failed try, and a random amount of it is used (so called full jitter) so that clients
+ * which failed at the same time, such as when a server goes down, don't all come back at the same time.
+ */
+public final class RetryPolicy {
+    /**
+     * The policy for downloading a single file from a server.
+     */
+    public static final RetryPolicy DOWNLOAD = new RetryPolicy(3, Long.valueOf(System.getProperty("com.atlauncher" +
+            ".utils.RetryPolicy.baseDelay", "500")), Long.valueOf(System.getProperty("com.atlauncher.utils" +
+            ".RetryPolicy.maxDelay", "8000")));
+
+    /**
+     * The policy for downloading a mod, which goes through its own download and hash check on top of the file's.
+     */
+    public static final RetryPolicy MOD = new RetryPolicy(5, DOWNLOAD.baseDelay, DOWNLOAD.maxDelay);
+
+    /**
+     * The policy for reading a small file, such as a pack's JSON, when the launcher can't carry on without it.
+     */
+    public static final RetryPolicy METADATA = new RetryPolicy(4, DOWNLOAD.baseDelay, DOWNLOAD.maxDelay);
+
+    private static final Random random = new Random();
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    /**
+     * Creates a retry policy.
+     *
+     * @param maxAttempts the most times to try, including the first
+     * @param baseDelay   the longest wait in milliseconds after the first failed try, doubling after each one after
+     * @param maxDelay    the longest wait in milliseconds after any failed try
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    }
+
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Checks if there are tries left after the given one.
+     *
+     * @param attempt the try which just failed, starting at 1
+     * @return true if another try should be made
+     */
+    public boolean canRetry(int attempt) {
+        return attempt < this.maxAttempts;
+    }
+
+    /**
+     * Gets the longest wait before the try after the given one, before any jitter is applied.
+     *
+     * @param attempt the try which just failed, starting at 1
+     * @return the longest time to wait in milliseconds
+     */
+    public long getMaxDelay(int attempt) {
+        if (attempt < 1) {
+            return 0;
+        }
+
+        // Doubling past 2^30 times would overflow, and the max delay will have been hit well before then anyway
+        return Math.min(this.maxDelay, this.baseDelay << Math.min(attempt - 1, 30));
+    }
+
+    /**
+     * Gets a random wait before the try after the given one, between nothing and {@link #getMaxDelay(int)}.
+     *
+     * @param attempt the try which just failed, starting at 1
+     * @return the time to wait in milliseconds
+     */
+    public long getDelay(int attempt) {
+        long max = this.getMaxDelay(attempt);
+        if (max <= 0) {
+            return 0;
+        }
+
+        synchronized (random) {
+            return (long) (random.nextDouble() * (max + 1));
+        }
+    }
+
+    /**
+     * Waits before the try after the given one.
+     *
+     * @param attempt the try which just failed, starting at 1
+     * @return false if interrupted while waiting, in which case no more tries should be made
+     */
+    public boolean backoff(int attempt) {
+        long delay = this.getDelay(attempt);
+        if (delay <= 0) {
+            return true;
+        }
+
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
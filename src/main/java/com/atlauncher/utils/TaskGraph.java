@@ -0,0 +1,254 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.thread.InstallExecutor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of stages with dependencies between them, run on the {@link InstallExecutor} so that stages which don't
+ * depend on each other run at the same time. A stage is started as soon as every stage it depends on has finished.
+ *
+ * Stages can only depend on stages added before them, so there can't be any cycles. Once the graph is cancelled (or a
+ * stage fails) no more stages are started, and the stages already running are left to finish before {@link #run()}
+ * returns.
+ */
+public final class TaskGraph {
+    /**
+     * How often, in milliseconds, a waiting graph checks if it's been cancelled.
+     */
+    private static final long CANCEL_CHECK_MILLIS = 250;
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final Cancellable cancellable;
+    private final Listener listener;
+    private volatile boolean interrupted = false;
+
+    public TaskGraph(Cancellable cancellable, Listener listener) {
+        this.cancellable = cancellable;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a stage to the graph.
+     *
+     * @param name         the name of the stage, which other stages use to depend on it
+     * @param stage        the work to do
+     * @param dependencies the names of the stages which must finish before this one starts
+     * @return this graph
+     * @throws IllegalArgumentException if the name is already used or a dependency hasn't been added yet
+     */
+    public TaskGraph add(String name, Stage stage, String... dependencies) {
+        if (this.nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Stage " + name + " has already been added");
+        }
+
+        Node node = new Node(name, stage);
+        for (String dependency : dependencies) {
+            Node parent = this.nodes.get(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException("Stage " + name + " depends on " + dependency + " which hasn't " +
+                        "been added");
+            }
+
+            parent.dependents.add(node);
+            node.waiting++;
+        }
+
+        this.nodes.put(name, node);
+        return this;
+    }
+
+    /**
+     * Runs every stage, waiting for them all to finish.
+     *
+     * @return true if every stage ran, or false if the graph was cancelled or interrupted first
+     * @throws Exception the exception thrown by the first stage to fail
+     */
+    public boolean run() throws Exception {
+        if (this.nodes.isEmpty()) {
+            return true;
+        }
+
+        CompletionService<Node> completion = new ExecutorCompletionService<>(InstallExecutor.getExecutor());
+
+        int running = 0;
+        int finished = 0;
+        boolean stopped = false;
+        Exception failure = null;
+
+        for (Node node : this.nodes.values()) {
+            if (node.waiting == 0) {
+                completion.submit(node);
+                running++;
+            }
+        }
+
+        while (running > 0) {
+            Future<Node> future;
+            try {
+                future = completion.poll(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // Stop the running stages as well, then carry on waiting for them before giving up
+                this.interrupt();
+                stopped = true;
+                continue;
+            }
+
+            if (!stopped && this.cancellable.isCancelled()) {
+                stopped = true;
+            }
+
+            if (future == null) {
+                continue;
+            }
+
+            running--;
+
+            Node node;
+            try {
+                node = future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                stopped = true;
+                continue;
+            }
+
+            // Stages which were skipped as the graph had been stopped don't count as finished
+            if (node == null) {
+                continue;
+            }
+
+            finished++;
+
+            if (stopped) {
+                continue;
+            }
+
+            for (Node dependent : node.dependents) {
+                if (--dependent.waiting == 0) {
+                    completion.submit(dependent);
+                    running++;
+                }
+            }
+        }
+
+        if (this.interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return finished == this.nodes.size() && !this.cancellable.isCancelled() && !this.interrupted;
+    }
+
+    /**
+     * Interrupts the stages which are running, and stops any more from starting.
+     */
+    private void interrupt() {
+        this.interrupted = true;
+
+        for (Node node : this.nodes.values()) {
+            Thread thread = node.thread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gets the names of the stages in the order they were added.
+     *
+     * @return the names of the stages
+     */
+    public List<String> getStages() {
+        return new ArrayList<>(this.nodes.keySet());
+    }
+
+    /**
+     * A piece of work in the graph.
+     */
+    public interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * Something which can be cancelled, such as the install the graph is running for.
+     */
+    public interface Cancellable {
+        boolean isCancelled();
+    }
+
+    /**
+     * Told when each stage starts and finishes. Called from the thread running the stage.
+     */
+    public interface Listener {
+        void started(String stage);
+
+        void finished(String stage, long millis);
+    }
+
+    private final class Node implements Callable<Node> {
+        private final String name;
+        private final Stage stage;
+        private final List<Node> dependents = new ArrayList<>();
+        private int waiting = 0;
+        private volatile Thread thread;
+
+        private Node(String name, Stage stage) {
+            this.name = name;
+            this.stage = stage;
+        }
+
+        @Override
+        public Node call() throws Exception {
+            if (cancellable.isCancelled() || interrupted) {
+                return null;
+            }
+
+            this.thread = Thread.currentThread();
+            try {
+                long start = System.currentTimeMillis();
+                listener.started(this.name);
+                this.stage.run();
+                listener.finished(this.name, System.currentTimeMillis() - start);
+                return this;
+            } finally {
+                this.thread = null;
+                // The thread is shared, so an interrupt meant for this stage mustn't be left for the next task
+                if (interrupted) {
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Limits how many bytes can be read per second across every transfer sharing this bucket. Tokens build up at the set
+ * rate, to a limit of a quarter of a second's worth, and each read takes tokens for the bytes it's allowed to read,
+ * waiting for more when there aren't enough.
+ *
+ * Transfers only take tokens when they read, so budget one transfer isn't using (because it's stalled or finished) is
+ * left in the bucket for the others sharing it to use.
+ */
+public final class TokenBucket {
+    /**
+     * The most bytes a single read can take at once, so transfers sharing the bucket take turns fairly.
+     */
+    private static final long MAX_CHUNK = 16 * 1024;
+
+    private volatile long rate;
+    private double tokens = 0;
+    private long last = System.nanoTime();
+
+    /**
+     * Creates a bucket with the given rate.
+     *
+     * @param rate the most bytes per second, or 0 for no limit
+     */
+    public TokenBucket(long rate) {
+        this.rate = Math.max(0, rate);
+    }
+
+    /**
+     * Changes the rate of this bucket, taking effect from the next read.
+     *
+     * @param rate the most bytes per second, or 0 for no limit
+     */
+    public synchronized void setRate(long rate) {
+        rate = Math.max(0, rate);
+        if (rate != this.rate) {
+            this.refill();
+            this.rate = rate;
+            this.notifyAll();
+        }
+    }
+
+    public long getRate() {
+        return this.rate;
+    }
+
+    public boolean isLimited() {
+        return this.rate > 0;
+    }
+
+    /**
+     * Waits until some bytes can be read.
+     *
+     * @param wanted the number of bytes wanted
+     * @return the number of bytes which can be read, between 1 and wanted
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    public long acquire(long wanted) throws InterruptedIOException {
+        if (wanted <= 0 || !this.isLimited()) {
+            return wanted;
+        }
+
+        synchronized (this) {
+            while (true) {
+                long rate = this.rate;
+                if (rate <= 0) {
+                    return wanted;
+                }
+
+                this.refill();
+
+                long need = Math.max(1, Math.min(wanted, Math.min(MAX_CHUNK, this.capacity())));
+                if (this.tokens >= need) {
+                    this.tokens -= need;
+                    return need;
+                }
+
+                long waitMillis = Math.max(1, (long) Math.ceil((need - this.tokens) * 1000 / rate));
+                try {
+                    this.wait(waitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for download bandwidth");
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts back tokens taken by {@link #acquire(long)} which weren't used, such as when a read returned fewer bytes
+     * than were allowed.
+     *
+     * @param unused the number of bytes which weren't read
+     */
+    public synchronized void release(long unused) {
+        if (unused > 0 && this.isLimited()) {
+            this.tokens = Math.min(this.capacity(), this.tokens + unused);
+            this.notifyAll();
+        }
+    }
+
+    private long capacity() {
+        return Math.max(1, this.rate / 4);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (this.isLimited()) {
+            this.tokens = Math.min(this.capacity(), this.tokens + ((now - this.last) / 1e9) * this.rate);
+        }
+        this.last = now;
+    }
+}
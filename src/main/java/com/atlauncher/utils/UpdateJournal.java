@@ -0,0 +1,198 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.Gsons;
+import com.atlauncher.annot.Json;
+import com.atlauncher.managers.LogManager;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records the changes made to an instance's files while it's being updated, so they can all be undone if the update
+ * fails part way through. Before a file (or folder) is replaced or removed it's moved aside into the journal's folder,
+ * and files which didn't exist are noted so they can be removed again.
+ *
+ * Each change is appended to the journal as a line of its own before it's made, so an update which never finished
+ * (such as when the launcher was closed part way through) is rolled back by {@link #recover(Path)} when the launcher
+ * next starts.
+ */
+public final class UpdateJournal {
+    private final Path root;
+    private final Path folder;
+    private final Path file;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<Path> recorded = new HashSet<>();
+
+    /**
+     * Starts a new journal for the given instance.
+     *
+     * @param root the root folder of the instance
+     */
+    public UpdateJournal(Path root) {
+        this.root = root;
+        this.folder = folder(root);
+        this.file = this.folder.resolve("journal.log");
+    }
+
+    /**
+     * Rolls back the changes of an update to the given instance which never finished, if there was one.
+     *
+     * @param root the root folder of the instance
+     * @return true if there was an unfinished update which was rolled back
+     */
+    public static boolean recover(Path root) {
+        UpdateJournal journal = new UpdateJournal(root);
+        if (!Files.exists(journal.file)) {
+            if (Files.exists(journal.folder)) {
+                FileUtils.delete(journal.folder);
+            }
+            return false;
+        }
+
+        try {
+            for (String line : new String(Files.readAllBytes(journal.file), StandardCharsets.UTF_8).split("\n")) {
+                try {
+                    Entry entry = Gsons.DEFAULT_ALT.fromJson(line, Entry.class);
+                    if (entry != null && entry.path != null) {
+                        journal.entries.add(entry);
+                    }
+                } catch (JsonParseException e) {
+                    // Only the last line can be cut short, and its change was never made
+                    LogManager.warn("Ignoring unfinished line in the update journal " + journal.file);
+                }
+            }
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error reading the update journal " + journal.file, e);
+        }
+
+        LogManager.warn("Rolling back an unfinished update of " + root);
+        journal.rollback();
+        return true;
+    }
+
+    /**
+     * Records the original state of a file in the instance before it's replaced, removed or created. If it exists it's
+     * moved aside, so once this returns the file is free to be written. Recording a file again does nothing, so the
+     * state rolled back to is always the one from before the update.
+     *
+     * @param path the file or folder about to be changed
+     * @throws IOException if the journal couldn't be written or the file couldn't be moved aside
+     */
+    public synchronized void record(Path path) throws IOException {
+        Path relative = this.root.relativize(path);
+        if (!this.recorded.add(relative)) {
+            return;
+        }
+
+        boolean exists = Files.exists(path, LinkOption.NOFOLLOW_LINKS);
+        Entry entry = new Entry(relative.toString(), exists ? String.valueOf(this.entries.size()) : null);
+        this.entries.add(entry);
+        this.append(entry);
+
+        if (exists) {
+            Path backup = this.folder.resolve(entry.backup);
+            Files.move(path, backup);
+        }
+    }
+
+    /**
+     * Finishes the update, throwing away the original files.
+     */
+    public synchronized void commit() {
+        this.entries.clear();
+        this.recorded.clear();
+
+        if (Files.exists(this.folder)) {
+            FileUtils.delete(this.folder);
+        }
+    }
+
+    /**
+     * Undoes every change recorded, newest first, putting the original files back and removing the files which were
+     * created.
+     */
+    public synchronized void rollback() {
+        for (int i = this.entries.size() - 1; i >= 0; i--) {
+            Entry entry = this.entries.get(i);
+            Path path = this.root.resolve(entry.path);
+
+            try {
+                if (entry.backup == null) {
+                    remove(path);
+                    continue;
+                }
+
+                // If it wasn't moved aside then the original was never touched
+                Path backup = this.folder.resolve(entry.backup);
+                if (Files.exists(backup, LinkOption.NOFOLLOW_LINKS)) {
+                    remove(path);
+                    FileUtils.createDirectory(path.getParent());
+                    Files.move(backup, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                LogManager.logStackTrace("Error rolling back " + path, e);
+            }
+        }
+
+        this.commit();
+    }
+
+    private void append(Entry entry) throws IOException {
+        FileUtils.createDirectory(this.folder);
+
+        // Only the new entry is written, rather than the whole journal again for every file
+        byte[] line = (Gsons.DEFAULT_ALT.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        Files.write(this.file, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void remove(Path path) throws IOException {
+        // Installed files may be links into the content store, which FileUtils.delete leaves alone
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            FileUtils.deleteDirectory(path);
+        } else {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static Path folder(Path root) {
+        return root.resolve(".update");
+    }
+
+    @Json
+    private static final class Entry {
+        private final String path;
+        private final String backup;
+
+        private Entry(String path, String backup) {
+            this.path = path;
+            this.backup = backup;
+        }
+    }
+}
@@ -46,8 +46,6 @@ import java.security.InvalidKeyException;
 import java.security.Key;
 import java.util.EnumSet;
 import java.util.Enumeration;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -216,10 +214,6 @@ public class Utils {
         }
     }
 
-    public static ExecutorService generateDownloadExecutor() {
-        return Executors.newFixedThreadPool(SettingsManager.getConcurrentConnections());
-    }
-
     /**
      * Encrypt.
      *
@@ -0,0 +1,293 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.FileSystem;
+import com.atlauncher.annot.Json;
+import com.atlauncher.managers.LogManager;
+import com.atlauncher.nio.JsonFile;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the hash of files on disk along with the size and last modified time they had when they were hashed, so a
+ * file which hasn't been touched since doesn't need to be read in and hashed again. The ledger is kept in memory and
+ * saved to the Configs folder when the launcher closes or {@link #save()} is called.
+ *
+ * The ledger can be moved somewhere else with the com.atlauncher.utils.VerificationLedger.dir system property.
+ */
+public final class VerificationLedger {
+    public static final String MD5 = Hashing.MD5;
+    public static final String SHA1 = Hashing.SHA1;
+
+    /**
+     * Files modified this close to when they were hashed may be written to again without their size or modified time
+     * changing (depending on the resolution of the file system's timestamps), so they are hashed again the next time
+     * they're checked.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+    private static volatile Path loaded = null;
+    private static volatile boolean dirty = false;
+    private static boolean hooked = false;
+
+    private VerificationLedger() {
+    }
+
+    /**
+     * Gets the MD5 hash of the given file, only hashing it if it's changed since it was last hashed.
+     *
+     * @param file the file to hash
+     * @return the hash of the file, or {@link Hashing.HashCode#EMPTY} if it doesn't exist or couldn't be hashed
+     */
+    public static Hashing.HashCode md5(Path file) {
+        return hash(file, MD5);
+    }
+
+    /**
+     * Gets the SHA-1 hash of the given file, only hashing it if it's changed since it was last hashed.
+     *
+     * @param file the file to hash
+     * @return the hash of the file, or {@link Hashing.HashCode#EMPTY} if it doesn't exist or couldn't be hashed
+     */
+    public static Hashing.HashCode sha1(Path file) {
+        return hash(file, SHA1);
+    }
+
+    /**
+     * Records the hash of a file which was hashed elsewhere, such as while it was being downloaded.
+     *
+     * @param file      the file which was hashed
+     * @param algorithm the algorithm used, either {@link #MD5} or {@link #SHA1}
+     * @param hash      the hash of the file
+     */
+    public static void record(Path file, String algorithm, Hashing.HashCode hash) {
+        if (hash == null || hash.equals(Hashing.HashCode.EMPTY)) {
+            return;
+        }
+
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            put(file, algorithm, attrs, hash);
+        } catch (IOException e) {
+            invalidate(file);
+        }
+    }
+
+    /**
+     * Forgets any hashes recorded for the given file.
+     *
+     * @param file the file to forget
+     */
+    public static void invalidate(Path file) {
+        load();
+
+        String path = key(file);
+        if (entries.remove(path + '|' + MD5) != null | entries.remove(path + '|' + SHA1) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the ledger out to disk if anything has changed since it was loaded or last saved.
+     */
+    public static void save() {
+        if (loaded == null || !dirty) {
+            return;
+        }
+
+        synchronized (lock) {
+            dirty = false;
+
+            Path file = loaded.resolve("verified.json");
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                FileUtils.createDirectory(loaded);
+                new JsonFile(tmp, true).write(new ArrayList<>(entries.values()));
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception e) {
+                dirty = true;
+                LogManager.logStackTrace("Error saving the file verification ledger", e);
+            }
+        }
+    }
+
+    /**
+     * Gets the hashes of the given file with each of the given algorithms, reading the file in once for any which
+     * aren't already recorded. Meant for files which are about to be checked more than one way, such as a library
+     * checked by MD5 which is then added to the {@link ContentStore} by SHA-1.
+     *
+     * @param file       the file to hash
+     * @param algorithms the algorithms to hash it with, each either {@link #MD5} or {@link #SHA1}
+     * @return the hashes of the file in the same order as the algorithms, with {@link Hashing.HashCode#EMPTY} for any
+     * which couldn't be worked out
+     */
+    public static Hashing.HashCode[] digest(Path file, String... algorithms) {
+        load();
+
+        Hashing.HashCode[] hashes = new Hashing.HashCode[algorithms.length];
+        Arrays.fill(hashes, Hashing.HashCode.EMPTY);
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            invalidate(file);
+            return hashes;
+        }
+
+        String path = key(file);
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < algorithms.length; i++) {
+            Entry entry = entries.get(path + '|' + algorithms[i]);
+            if (entry != null && entry.matches(attrs)) {
+                hashes[i] = entry.digest;
+            } else if (!missing.contains(algorithms[i])) {
+                missing.add(algorithms[i]);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return hashes;
+        }
+
+        Hashing.HashCode[] computed = Hashing.digest(file, missing.toArray(new String[missing.size()]));
+        for (int i = 0; i < missing.size(); i++) {
+            if (!computed[i].equals(Hashing.HashCode.EMPTY)) {
+                put(file, missing.get(i), attrs, computed[i]);
+            }
+        }
+
+        for (int i = 0; i < algorithms.length; i++) {
+            int index = missing.indexOf(algorithms[i]);
+            if (index != -1) {
+                hashes[i] = computed[index];
+            }
+        }
+
+        return hashes;
+    }
+
+    private static Hashing.HashCode hash(Path file, String algorithm) {
+        return digest(file, algorithm)[0];
+    }
+
+    private static void put(Path file, String algorithm, BasicFileAttributes attrs, Hashing.HashCode hash) {
+        load();
+
+        Entry entry = new Entry(key(file), algorithm, attrs.size(), attrs.lastModifiedTime().toMillis(), System
+                .currentTimeMillis(), hash);
+        entries.put(entry.path + '|' + algorithm, entry);
+        dirty = true;
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static Path directory() {
+        String dir = System.getProperty("com.atlauncher.utils.VerificationLedger.dir");
+        return dir == null ? FileSystem.CONFIGS : Paths.get(dir);
+    }
+
+    private static void load() {
+        Path dir = directory();
+        if (dir.equals(loaded)) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (dir.equals(loaded)) {
+                return;
+            }
+
+            if (loaded != null) {
+                // The ledger has been moved, so save what we have before switching to the new one
+                save();
+            }
+
+            entries.clear();
+            dirty = false;
+
+            Path file = dir.resolve("verified.json");
+            if (Files.exists(file)) {
+                try {
+                    List<Entry> list = new JsonFile(file).convert(new TypeToken<List<Entry>>() {
+                    }.getType());
+
+                    if (list != null) {
+                        for (Entry entry : list) {
+                            entries.put(entry.path + '|' + entry.algorithm, entry);
+                        }
+                    }
+                } catch (Exception e) {
+                    LogManager.logStackTrace("Error loading the file verification ledger, starting a new one", e);
+                }
+            }
+
+            if (!hooked) {
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        save();
+                    }
+                }));
+                hooked = true;
+            }
+
+            loaded = dir;
+        }
+    }
+
+    @Json
+    private static final class Entry {
+        private final String path;
+        private final String algorithm;
+        private final long size;
+        private final long modified;
+        private final long verified;
+        private final Hashing.HashCode digest;
+
+        private Entry(String path, String algorithm, long size, long modified, long verified, Hashing.HashCode digest) {
+            this.path = path;
+            this.algorithm = algorithm;
+            this.size = size;
+            this.modified = modified;
+            this.verified = verified;
+            this.digest = digest;
+        }
+
+        private boolean matches(BasicFileAttributes attrs) {
+            return this.digest != null && this.size == attrs.size() && this.modified == attrs.lastModifiedTime()
+                    .toMillis() && this.modified < this.verified - RACY_MILLIS;
+        }
+    }
+}
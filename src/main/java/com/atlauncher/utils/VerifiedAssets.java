@@ -0,0 +1,206 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.FileSystem;
+import com.atlauncher.annot.Json;
+import com.atlauncher.data.mojang.AssetObject;
+import com.atlauncher.managers.LogManager;
+import com.atlauncher.nio.JsonFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Remembers which objects of an asset index have been checked as being in the Resources folder with the right size
+ * and hash, so installing another pack on the same version of the assets doesn't need to look at every object again.
+ * One is kept for each asset version, next to its index under Configs/Resources/indexes.
+ *
+ * As objects are named by their hash, an object only stops being valid if it's deleted or rewritten. Deleting or
+ * replacing a file changes the last modified time of its folder, so the last modified time of each of the objects
+ * folders is recorded along with the objects in it. When a folder has changed since, the objects in it are checked
+ * again, while the objects in all the other folders are trusted without touching them.
+ */
+public final class VerifiedAssets {
+    /**
+     * Folders modified this close to when they were recorded may be changed again without their modified time
+     * changing (depending on the resolution of the file system's timestamps), so their objects are checked again.
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private final Path file;
+    private final String index;
+    private final Map<String, Long> objects;
+
+    private VerifiedAssets(Path file, String index, Map<String, Long> objects) {
+        this.file = file;
+        this.index = index;
+        this.objects = objects;
+    }
+
+    /**
+     * Loads the verified objects of the given asset version, dropping any in folders which have changed since they
+     * were verified.
+     *
+     * @param assetVersion the asset version, such as 1.7.10
+     * @param index        the SHA-1 hash of the asset index, so objects verified for an older index aren't trusted
+     * @return the verified objects, which will be empty if none have been verified yet
+     */
+    public static VerifiedAssets load(String assetVersion, String index) {
+        Path file = file(assetVersion);
+        Map<String, Long> objects = new HashMap<>();
+
+        if (Files.exists(file)) {
+            try {
+                Entry entry = new JsonFile(file).convert(Entry.class);
+                if (entry != null && entry.objects != null && entry.folders != null && index != null && index.equals
+                        (entry.index)) {
+                    Map<String, Boolean> unchanged = new HashMap<>();
+                    for (Map.Entry<String, Long> folder : entry.folders.entrySet()) {
+                        unchanged.put(folder.getKey(), folder.getValue() == modified(FileSystem.RESOURCES_OBJECTS
+                                .resolve(folder.getKey())));
+                    }
+
+                    for (Map.Entry<String, Long> object : entry.objects.entrySet()) {
+                        if (Boolean.TRUE.equals(unchanged.get(folder(object.getKey())))) {
+                            objects.put(object.getKey(), object.getValue());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                LogManager.logStackTrace("Error reading the verified assets " + file + ", checking them all again", e);
+            }
+        }
+
+        return new VerifiedAssets(file, index, objects);
+    }
+
+    /**
+     * Forgets every object verified for the given asset version, such as when one of them has been found to be
+     * broken.
+     *
+     * @param assetVersion the asset version, such as 1.7.10
+     */
+    public static void invalidate(String assetVersion) {
+        try {
+            Files.deleteIfExists(file(assetVersion));
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error removing the verified assets of " + assetVersion, e);
+        }
+    }
+
+    /**
+     * Checks if the given object has been verified with the size the index now gives it.
+     *
+     * @param object the object from the asset index
+     * @return true if the object can be trusted to be in place
+     */
+    public synchronized boolean isVerified(AssetObject object) {
+        Long size = this.objects.get(object.getHash());
+        return size != null && size == object.getSize();
+    }
+
+    /**
+     * Records that the given object has been checked and is in place.
+     *
+     * @param object the object from the asset index
+     */
+    public synchronized void add(AssetObject object) {
+        this.objects.put(object.getHash(), object.getSize());
+    }
+
+    /**
+     * Writes the verified objects out to disk, along with the last modified times of their folders. Objects in folders
+     * which have only just been modified are left out, to be checked again next time.
+     */
+    public synchronized void save() {
+        if (this.index == null) {
+            return;
+        }
+
+        Entry entry = new Entry(this.index);
+        long now = System.currentTimeMillis();
+
+        Iterator<Map.Entry<String, Long>> it = this.objects.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> object = it.next();
+            String folder = folder(object.getKey());
+
+            Long modified = entry.folders.get(folder);
+            if (modified == null) {
+                modified = modified(FileSystem.RESOURCES_OBJECTS.resolve(folder));
+                if (modified <= 0 || now - modified < RACY_MILLIS) {
+                    modified = -1L;
+                }
+                entry.folders.put(folder, modified);
+            }
+
+            if (modified > 0) {
+                entry.objects.put(object.getKey(), object.getValue());
+            }
+        }
+
+        Iterator<Map.Entry<String, Long>> folders = entry.folders.entrySet().iterator();
+        while (folders.hasNext()) {
+            if (folders.next().getValue() <= 0) {
+                folders.remove();
+            }
+        }
+
+        Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+        try {
+            FileUtils.createDirectory(this.file.getParent());
+            new JsonFile(tmp, true).write(entry);
+            Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LogManager.logStackTrace("Error saving the verified assets " + this.file, e);
+        }
+    }
+
+    private static Path file(String assetVersion) {
+        return FileSystem.RESOURCES_INDEXES.resolve(assetVersion + ".verified.json");
+    }
+
+    private static String folder(String hash) {
+        return hash.substring(0, 2);
+    }
+
+    private static long modified(Path folder) {
+        try {
+            return Files.getLastModifiedTime(folder).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Json
+    private static final class Entry {
+        private final String index;
+        private final Map<String, Long> folders = new HashMap<>();
+        private final Map<String, Long> objects = new HashMap<>();
+
+        private Entry(String index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.workers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything an install would do, worked out from the manifests and what's already on disk without downloading,
+ * copying or extracting anything. Built by {@link InstanceInstaller#plan()}.
+ *
+ * The bytes read and written are estimates. A downloaded file is written once and read once to check its hash, a
+ * file already downloaded is read once to check its hash (unless it's already been checked), and a copy or extraction
+ * reads and writes the size of the file being copied or extracted. Files whose size isn't in the manifest count for
+ * nothing, and are counted by {@link #getUnknownSizes()} instead.
+ */
+public final class InstallPlan {
+    private final List<Step> steps = new ArrayList<>();
+
+    InstallPlan() {
+    }
+
+    void download(String name, long size) {
+        this.steps.add(new Step(Action.DOWNLOAD, name, size, size, size));
+    }
+
+    void cached(String name, long size, boolean verified) {
+        this.steps.add(new Step(Action.CACHED, name, size, verified ? 0 : size, 0));
+    }
+
+    void copy(String name, long size) {
+        this.steps.add(new Step(Action.COPY, name, size, size, size));
+    }
+
+    void extract(String name, long size) {
+        this.steps.add(new Step(Action.EXTRACT, name, size, size, size));
+    }
+
+    /**
+     * Gets every step of the install, in the order they'd happen in a single threaded install.
+     *
+     * @return the steps
+     */
+    public List<Step> getSteps() {
+        return Collections.unmodifiableList(this.steps);
+    }
+
+    /**
+     * Gets the steps of the install which do the given action.
+     *
+     * @param action the action
+     * @return the steps doing it
+     */
+    public List<Step> getSteps(Action action) {
+        List<Step> steps = new ArrayList<>();
+        for (Step step : this.steps) {
+            if (step.action == action) {
+                steps.add(step);
+            }
+        }
+
+        return steps;
+    }
+
+    /**
+     * Gets the total size of the files the given action is done to, as far as they're known.
+     *
+     * @param action the action
+     * @return the size in bytes
+     */
+    public long getSize(Action action) {
+        long size = 0;
+        for (Step step : this.steps) {
+            if (step.action == action && step.size > 0) {
+                size += step.size;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Gets the estimated number of bytes the install would read from disk.
+     *
+     * @return the bytes read
+     */
+    public long getBytesRead() {
+        long read = 0;
+        for (Step step : this.steps) {
+            read += step.read;
+        }
+
+        return read;
+    }
+
+    /**
+     * Gets the estimated number of bytes the install would write to disk.
+     *
+     * @return the bytes written
+     */
+    public long getBytesWritten() {
+        long written = 0;
+        for (Step step : this.steps) {
+            written += step.written;
+        }
+
+        return written;
+    }
+
+    /**
+     * Gets the number of files whose size isn't known, so aren't included in any of the totals. Every file is either
+     * downloaded or already downloaded, so only those steps are counted, as the same file is then copied or extracted.
+     *
+     * @return the number of files of unknown size
+     */
+    public int getUnknownSizes() {
+        int unknown = 0;
+        for (Step step : this.steps) {
+            if (step.size < 0 && (step.action == Action.DOWNLOAD || step.action == Action.CACHED)) {
+                unknown++;
+            }
+        }
+
+        return unknown;
+    }
+
+    @Override
+    public String toString() {
+        return this.getSteps(Action.DOWNLOAD).size() + " downloads (" + this.getSize(Action.DOWNLOAD) + " bytes), " +
+                this.getSteps(Action.CACHED).size() + " already downloaded (" + this.getSize(Action.CACHED) + " " +
+                "bytes), " + this.getSteps(Action.COPY).size() + " copies, " + this.getSteps(Action.EXTRACT).size() +
+                " extractions, about " + this.getBytesRead() + " bytes read and " + this.getBytesWritten() + " bytes " +
+                "written, " + this.getUnknownSizes() + " files of unknown size";
+    }
+
+    public enum Action {
+        /**
+         * A file which needs downloading.
+         */
+        DOWNLOAD,
+
+        /**
+         * A file which has already been downloaded and only needs checking.
+         */
+        CACHED,
+
+        /**
+         * A file copied (or linked) into the instance.
+         */
+        COPY,
+
+        /**
+         * An archive extracted into the instance, or rewritten in place.
+         */
+        EXTRACT
+    }
+
+    /**
+     * A single file the install would download, check, copy or extract.
+     */
+    public static final class Step {
+        private final Action action;
+        private final String name;
+        private final long size;
+        private final long read;
+        private final long written;
+
+        private Step(Action action, String name, long size, long read, long written) {
+            this.action = action;
+            this.name = name;
+            this.size = size;
+            this.read = Math.max(0, read);
+            this.written = Math.max(0, written);
+        }
+
+        public Action getAction() {
+            return this.action;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the size of the file from the manifest.
+         *
+         * @return the size in bytes, or -1 if it isn't known
+         */
+        public long getSize() {
+            return this.size;
+        }
+
+        @Override
+        public String toString() {
+            return this.action + " " + this.name + (this.size < 0 ? "" : " (" + this.size + " bytes)");
+        }
+    }
+}
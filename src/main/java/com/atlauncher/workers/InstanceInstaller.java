@@ -18,7 +18,6 @@
 package com.atlauncher.workers;
 
 import com.atlauncher.FileSystem;
-import com.atlauncher.Network;
 import com.atlauncher.backup.BackupMethods;
 import com.atlauncher.collection.DownloadPool;
 import com.atlauncher.collection.ModList;
@@ -36,6 +35,7 @@ import com.atlauncher.data.json.ModType;
 import com.atlauncher.data.json.Version;
 import com.atlauncher.data.mojang.AssetIndex;
 import com.atlauncher.data.mojang.AssetObject;
+import com.atlauncher.data.mojang.ExtractRule;
 import com.atlauncher.data.mojang.MojangAssetIndex;
 import com.atlauncher.data.mojang.MojangConstants;
 import com.atlauncher.data.mojang.MojangDownloads;
@@ -43,26 +43,78 @@ import com.atlauncher.data.version.PackVersion;
 import com.atlauncher.gui.dialogs.ModsChooser;
 import com.atlauncher.managers.LanguageManager;
 import com.atlauncher.managers.LogManager;
+import com.atlauncher.managers.SettingsManager;
 import com.atlauncher.nio.JsonFile;
+import com.atlauncher.thread.InstallExecutor;
 import com.atlauncher.utils.ATLauncherAPI;
 import com.atlauncher.utils.CompressionUtils;
+import com.atlauncher.utils.ContentStore;
+import com.atlauncher.utils.DownloadProgress;
 import com.atlauncher.utils.FileUtils;
+import com.atlauncher.utils.NativesCache;
+import com.atlauncher.utils.TaskGraph;
+import com.atlauncher.utils.TokenBucket;
+import com.atlauncher.utils.UpdateJournal;
+import com.atlauncher.utils.VerificationLedger;
+import com.atlauncher.utils.VerifiedAssets;
 import com.atlauncher.utils.validator.DependencyValidator;
 import com.atlauncher.utils.validator.GroupValidator;
 import com.atlauncher.utils.walker.CaseFileVisitor;
 
 import javax.swing.SwingWorker;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 public class InstanceInstaller extends SwingWorker<Boolean, Void> {
+    /**
+     * How much of the overall progress each stage of the install counts for once it's finished.
+     */
+    private static final Map<String, Integer> STAGE_WEIGHTS = new HashMap<>();
+    /**
+     * The label of each stage of the install, shown together for the stages running at the same time.
+     */
+    private static final Map<String, String> STAGE_TASKS = new HashMap<>();
+    static {
+        STAGE_WEIGHTS.put("libraries", 5);
+        STAGE_WEIGHTS.put("prepareJar", 5);
+        STAGE_WEIGHTS.put("downloadMods", 40);
+        STAGE_WEIGHTS.put("installMods", 35);
+        STAGE_WEIGHTS.put("finishMods", 5);
+
+        STAGE_TASKS.put("resources", "instance.downloadingresources");
+        STAGE_TASKS.put("libraries", "instance.downloadinglibraries");
+        STAGE_TASKS.put("organizeLibraries", "instance.organisinglibraries");
+        STAGE_TASKS.put("downloadMods", "instance.downloadingmods");
+        STAGE_TASKS.put("downloadConfigs", "instance.downloadingconfigs");
+        STAGE_TASKS.put("extractConfigs", "instance.extractingconfigs");
+    }
+
     public final String name;
     public final String shareCode;
     public final boolean server;
@@ -86,6 +138,16 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     public final Path ic2;
     public final Path denlib;
     public final Path plugins;
+    /**
+     * The bandwidth limit shared by the downloads for this install.
+     */
+    public final TokenBucket bandwidth = new TokenBucket(SettingsManager.getInstallDownloadSpeedLimit() * 1024L);
+    public final DownloadProgress progress = new DownloadProgress(new DownloadProgress.Listener() {
+        @Override
+        public void progressed(long downloaded, long total) {
+            updateProgressBar(downloaded, total);
+        }
+    });
     public final PackVersion packVersion;
     public final Pack pack;
     public final ModList selectedMods = new ModList();
@@ -93,14 +155,19 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     public final List<String> forgeLibraries = new LinkedList<>();
 
     private final List<Path> serverLibraries = new LinkedList<>();
+    private final Set<String> runningStages = new LinkedHashSet<>();
+    private final Map<Downloadable, AssetObject> assetDownloads = new HashMap<>();
+    private VerifiedAssets verifiedAssets;
+    private AssetIndex virtualAssets;
+    private boolean update = false;
+    private UpdatePlan updatePlan;
+    private UpdateJournal journal;
     public Version version;
     public ModList allMods;
     protected String jarOrder;
     protected int permgen;
     protected int memory;
     protected int percent;
-    protected int totalBytes;
-    protected int downloadedBytes;
     protected boolean extractedTexturePack;
     protected boolean corrupt = true;
     protected boolean extractedResourcePack;
@@ -148,20 +215,15 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         this.instance = instance;
     }
 
-    public void addDownloadedBytes(int bytes) {
-        this.downloadedBytes += bytes;
-        this.updateProgressBar();
-    }
-
-    private void updateProgressBar() {
+    private void updateProgressBar(long downloaded, long total) {
         float progress;
-        if (this.totalBytes > 0) {
-            progress = ((float) this.downloadedBytes / (float) this.totalBytes) * 100;
+        if (total > 0) {
+            progress = ((float) downloaded / (float) total) * 100;
         } else {
             progress = 0;
         }
-        float done = (float) this.downloadedBytes / 1024 / 1024;
-        float toDo = (float) this.totalBytes / 1024 / 1024;
+        float done = (float) downloaded / 1024 / 1024;
+        float toDo = (float) total / 1024 / 1024;
         if (done > toDo) {
             this.fireSubProgress(100, String.format("%.2f MB", done));
         } else {
@@ -293,10 +355,12 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                 FileUtils.delete(to);
             }
 
+            Downloadable download;
             if (lib.getDownloadType() == DownloadType.SERVER) {
-                pool.add(new Downloadable(lib.getUrl(), lib.getMD5(), to, lib.getFilesize(), true, this));
+                download = new Downloadable(lib.getUrl(), lib.getMD5(), to, lib.getFilesize(), true, this);
             } else if (lib.getDownloadType() == DownloadType.DIRECT) {
-                pool.add(new Downloadable(lib.getUrl(), lib.getMD5(), to, -1, false, this));
+                download = new Downloadable(lib.getUrl(), lib.getMD5(), to, lib.getFilesize() > 0 ? lib
+                        .getFilesize() : -1, false, this);
             } else {
                 LogManager.error("DownloadType for server library " + lib.getFile() + " is invalid with value of " +
                         lib.getDownloadType());
@@ -304,6 +368,10 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                 return null;
             }
 
+            // Libraries are linked in from the store, which goes by SHA-1
+            download.stored();
+            pool.add(download);
+
             if (lib.getFile().contains("-")) {
                 libraryNamesAdded.add(lib.getFile().substring(0, lib.getFile().lastIndexOf("-")));
             } else {
@@ -337,14 +405,22 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
 
         MojangDownloads downloads = this.packVersion.getMinecraftVersion().getMojangVersion().getDownloads();
 
+        Downloadable jar;
         if (this.server) {
-            pool.add(new Downloadable(downloads.getServer().getUrl(), downloads.getServer().getSha1(),
-                    FileSystem.JARS.resolve("minecraft_server." + this.packVersion.getMinecraftVersion().getVersion()
-                            + ".jar"), (int) downloads.getServer().getSize(), false, this));
+            jar = new Downloadable(downloads.getServer().getUrl(), downloads.getServer().getSha1(), FileSystem.JARS
+                    .resolve("minecraft_server." + this.packVersion.getMinecraftVersion().getVersion() + ".jar"),
+                    (int) downloads.getServer().getSize(), false, this);
         } else {
-            pool.add(new Downloadable(downloads.getClient().getUrl(), downloads.getClient().getSha1(),
-                    FileSystem.JARS.resolve(this.packVersion.getMinecraftVersion().getVersion()
-                            + ".jar"), (int) downloads.getClient().getSize(), false, this));
+            jar = new Downloadable(downloads.getClient().getUrl(), downloads.getClient().getSha1(), FileSystem.JARS
+                    .resolve(this.packVersion.getMinecraftVersion().getVersion() + ".jar"), (int) downloads
+                    .getClient().getSize(), false, this);
+        }
+        jar.resumable();
+        pool.add(jar);
+
+        // Nothing else in the install can happen until the jar and libraries are in place
+        for (Downloadable dl : pool) {
+            dl.critical();
         }
 
         return pool;
@@ -381,23 +457,27 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                 FileUtils.createDirectory(virtual);
             }
 
+            this.verifiedAssets = VerifiedAssets.load(assetVersion, assetIndex.getSha1());
+
             for (Map.Entry<String, AssetObject> entry : index.getObjects().entrySet()) {
                 AssetObject obj = entry.getValue();
                 String filename = obj.getHash().substring(0, 2) + "/" + obj.getHash();
                 Path file = FileSystem.RESOURCES_OBJECTS.resolve(filename);
 
-                if (obj.needToDownload(file)) {
-                    pool.add(new Downloadable(MojangConstants.RESOURCES_BASE.getURL(filename), obj.getHash(), file,
-                            entry.getKey().substring(entry.getKey().lastIndexOf("/") + 1), (int) obj.getSize(),
-                            false, this));
+                if (!this.verifiedAssets.isVerified(obj) && obj.needToDownload(file)) {
+                    Downloadable download = new Downloadable(MojangConstants.RESOURCES_BASE.getURL(filename), obj
+                            .getHash(), file, entry.getKey().substring(entry.getKey().lastIndexOf("/") + 1), (int) obj
+                            .getSize(), false, this);
+                    pool.add(download);
+                    this.assetDownloads.put(download, obj);
                 } else {
-                    Path virtualFile = virtual.resolve(entry.getKey());
-                    if (index.isVirtual()) {
-                        FileUtils.createDirectory(virtualFile.getParent());
-                        FileUtils.copyFile(file, virtualFile, true);
-                    }
+                    this.verifiedAssets.add(obj);
                 }
             }
+
+            if (index.isVirtual()) {
+                this.virtualAssets = index;
+            }
         } catch (Exception e) {
             LogManager.logStackTrace("Error processing resources for Minecraft", e);
         }
@@ -405,20 +485,95 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         return pool;
     }
 
+    /**
+     * Downloads the given mods, installing each of those which can be installed in any order as soon as its file is
+     * in place, while the rest of the mods are still downloading. The mods which must be installed in order are left
+     * for {@link #installMods(ModList)}.
+     */
     private void downloadMods(ModList mods) throws Exception {
         this.fireSubProgressUnknown();
-        DownloadPool pool = mods.downloadPool(this).downsize();
-        this.totalBytes = this.downloadedBytes = 0;
-        this.totalBytes = pool.totalSize();
+        final Map<Downloadable, Mod> downloadables = mods.downloadables(this);
+        DownloadPool pool = new DownloadPool(false);
+        pool.addAll(downloadables.keySet());
+        long total = pool.totalSize();
         this.fireSubProgress(0);
-        pool.downloadAll();
-        this.fireSubProgress(-1);
-        for (Mod mod : mods) {
-            if (!this.isCancelled()) {
-                this.fireTask(LanguageManager.localize("common.downloading") + " " + (mod.filePattern ? mod.name :
-                        mod.getFile()));
-                mod.download(this);
-                this.fireSubProgress(-1);
+
+        final List<Future<?>> installs = Collections.synchronizedList(new ArrayList<Future<?>>());
+
+        this.progress.start(total);
+        try {
+            DownloadPool.Result result = pool.downloadAll(this, new DownloadPool.Listener() {
+                @Override
+                public void finished(Downloadable dl, DownloadPool.State state) {
+                    // The download has already checked the hash, so the mod doesn't need to check it again
+                    if (state == DownloadPool.State.DOWNLOADED || state == DownloadPool.State.SKIPPED) {
+                        downloaded(downloadables.get(dl), installs);
+                    }
+                }
+            });
+
+            // Mods not from our servers are downloaded by the mods themselves, one at a time as some ask the user
+            for (Mod mod : mods) {
+                if (!downloadables.containsValue(mod) && !this.isCancelled()) {
+                    this.fireTask(LanguageManager.localize("common.downloading") + " " + (mod.filePattern ? mod.name
+                            : mod.getFile()));
+                    mod.download(this);
+                    this.downloaded(mod, installs);
+                }
+            }
+
+            result.await();
+
+            // Give the mods whose download failed another go themselves
+            for (Map.Entry<Downloadable, Mod> entry : downloadables.entrySet()) {
+                DownloadPool.State state = result.getState(entry.getKey());
+                if (state != DownloadPool.State.DOWNLOADED && state != DownloadPool.State.SKIPPED && !this
+                        .isCancelled()) {
+                    entry.getValue().download(this);
+                    this.downloaded(entry.getValue(), installs);
+                }
+            }
+        } finally {
+            this.progress.stop();
+            this.fireSubProgress(-1);
+
+            this.awaitInstalls(installs);
+        }
+    }
+
+    private void downloaded(final Mod mod, List<Future<?>> installs) {
+        if (this.isCancelled() || mod.isOrdered(this)) {
+            return;
+        }
+
+        installs.add(InstallExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!isCancelled()) {
+                    installMod(mod);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Waits for the mods being installed as they were downloaded to finish, interrupting them if the install is
+     * cancelled.
+     */
+    private void awaitInstalls(List<Future<?>> installs) throws InterruptedException {
+        // Mods still finishing their download can add to the list while waiting, so it's read one at a time
+        for (int i = 0; i < installs.size(); i++) {
+            Future<?> future = installs.get(i);
+            while (!future.isDone()) {
+                if (this.isCancelled()) {
+                    future.cancel(true);
+                    break;
+                }
+
+                try {
+                    future.get(250, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException | CancellationException | TimeoutException ignored) {
+                }
             }
         }
     }
@@ -427,16 +582,70 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         this.fireTask(LanguageManager.localize("instance.downloadingresources"));
         this.fireSubProgressUnknown();
         DownloadPool pool = this.getResources().downsize();
-        this.totalBytes = this.downloadedBytes = 0;
-        Network.setupProgressClient(this);
-        this.totalBytes = pool.totalSize();
+        long total = pool.totalSize();
         this.fireSubProgress(0);
-        pool.downloadAll(this);
+        this.progress.start(total);
+        DownloadPool.Result result = pool.downloadAll(this);
+        this.progress.stop();
+
+        if (this.verifiedAssets != null) {
+            // Objects are hash checked as they're downloaded or skipped, so they're taken as they are rather than being
+            // read in again. Those with no state were found intact while downsizing, so were never in the pool
+            for (Map.Entry<Downloadable, AssetObject> entry : this.assetDownloads.entrySet()) {
+                DownloadPool.State state = result.getState(entry.getKey());
+                if (state == null || state == DownloadPool.State.DOWNLOADED || state == DownloadPool.State.SKIPPED) {
+                    this.verifiedAssets.add(entry.getValue());
+                }
+            }
+            this.verifiedAssets.save();
+        }
+
+        if (this.virtualAssets != null && !this.isCancelled()) {
+            this.organizeVirtualResources(this.virtualAssets);
+        }
+
         this.fireSubProgress(-1);
     }
 
+    /**
+     * Puts the objects of a legacy asset index in place under their names in the virtual folder, as hard links to the
+     * objects rather than copies. Once every object is in place a marker is left next to the folder, so later installs
+     * of the same assets skip it entirely until the asset index changes.
+     */
+    private void organizeVirtualResources(AssetIndex index) {
+        MojangAssetIndex assetIndex = this.packVersion.getMinecraftVersion().getMojangVersion().getAssetIndex();
+        String assetVersion = this.packVersion.getMinecraftVersion().getMojangVersion().getAssets();
+        Path virtual = FileSystem.RESOURCES_VIRTUAL.resolve(assetVersion);
+        Path marker = FileSystem.RESOURCES_VIRTUAL.resolve(assetVersion + ".complete");
+
+        try {
+            if (Files.isDirectory(virtual) && Files.exists(marker) && assetIndex.getSha1().equals(new String(Files
+                    .readAllBytes(marker), StandardCharsets.UTF_8).trim())) {
+                return;
+            }
+
+            Files.deleteIfExists(marker);
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error reading the virtual resources marker " + marker, e);
+        }
+
+        boolean complete = true;
+        for (Map.Entry<String, AssetObject> entry : index.getObjects().entrySet()) {
+            String hash = entry.getValue().getHash();
+            Path file = FileSystem.RESOURCES_OBJECTS.resolve(hash.substring(0, 2)).resolve(hash);
+            complete &= FileUtils.linkFile(file, virtual.resolve(entry.getKey()));
+        }
+
+        if (complete) {
+            try {
+                Files.write(marker, assetIndex.getSha1().getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                LogManager.logStackTrace("Error writing the virtual resources marker " + marker, e);
+            }
+        }
+    }
+
     private void downloadConfigs() {
-        this.totalBytes = this.downloadedBytes = 0;
         this.fireSubProgressUnknown();
 
         this.fireTask(LanguageManager.localize("instance.downloadingconfigs"));
@@ -444,30 +653,107 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         String path = "packs/" + this.pack.getSafeName() + "/versions/" + this.packVersion.getVersion() + "/Configs" +
                 ".zip";
         Downloadable dl = new Downloadable(path, null, this.tmpDir.resolve("Configs.zip"), -1, true, this);
+        dl.resumable();
 
+        this.progress.start(0);
         try {
             dl.download();
         } catch (Exception e) {
             LogManager.logStackTrace(e);
+        } finally {
+            this.progress.stop();
+            this.fireSubProgress(-1);
         }
     }
 
-    private void extractConfigs() {
+    private void extractConfigs() throws IOException {
         Path configs = this.tmpDir.resolve("Configs.zip");
         this.fireSubProgressUnknown();
         this.fireTask(LanguageManager.localize("instance.extractingconfigs"));
-        FileUtils.unzip(configs, this.root);
+        if (this.journal == null) {
+            FileUtils.unzip(configs, this.root);
+        } else {
+            this.updateConfigs(configs);
+        }
         FileUtils.delete(configs);
     }
 
+    /**
+     * Extracts only the configs which differ from those already in the instance, recording each one it replaces in the
+     * update's journal. Configs which are the same size and have the same CRC as in the zip are left alone, and those
+     * in the configs folder which aren't in the zip any more are removed through the journal, as a reinstall would.
+     */
+    private void updateConfigs(Path configs) throws IOException {
+        Path root = this.root.toAbsolutePath().normalize();
+        final Set<Path> extracted = new HashSet<>();
+
+        try (ZipFile zip = new ZipFile(configs.toFile())) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path file = root.resolve(entry.getName()).normalize();
+                if (entry.isDirectory() || !file.startsWith(root)) {
+                    continue;
+                }
+
+                extracted.add(file);
+
+                if (Files.isRegularFile(file) && Files.size(file) == entry.getSize() && crc(file) == entry.getCrc()) {
+                    continue;
+                }
+
+                this.journal.record(file);
+                FileUtils.createDirectory(file.getParent());
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, file);
+                }
+            }
+        }
+
+        Path folder = this.configs.toAbsolutePath().normalize();
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+
+        final List<Path> dropped = new LinkedList<>();
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && !extracted.contains(file)) {
+                    dropped.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (Path file : dropped) {
+            // Recording the file moves it aside, which removes it until the update is rolled back
+            this.journal.record(file);
+        }
+    }
+
+    private static long crc(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+
+        return crc.getValue();
+    }
+
     private void downloadLibraries() {
         this.fireTask(LanguageManager.localize("instance.downloadinglibraries"));
         this.fireSubProgressUnknown();
         DownloadPool pool = this.getLibraries().downsize();
-        this.totalBytes = this.downloadedBytes = 0;
-        this.totalBytes = pool.totalSize();
+        long total = pool.totalSize();
         this.fireSubProgress(0);
+        this.progress.start(total);
         pool.downloadAll(this);
+        this.progress.stop();
         this.fireSubProgress(-1);
     }
 
@@ -509,47 +795,50 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         }
     }
 
-    private void makeDirectories() {
+    private void makeDirectories() throws IOException {
         if (this.reinstall || this.server) {
-            if (Files.exists(this.bin) && Files.isDirectory(this.bin)) {
-                FileUtils.deleteDirectory(this.bin);
-            }
-
-            if (Files.exists(this.configs) && Files.isDirectory(this.configs)) {
-                FileUtils.deleteDirectory(this.configs);
-            }
-
-            if (this.instance != null && this.versionMatch() && this.instance.hasCustomMods()) {
-                FileUtils.deleteSpecifiedFiles(this.mods, this.instance.getCustomMods(ModType.MODS));
-                if (this.packVersion.getMinecraftVersion().usesCoreMods()) {
-                    FileUtils.deleteSpecifiedFiles(this.coremods, this.instance.getCustomMods(ModType.COREMODS));
-                }
-                if (this.reinstall) {
-                    FileUtils.deleteSpecifiedFiles(this.jarmods, this.instance.getCustomMods(ModType.JAR));
-                }
-            } else {
-                FileUtils.deleteDirectory(this.mods);
-                if (this.packVersion.getMinecraftVersion().usesCoreMods()) {
-                    FileUtils.deleteDirectory(this.coremods);
-                }
-                if (this.reinstall) {
-                    FileUtils.deleteDirectory(this.jarmods);
+            // An update leaves everything in place, only changing what it has to
+            if (this.journal == null) {
+                if (Files.exists(this.bin) && Files.isDirectory(this.bin)) {
+                    FileUtils.deleteDirectory(this.bin);
                 }
-            }
 
-            if (this.reinstall) {
-                Path pack = this.texturepacks.resolve("TexturePack.zip");
-                if (Files.exists(pack)) {
-                    FileUtils.delete(pack);
+                if (Files.exists(this.configs) && Files.isDirectory(this.configs)) {
+                    FileUtils.deleteDirectory(this.configs);
                 }
 
-                pack = this.resourcepacks.resolve("ResourcePack.zip");
-                if (Files.exists(pack)) {
-                    FileUtils.delete(pack);
+                if (this.instance != null && this.versionMatch() && this.instance.hasCustomMods()) {
+                    FileUtils.deleteSpecifiedFiles(this.mods, this.instance.getCustomMods(ModType.MODS));
+                    if (this.packVersion.getMinecraftVersion().usesCoreMods()) {
+                        FileUtils.deleteSpecifiedFiles(this.coremods, this.instance.getCustomMods(ModType.COREMODS));
+                    }
+                    if (this.reinstall) {
+                        FileUtils.deleteSpecifiedFiles(this.jarmods, this.instance.getCustomMods(ModType.JAR));
+                    }
+                } else {
+                    FileUtils.deleteDirectory(this.mods);
+                    if (this.packVersion.getMinecraftVersion().usesCoreMods()) {
+                        FileUtils.deleteDirectory(this.coremods);
+                    }
+                    if (this.reinstall) {
+                        FileUtils.deleteDirectory(this.jarmods);
+                    }
                 }
-            } else {
-                if (Files.exists(this.libraries) && Files.isDirectory(this.libraries)) {
-                    FileUtils.deleteDirectory(this.libraries);
+
+                if (this.reinstall) {
+                    Path pack = this.texturepacks.resolve("TexturePack.zip");
+                    if (Files.exists(pack)) {
+                        FileUtils.delete(pack);
+                    }
+
+                    pack = this.resourcepacks.resolve("ResourcePack.zip");
+                    if (Files.exists(pack)) {
+                        FileUtils.delete(pack);
+                    }
+                } else {
+                    if (Files.exists(this.libraries) && Files.isDirectory(this.libraries)) {
+                        FileUtils.deleteDirectory(this.libraries);
+                    }
                 }
             }
 
@@ -557,14 +846,22 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                 for (Delete del : this.version.getDeletes().getFiles()) {
                     Path file = del.getFile(this.instance);
                     if (del.isValid() && Files.exists(file)) {
-                        FileUtils.delete(file);
+                        if (this.journal == null) {
+                            FileUtils.delete(file);
+                        } else {
+                            this.journal.record(file);
+                        }
                     }
                 }
 
                 for (Delete del : this.version.getDeletes().getFolders()) {
                     Path file = del.getFile(this.instance);
                     if (del.isValid() && Files.exists(file)) {
-                        FileUtils.deleteDirectory(file);
+                        if (this.journal == null) {
+                            FileUtils.deleteDirectory(file);
+                        } else {
+                            this.journal.record(file);
+                        }
                     }
                 }
             }
@@ -592,6 +889,11 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     }
 
     private void fireSubProgress(int perc) {
+        // While downloads are being counted the sub progress bar shows them, so other stages leave it alone
+        if (this.progress.isActive()) {
+            return;
+        }
+
         if (perc > 100) {
             perc = 100;
         }
@@ -599,7 +901,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         this.firePropertyChange("subprogress", null, perc);
     }
 
-    private void addPercent(int perc) {
+    private synchronized void addPercent(int perc) {
         this.percent = this.percent + perc;
         if (this.percent > 100) {
             this.percent = 100;
@@ -616,13 +918,55 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     }
 
     public void fireSubProgressUnknown() {
+        if (this.progress.isActive()) {
+            return;
+        }
+
         this.firePropertyChange("subprogressint", null, null);
     }
 
     public void fireTask(String name) {
+        synchronized (this.runningStages) {
+            // While stages run at the same time the label shows them all, rather than whichever last changed it
+            if (this.runningStages.size() > 1) {
+                return;
+            }
+        }
+
         this.firePropertyChange("doing", null, name);
     }
 
+    private void stageStarted(String stage) {
+        synchronized (this.runningStages) {
+            if (STAGE_TASKS.containsKey(stage) && this.runningStages.add(stage) && this.runningStages.size() > 1) {
+                this.fireStages();
+            }
+        }
+    }
+
+    private void stageFinished(String stage) {
+        synchronized (this.runningStages) {
+            if (this.runningStages.remove(stage) && !this.runningStages.isEmpty()) {
+                this.fireStages();
+            }
+        }
+    }
+
+    /**
+     * Shows the stages which are running in the label. Must be called holding the lock on the running stages.
+     */
+    private void fireStages() {
+        StringBuilder label = new StringBuilder();
+        for (String stage : this.runningStages) {
+            if (label.length() != 0) {
+                label.append(", ");
+            }
+            label.append(LanguageManager.localize(STAGE_TASKS.get(stage)));
+        }
+
+        this.firePropertyChange("doing", null, label.toString());
+    }
+
     private boolean hasForge() {
         for (Mod mod : this.selectedMods) {
             if (!mod.server && this.server) {
@@ -637,19 +981,36 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         return false;
     }
 
-    private void installMods() {
-        for (Mod mod : this.selectedMods) {
-            if (!this.isCancelled()) {
-                this.fireTask(LanguageManager.localize("common.installing") + " " + mod.name);
-                this.addPercent(this.selectedMods.size() / 40);
-
-                try {
-                    mod.install(this);
-                } catch (Exception e) {
-                    LogManager.logStackTrace(e);
-                }
+    /**
+     * Installs the mods which must be installed in the order they're listed, once they've all been downloaded and
+     * the jar has been prepared. The other mods have already been installed as they were downloaded.
+     */
+    private void installMods(ModList mods) {
+        for (Mod mod : mods) {
+            if (!this.isCancelled() && mod.isOrdered(this)) {
+                this.installMod(mod);
             }
         }
+
+        ContentStore.save();
+    }
+
+    /**
+     * Gets the mods to download and install, which for an update is only the mods which have changed.
+     */
+    private ModList getModsToInstall() {
+        return this.updatePlan == null ? this.selectedMods : this.updatePlan.getChanged();
+    }
+
+    private void installMod(Mod mod) {
+        this.fireTask(LanguageManager.localize("common.installing") + " " + mod.name);
+        this.addPercent(this.selectedMods.size() / 40);
+
+        try {
+            mod.install(this);
+        } catch (Exception e) {
+            LogManager.logStackTrace(e);
+        }
     }
 
     private void organizeLibraries() {
@@ -660,7 +1021,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
             for (String lib : this.forgeLibraries) {
                 Path library = FileSystem.LIBRARIES.resolve(lib);
                 if (Files.exists(library)) {
-                    FileUtils.copyFile(library, this.bin);
+                    ContentStore.install(library, this.bin, false);
                 } else {
                     LogManager.error("Cannot install instance because the library file " + lib + " wasn't found");
                     this.cancel(true);
@@ -671,6 +1032,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                         .lastIndexOf("-")));
             }
 
+            Map<Path, ExtractRule> natives = new LinkedHashMap<>();
             for (com.atlauncher.data.mojang.Library lib : this.packVersion.getMinecraftVersion().getMojangVersion()
                     .getLibraries()) {
                 if (lib.shouldInstall()) {
@@ -680,9 +1042,9 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                     }
                     if (Files.exists(lib.getFilePath())) {
                         if (lib.shouldExtract()) {
-                            FileUtils.unzip(lib.getFilePath(), this.natives, lib.getExtractRule());
+                            natives.put(lib.getFilePath(), lib.getExtractRule());
                         } else {
-                            FileUtils.copyFile(lib.getFilePath(), this.bin);
+                            ContentStore.install(lib.getFilePath(), this.bin, false);
                         }
                     } else {
                         LogManager.error("Cannot install instance because the library file " + lib.getFilePath() + " " +
@@ -692,6 +1054,13 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
                     }
                 }
             }
+
+            if (!NativesCache.install(this.packVersion.getMinecraftVersion().getVersion(), natives, this.natives)) {
+                LogManager.warn("Couldn't use the natives cache, extracting the natives into the instance instead");
+                for (Map.Entry<Path, ExtractRule> library : natives.entrySet()) {
+                    FileUtils.unzip(library.getKey(), this.natives, library.getValue());
+                }
+            }
         }
 
         Path from, to;
@@ -707,7 +1076,7 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
         }
 
         if (Files.exists(from)) {
-            FileUtils.copyFile(from, to, withFileName);
+            ContentStore.install(from, to, withFileName);
         } else {
             LogManager.error("Cannot install instance because the library file " + from + " wasn't found");
             this.cancel(true);
@@ -720,155 +1089,341 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
     private void deleteMetaInf() {
         Path input = this.getMinecraftJar();
         Path output = FileSystem.TMP.resolve(this.pack.getSafeName() + "-minecraft.jar");
-        try (JarInputStream jis = new JarInputStream(Files.newInputStream(input));
-             JarOutputStream jos = new JarOutputStream(Files.newOutputStream(output))) {
-
-            JarEntry entry;
-            while ((entry = jis.getNextJarEntry()) != null) {
-                if (entry.getName().contains("META-INF")) {
-                    continue;
-                }
-
-                jos.putNextEntry(entry);
-                byte[] bits = new byte[1024];
-                int len;
-                while ((len = jis.read(bits, 0, 1024)) != -1) {
-                    jos.write(bits, 0, len);
-                }
-                jos.closeEntry();
-            }
-        } catch (Exception e) {
-            LogManager.logStackTrace(e);
+        try {
+            CompressionUtils.stripMetaInf(input, output);
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error removing META-INF from " + input, e);
+            return;
         }
 
         FileUtils.delete(input);
         FileUtils.moveFile(output, input);
     }
 
-    @Override
-    protected Boolean doInBackground() throws Exception {
-        this.version = pack.getJsonVersion(this.packVersion.getVersion());
-        this.allMods = (server ? this.version.getMods().server() : this.version.getMods().client()).sort();
+    /**
+     * Works out everything this install would do without doing any of it, from the manifests and what's already on
+     * disk. Nothing is downloaded apart from the pack's version json (if it isn't already loaded), and files already
+     * downloaded are only checked by their size. If the mods haven't been chosen yet the mods which would be selected
+     * by default are used.
+     *
+     * @return the plan of the install
+     */
+    public InstallPlan plan() {
+        if (this.version == null) {
+            this.version = this.pack.getJsonVersion(this.packVersion.getVersion());
+            this.allMods = (this.server ? this.version.getMods().server() : this.version.getMods().client()).sort();
+        }
 
-        if (this.version.hasMessages()) {
-            if (this.reinstall && this.version.getMessages().hasUpdateMessage() && this.version.getMessages()
-                    .showUpdateMessage(this.pack) != 0) {
-                LogManager.error("Instance install canceled after viewing update message");
-                this.cancel(true);
-                return Boolean.FALSE;
-            } else if (this.version.getMessages().hasInstallMessage() && this.version.getMessages()
-                    .showInstallMessage(this.pack) != 0) {
-                LogManager.error("Instance install canceled after viewing install message");
-                this.cancel(true);
-                return Boolean.FALSE;
+        if (this.selectedMods.isEmpty()) {
+            for (Mod mod : this.allMods) {
+                boolean optional = this.server ? mod.isServerOptional() : mod.optional;
+                if (!optional || (this.reinstall && this.instance != null ? this.instance.wasModInstalled(mod.name) :
+                        mod.selected)) {
+                    this.selectedMods.add(mod);
+                }
             }
         }
 
-        this.version.compileColours();
+        InstallPlan plan = new InstallPlan();
 
-        boolean hasOptional = this.allMods.hasOptional();
+        if (this.packVersion.getMinecraftVersion().getMojangVersion().getAssetIndex() != null) {
+            this.planResources(plan);
+        }
 
-        if (this.allMods.size() != 0 && hasOptional) {
-            ModsChooser modsChooser = new ModsChooser(this);
-            if (this.shareCode != null) {
-                modsChooser.applyShareCode(this.shareCode);
-            }
+        this.planLibraries(plan);
 
-            if (this.showModsChooser) {
-                modsChooser.setVisible(true);
+        ModList mods = this.selectedMods;
+        if (this.update) {
+            UpdatePlan update = UpdatePlan.create(this);
+            if (update != null) {
+                mods = update.getChanged();
             }
+        }
 
-            if (modsChooser.wasClosed()) {
-                this.cancel(true);
-                return Boolean.FALSE;
+        for (Mod mod : mods) {
+            String file = this.server && mod.serverUrl != null ? mod.serverFile : mod.getFile();
+            long size = this.server && mod.serverUrl != null ? -1 : (mod.filesize > 0 ? mod.filesize : -1);
+            planFile(plan, FileSystem.DOWNLOADS.resolve(file), size);
+
+            ModType type = this.server && mod.serverUrl != null ? mod.serverType : mod.type;
+            if (type == ModType.EXTRACT || type == ModType.DECOMP || type == ModType.MILLENAIRE || type == ModType
+                    .TEXTUREPACKEXTRACT || type == ModType.RESOURCEPACKEXTRACT || (this.server && type == ModType
+                    .JAR)) {
+                plan.extract(file, size);
+            } else {
+                plan.copy(file, size);
             }
-
-            this.selectedMods.as(modsChooser.getSelected());
         }
 
-        if (!hasOptional) {
-            this.selectedMods.as(this.allMods);
+        if (!this.version.hasNoConfigs()) {
+            plan.download("Configs.zip", -1);
+            plan.extract("Configs.zip", -1);
         }
 
-        for (Mod mod : this.selectedMods) {
-            String file = mod.getFile();
-            if (this.version.getCaseAllFiles() == CaseType.upper) {
-                file = file.substring(0, file.lastIndexOf(".")).toUpperCase() + file.substring(file.lastIndexOf("."));
-            } else if (this.version.getCaseAllFiles() == CaseType.lower) {
-                file = file.substring(0, file.lastIndexOf(".")).toLowerCase() + file.substring(file.lastIndexOf("."));
+        LogManager.debug("Planned install of " + this.pack.getName() + " " + this.packVersion.getVersion() + ": " +
+                plan);
+
+        return plan;
+    }
+
+    private void planResources(InstallPlan plan) {
+        MojangAssetIndex assetIndex = this.packVersion.getMinecraftVersion().getMojangVersion().getAssetIndex();
+        String assetVersion = this.packVersion.getMinecraftVersion().getMojangVersion().getAssets();
+        Path indexFile = FileSystem.RESOURCES_INDEXES.resolve(assetVersion + ".json");
+
+        AssetIndex index = null;
+        if (Files.exists(indexFile)) {
+            try {
+                index = new JsonFile(indexFile).convert(AssetIndex.class);
+            } catch (Exception e) {
+                LogManager.logStackTrace("Error reading the asset index " + indexFile, e);
             }
+        }
 
-            this.installedMods.add(mod.generateDisableableMod(this, file));
+        if (index == null) {
+            // Without the index only the total size of the objects is known
+            plan.download(indexFile.getFileName().toString(), assetIndex.getSize());
+            plan.download("assets " + assetVersion, assetIndex.getTotalSize() > 0 ? assetIndex.getTotalSize() : -1);
+            return;
         }
 
-        if (this.reinstall && this.instance.hasCustomMods() && this.instance.getMinecraftVersion().equalsIgnoreCase
-                (this.packVersion.getMinecraftVersion().getVersion())) {
-            for (DisableableMod mod : this.instance.getCustomDisableableMods()) {
-                this.installedMods.add(mod);
+        plan.cached(indexFile.getFileName().toString(), assetIndex.getSize(), false);
+
+        VerifiedAssets verified = VerifiedAssets.load(assetVersion, assetIndex.getSha1());
+        for (Map.Entry<String, AssetObject> entry : index.getObjects().entrySet()) {
+            AssetObject obj = entry.getValue();
+            if (verified.isVerified(obj)) {
+                plan.cached(entry.getKey(), obj.getSize(), true);
+            } else {
+                planFile(plan, FileSystem.RESOURCES_OBJECTS.resolve(obj.getHash().substring(0, 2)).resolve(obj
+                        .getHash()), obj.getSize());
             }
         }
+    }
 
-        FileUtils.createDirectory(this.tmpDir);
-        BackupMethods.backup(this);
-        this.makeDirectories();
-        this.addPercent(5);
-        this.setMainClass();
-        this.setExtraArgs();
+    /**
+     * Plans the same libraries as {@link #getLibraries()} and {@link #organizeLibraries()}, without changing anything.
+     */
+    private void planLibraries(InstallPlan plan) {
+        List<String> libraryNamesAdded = new LinkedList<>();
 
-        if (this.packVersion.getMinecraftVersion().getMojangVersion().getAssetIndex() != null) {
-            this.downloadResources();
-            if (this.isCancelled()) {
-                return Boolean.FALSE;
+        for (Library lib : this.version.getLibraries()) {
+            if (lib.hasDepends()) {
+                if (!lib.dependencyValidator().find(this.selectedMods)) {
+                    continue;
+                }
+            } else if (lib.hasDependsGroup()) {
+                if (!lib.groupValidator().find(this.selectedMods)) {
+                    continue;
+                }
             }
-        }
 
-        this.downloadLibraries();
-        if (this.isCancelled()) {
-            return Boolean.FALSE;
+            if (this.server && !lib.forServer()) {
+                continue;
+            }
+
+            long size = lib.getFilesize() > 0 ? lib.getFilesize() : -1;
+            planFile(plan, FileSystem.LIBRARIES.resolve(lib.getFile()), size);
+            plan.copy(lib.getFile(), size);
+
+            if (lib.getFile().contains("-")) {
+                libraryNamesAdded.add(lib.getFile().substring(0, lib.getFile().lastIndexOf("-")));
+            } else {
+                libraryNamesAdded.add(lib.getFile());
+            }
         }
 
-        this.organizeLibraries();
-        if (this.isCancelled()) {
-            return Boolean.FALSE;
+        if (!this.server) {
+            for (com.atlauncher.data.mojang.Library lib : this.packVersion.getMinecraftVersion().getMojangVersion()
+                    .getLibraries()) {
+                if (!lib.shouldInstall()) {
+                    continue;
+                }
+
+                String name = lib.getFilePath().getFileName().toString();
+                if (libraryNamesAdded.contains(name.substring(0, name.lastIndexOf("-")))) {
+                    continue;
+                }
+
+                planFile(plan, lib.getFilePath(), -1);
+                if (lib.shouldExtract()) {
+                    plan.extract(name, -1);
+                } else {
+                    plan.copy(name, -1);
+                }
+            }
         }
 
+        MojangDownloads downloads = this.packVersion.getMinecraftVersion().getMojangVersion().getDownloads();
+        Path jar;
+        long size;
         if (this.server) {
-            for (Path p : this.serverLibraries) {
-                FileUtils.createDirectory(p);
-                FileUtils.copyFile(FileSystem.LIBRARIES.resolve(p.getFileName()), p, true);
-            }
+            jar = FileSystem.JARS.resolve("minecraft_server." + this.packVersion.getMinecraftVersion().getVersion() +
+                    ".jar");
+            size = downloads.getServer().getSize();
+        } else {
+            jar = FileSystem.JARS.resolve(this.packVersion.getMinecraftVersion().getVersion() + ".jar");
+            size = downloads.getClient().getSize();
         }
 
-        this.addPercent(5);
+        planFile(plan, jar, size);
+        plan.copy(jar.getFileName().toString(), size);
 
-        if (this.server && this.selectedMods.hasJarMod(this)) {
-            this.fireTask(LanguageManager.localize("server.extractingjar"));
-            this.fireSubProgressUnknown();
-            FileUtils.unzip(this.getTempJarDirectory(), this.getMinecraftJar());
+        // Extracted for server jar mods, or rewritten without its META-INF for client jar mods
+        if (this.selectedMods.hasJarMod(this) && (this.server || !this.hasForge())) {
+            plan.extract(jar.getFileName().toString(), size);
         }
+    }
 
-        if (!this.server && this.selectedMods.hasJarMod(this) && !this.hasForge()) {
-            this.deleteMetaInf();
+    private static void planFile(InstallPlan plan, Path file, long size) {
+        String name = file.getFileName().toString();
+        try {
+            if (Files.isRegularFile(file) && (size < 0 || Files.size(file) == size)) {
+                plan.cached(name, size, false);
+                return;
+            }
+        } catch (IOException e) {
+            LogManager.logStackTrace("Error checking the size of " + file, e);
         }
 
-        this.addPercent(5);
-        if (this.selectedMods.size() != 0) {
-            this.addPercent(40);
-            this.fireTask(LanguageManager.localize("instance.downloadingmods"));
-            this.downloadMods(this.selectedMods);
-            if (this.isCancelled()) {
-                return Boolean.FALSE;
+        plan.download(name, size);
+    }
+
+    /**
+     * Builds the stages of the install after the mods have been chosen. Downloading the resources, libraries, mods and
+     * configs don't depend on each other so they run at the same time, while each stage that changes the instance
+     * waits for the stages whose files it needs.
+     */
+    private TaskGraph installGraph() {
+        TaskGraph graph = new TaskGraph(new TaskGraph.Cancellable() {
+            @Override
+            public boolean isCancelled() {
+                return InstanceInstaller.this.isCancelled();
             }
-            this.addPercent(40);
-            this.installMods();
-        } else {
-            this.addPercent(80);
+        }, new TaskGraph.Listener() {
+            @Override
+            public void started(String stage) {
+                LogManager.debug("Install stage " + stage + " started");
+                stageStarted(stage);
+            }
+
+            @Override
+            public void finished(String stage, long millis) {
+                LogManager.debug("Install stage " + stage + " finished in " + millis + "ms");
+                stageFinished(stage);
+                Integer weight = STAGE_WEIGHTS.get(stage);
+                if (weight != null) {
+                    addPercent(weight);
+                }
+            }
+        });
+
+        if (this.packVersion.getMinecraftVersion().getMojangVersion().getAssetIndex() != null) {
+            graph.add("resources", new TaskGraph.Stage() {
+                @Override
+                public void run() throws Exception {
+                    downloadResources();
+                }
+            });
         }
 
-        if (this.isCancelled()) {
-            return Boolean.FALSE;
+        graph.add("libraries", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                downloadLibraries();
+            }
+        });
+
+        graph.add("organizeLibraries", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                organizeLibraries();
+
+                if (server) {
+                    for (Path p : serverLibraries) {
+                        FileUtils.createDirectory(p);
+                        ContentStore.install(FileSystem.LIBRARIES.resolve(p.getFileName()), p, true);
+                    }
+                }
+            }
+        }, "libraries");
+
+        graph.add("prepareJar", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                if (server && selectedMods.hasJarMod(InstanceInstaller.this)) {
+                    fireTask(LanguageManager.localize("server.extractingjar"));
+                    fireSubProgressUnknown();
+                    FileUtils.unzip(getTempJarDirectory(), getMinecraftJar());
+                }
+
+                if (!server && selectedMods.hasJarMod(InstanceInstaller.this) && !hasForge()) {
+                    deleteMetaInf();
+                }
+            }
+        }, "organizeLibraries");
+
+        graph.add("downloadMods", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                if (getModsToInstall().size() != 0) {
+                    fireTask(LanguageManager.localize("instance.downloadingmods"));
+                    downloadMods(getModsToInstall());
+                }
+            }
+        });
+
+        graph.add("installMods", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                if (getModsToInstall().size() != 0) {
+                    installMods(getModsToInstall());
+                }
+            }
+        }, "downloadMods", "prepareJar");
+
+        graph.add("finishMods", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                finishMods();
+            }
+        }, "installMods");
+
+        graph.add("actions", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                if (version.hasActions()) {
+                    for (Action action : version.getActions()) {
+                        action.execute(InstanceInstaller.this);
+                    }
+                }
+            }
+        }, "finishMods");
+
+        if (!this.version.hasNoConfigs()) {
+            graph.add("downloadConfigs", new TaskGraph.Stage() {
+                @Override
+                public void run() throws Exception {
+                    downloadConfigs();
+                }
+            });
+
+            graph.add("extractConfigs", new TaskGraph.Stage() {
+                @Override
+                public void run() throws Exception {
+                    extractConfigs();
+                }
+            }, "downloadConfigs", "actions");
         }
 
+        return graph;
+    }
+
+    /**
+     * Cases the mods files and zips back up the files extracted from the jar and texture and resource packs, once all
+     * the mods have been installed.
+     */
+    private void finishMods() throws IOException {
         if (this.version.shouldCaseAllFiles()) {
             try {
                 if (this.reinstall && this.versionMatch()) {
@@ -905,44 +1460,180 @@ public class InstanceInstaller extends SwingWorker<Boolean, Void> {
             }
             CompressionUtils.zip(this.getTempResourcePacksDirectory(), this.resourcepacks);
         }
+    }
+
+    @Override
+    protected Boolean doInBackground() throws Exception {
+        this.version = pack.getJsonVersion(this.packVersion.getVersion());
+        this.allMods = (server ? this.version.getMods().server() : this.version.getMods().client()).sort();
 
-        if (this.isCancelled()) {
-            return Boolean.FALSE;
+        if (this.version.hasMessages()) {
+            if (this.reinstall && this.version.getMessages().hasUpdateMessage() && this.version.getMessages()
+                    .showUpdateMessage(this.pack) != 0) {
+                LogManager.error("Instance install canceled after viewing update message");
+                this.cancel(true);
+                return Boolean.FALSE;
+            } else if (this.version.getMessages().hasInstallMessage() && this.version.getMessages()
+                    .showInstallMessage(this.pack) != 0) {
+                LogManager.error("Instance install canceled after viewing install message");
+                this.cancel(true);
+                return Boolean.FALSE;
+            }
         }
 
-        if (this.version.hasActions()) {
-            for (Action action : this.version.getActions()) {
-                action.execute(this);
+        this.version.compileColours();
+
+        boolean hasOptional = this.allMods.hasOptional();
+
+        if (this.allMods.size() != 0 && hasOptional) {
+            ModsChooser modsChooser = new ModsChooser(this);
+            if (this.shareCode != null) {
+                modsChooser.applyShareCode(this.shareCode);
+            }
+
+            if (this.showModsChooser) {
+                modsChooser.setVisible(true);
+            }
+
+            if (modsChooser.wasClosed()) {
+                this.cancel(true);
+                return Boolean.FALSE;
             }
+
+            this.selectedMods.as(modsChooser.getSelected());
         }
 
-        if (this.isCancelled()) {
-            return Boolean.FALSE;
+        if (!hasOptional) {
+            this.selectedMods.as(this.allMods);
         }
 
-        if (!this.version.hasNoConfigs()) {
-            this.downloadConfigs();
-            this.extractConfigs();
+        for (Mod mod : this.selectedMods) {
+            this.installedMods.add(mod.generateDisableableMod(this, this.caseFile(mod)));
         }
 
-        if (FileSystem.COMMON.toFile().listFiles().length != 0) {
-            FileUtils.copyDirectory(FileSystem.COMMON, this.root);
+        if (this.reinstall && this.instance.hasCustomMods() && this.instance.getMinecraftVersion().equalsIgnoreCase
+                (this.packVersion.getMinecraftVersion().getVersion())) {
+            for (DisableableMod mod : this.instance.getCustomDisableableMods()) {
+                this.installedMods.add(mod);
+            }
         }
 
-        BackupMethods.restore(this);
+        if (this.reinstall && this.instance != null) {
+            UpdateJournal.recover(this.root);
+        }
 
-        if (this.server) {
-            File batFile = this.root.resolve("LaunchServer.bat").toFile();
-            File shFile = this.root.resolve("LaunchServer.sh").toFile();
-            FileUtils.replaceText(FileSystem.LIBRARIES.resolve("LaunchServer.bat").toFile(), batFile,
-                    "%%SERVERJAR%%", getServerJar());
-            FileUtils.replaceText(FileSystem.LIBRARIES.resolve("LaunchServer.sh").toFile(), shFile, "%%SERVERJAR%%",
-                    getServerJar());
-            batFile.setExecutable(true);
-            shFile.setExecutable(true);
+        FileUtils.createDirectory(this.tmpDir);
+        BackupMethods.backup(this);
+
+        if (this.update) {
+            this.updatePlan = UpdatePlan.create(this);
+            if (this.updatePlan != null) {
+                this.startUpdate();
+            }
         }
 
-        return Boolean.TRUE;
+        boolean finished = false;
+        try {
+            this.makeDirectories();
+            this.addPercent(5);
+            this.setMainClass();
+            this.setExtraArgs();
+
+            if (!this.installGraph().run() || this.isCancelled()) {
+                return Boolean.FALSE;
+            }
+
+            if (FileSystem.COMMON.toFile().listFiles().length != 0) {
+                FileUtils.copyDirectory(FileSystem.COMMON, this.root);
+            }
+
+            BackupMethods.restore(this);
+
+            if (this.server) {
+                File batFile = this.root.resolve("LaunchServer.bat").toFile();
+                File shFile = this.root.resolve("LaunchServer.sh").toFile();
+                FileUtils.replaceText(FileSystem.LIBRARIES.resolve("LaunchServer.bat").toFile(), batFile,
+                        "%%SERVERJAR%%", getServerJar());
+                FileUtils.replaceText(FileSystem.LIBRARIES.resolve("LaunchServer.sh").toFile(), shFile,
+                        "%%SERVERJAR%%", getServerJar());
+                batFile.setExecutable(true);
+                shFile.setExecutable(true);
+            }
+
+            finished = true;
+            return Boolean.TRUE;
+        } finally {
+            if (this.journal != null) {
+                if (finished) {
+                    this.journal.commit();
+                } else {
+                    this.journal.rollback();
+                }
+            }
+
+            // Drops the store references of files the install removed or replaced without going through the store
+            ContentStore.prune(this.root);
+
+            // Keeps the hashes recorded while checking and downloading the files of the install
+            VerificationLedger.save();
+        }
+    }
+
+    /**
+     * Moves aside the files the update will remove or replace, so the update can be rolled back if it doesn't finish.
+     * The libraries in the bin folder are put back together from the shared libraries folder, so they're moved aside
+     * as a whole.
+     */
+    private void startUpdate() throws IOException {
+        this.journal = new UpdateJournal(this.root);
+
+        // Anything which goes wrong from here is rolled back, leaving the instance as it was
+        this.corrupt = false;
+        this.jarOrder = this.instance.getJarOrder();
+
+        for (Path path : this.updatePlan.getRemoved()) {
+            this.journal.record(path);
+        }
+
+        for (Mod mod : this.updatePlan.getChanged()) {
+            // The file is cased once installed, so record it under both names
+            this.journal.record(UpdatePlan.path(this, mod, this.caseFile(mod)));
+            this.journal.record(UpdatePlan.path(this, mod, mod.getFile()));
+        }
+
+        this.journal.record(this.bin);
+
+        for (int i = 0; i < this.installedMods.size(); i++) {
+            DisableableMod mod = this.installedMods.get(i);
+            if (!mod.isUserAdded() && this.updatePlan.isDisabled(mod.getFilename())) {
+                this.installedMods.set(i, new DisableableMod(mod.getName(), mod.getVersion(), mod.isOptional(), mod
+                        .getFilename(), mod.getType(), mod.getColour(), mod.getDescription(), true, false));
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the given mod's file, cased as the version asks.
+     */
+    String caseFile(Mod mod) {
+        String file = mod.getFile();
+        if (this.version.getCaseAllFiles() == CaseType.upper) {
+            file = file.substring(0, file.lastIndexOf(".")).toUpperCase() + file.substring(file.lastIndexOf("."));
+        } else if (this.version.getCaseAllFiles() == CaseType.lower) {
+            file = file.substring(0, file.lastIndexOf(".")).toLowerCase() + file.substring(file.lastIndexOf("."));
+        }
+
+        return file;
+    }
+
+    /**
+     * Sets whether this reinstall is an update to a new version of the pack, so only the mods which have changed are
+     * installed, if the changes allow it.
+     *
+     * @param update true if this install is an update
+     */
+    public void setUpdate(boolean update) {
+        this.update = update;
     }
 
     public String getShareCodeData(String code) {
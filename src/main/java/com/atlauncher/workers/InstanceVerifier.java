@@ -0,0 +1,567 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.workers;
+
+import com.atlauncher.FileSystem;
+import com.atlauncher.collection.DownloadPool;
+import com.atlauncher.data.DisableableMod;
+import com.atlauncher.data.Downloadable;
+import com.atlauncher.data.Instance;
+import com.atlauncher.data.json.DownloadType;
+import com.atlauncher.data.json.Library;
+import com.atlauncher.data.json.Mod;
+import com.atlauncher.data.json.ModType;
+import com.atlauncher.data.json.Version;
+import com.atlauncher.data.mojang.AssetIndex;
+import com.atlauncher.data.mojang.AssetObject;
+import com.atlauncher.data.mojang.MojangAssetIndex;
+import com.atlauncher.data.mojang.MojangConstants;
+import com.atlauncher.data.mojang.MojangDownload;
+import com.atlauncher.data.mojang.MojangVersion;
+import com.atlauncher.data.version.MinecraftVersion;
+import com.atlauncher.exceptions.InvalidMinecraftVersion;
+import com.atlauncher.managers.LogManager;
+import com.atlauncher.managers.MinecraftVersionManager;
+import com.atlauncher.nio.JsonFile;
+import com.atlauncher.utils.ContentStore;
+import com.atlauncher.utils.Hashing;
+import com.atlauncher.utils.VerificationLedger;
+import com.atlauncher.utils.VerifiedAssets;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks the files of an installed instance against what the install should have put there, and repairs only the
+ * files which are missing or corrupt rather than reinstalling the whole instance.
+ *
+ * The expected files are built up from the mods of the installed version of the pack, the libraries the instance was
+ * installed with, the Minecraft jar and the asset index. Their sizes and hashes are then checked across every core,
+ * splitting the list in half until each part is small enough to check on one thread.
+ */
+public final class InstanceVerifier {
+    /**
+     * The most files checked by a single task before the list is split in two.
+     */
+    private static final int THRESHOLD = 64;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private final Instance instance;
+    private final List<ExpectedFile> files = new ArrayList<>();
+
+    public InstanceVerifier(Instance instance) {
+        this.instance = instance;
+    }
+
+    /**
+     * Checks the files of the instance.
+     *
+     * @return the files found to be missing, corrupt or not part of the install
+     */
+    public Report verify() {
+        this.files.clear();
+
+        MojangVersion mojang = null;
+        boolean coreMods = true;
+        try {
+            MinecraftVersion minecraft = MinecraftVersionManager.getMinecraftVersion(this.instance
+                    .getMinecraftVersion());
+            mojang = minecraft.getMojangVersion();
+            coreMods = minecraft.usesCoreMods();
+        } catch (InvalidMinecraftVersion e) {
+            LogManager.warn("Can't verify the Minecraft files of instance " + this.instance.getName() + " as " +
+                    "Minecraft " + this.instance.getMinecraftVersion() + " isn't known");
+        }
+
+        Version version = null;
+        if (this.instance.getRealPack() == null) {
+            LogManager.warn("Can't verify the mods of instance " + this.instance.getName() + " as its pack is no " +
+                    "longer available");
+        } else {
+            try {
+                version = this.instance.getRealPack().getJsonVersion(this.instance.getVersion());
+            } catch (Exception e) {
+                LogManager.logStackTrace("Error getting version " + this.instance.getVersion() + " of " + this
+                        .instance.getPackName() + " to verify against", e);
+            }
+        }
+
+        if (version != null && version.getMods() != null) {
+            this.addMods(version, coreMods);
+        }
+
+        this.addLibraries(version, mojang);
+
+        if (mojang != null) {
+            this.addMinecraftJar(mojang);
+
+            if (mojang.getAssetIndex() != null) {
+                this.addAssets(mojang.getAssetIndex());
+            }
+        }
+
+        return this.check();
+    }
+
+    /**
+     * Adds a file to the files checked by {@link #check()}.
+     *
+     * @param path        the path the file should be at
+     * @param algorithm   the algorithm the hash was made with, either {@link VerificationLedger#MD5} or
+     *                    {@link VerificationLedger#SHA1}
+     * @param hash        the hash the file should have, or null if it can only be checked to see if it's there
+     * @param size        the size the file should be, or -1 if it isn't known
+     * @param source      downloads the file, or the shared copy it's installed from, or null if it can't be repaired
+     * @param installFrom the shared copy the file is installed from, or null if it's downloaded straight to its path
+     */
+    void expect(Path path, String algorithm, Hashing.HashCode hash, long size, Downloadable source, Path
+            installFrom) {
+        this.files.add(new ExpectedFile(path, algorithm, hash, size, source, installFrom));
+    }
+
+    /**
+     * Checks the files added by {@link #verify()} or {@link #expect}.
+     *
+     * @return the files found to be missing, corrupt or not part of the install
+     */
+    Report check() {
+        Report report = new Report();
+        POOL.invoke(new Check(this.files, 0, this.files.size(), report));
+        this.findExtras(report);
+        report.sort();
+
+        for (ExpectedFile file : report.corruptFiles) {
+            if (file.path.startsWith(FileSystem.RESOURCES_OBJECTS)) {
+                // Corrupted in place, so the next install of these assets needs to look at every object again
+                VerifiedAssets.invalidate(this.instance.getAssets());
+                break;
+            }
+        }
+
+        LogManager.info("Verified " + this.files.size() + " files of instance " + this.instance.getName() + ": " +
+                report.missing.size() + " missing, " + report.corrupt.size() + " corrupt and " + report.extra.size() +
+                " not part of the install");
+
+        VerificationLedger.save();
+
+        return report;
+    }
+
+    /**
+     * Repairs the missing and corrupt files found by {@link #verify()}, downloading only those files (or the shared
+     * copies they're installed from) again. Files not part of the install are left alone.
+     *
+     * @param report the report from verifying the instance
+     * @return true if every missing and corrupt file was repaired
+     */
+    public boolean repair(Report report) {
+        List<ExpectedFile> broken = new ArrayList<>();
+        broken.addAll(report.missingFiles);
+        broken.addAll(report.corruptFiles);
+
+        Map<Downloadable, Boolean> sources = new IdentityHashMap<>();
+        DownloadPool pool = new DownloadPool();
+        for (ExpectedFile file : broken) {
+            if (file.source == null) {
+                LogManager.warn("Can't repair " + file.path + " without reinstalling the instance");
+            } else if (sources.put(file.source, Boolean.TRUE) == null) {
+                pool.add(file.source);
+            }
+        }
+
+        if (!pool.isEmpty()) {
+            pool.downloadAll();
+        }
+
+        for (ExpectedFile file : broken) {
+            if (file.source != null && file.installFrom != null && Files.exists(file.installFrom)) {
+                ContentStore.reinstall(file.installFrom, file.path);
+            }
+        }
+
+        ContentStore.save();
+
+        int repaired = 0;
+        for (ExpectedFile file : broken) {
+            if (file.check() == null) {
+                repaired++;
+            } else {
+                LogManager.error("Couldn't repair " + file.path);
+            }
+        }
+
+        VerificationLedger.save();
+
+        report.repaired = repaired;
+        return repaired == broken.size();
+    }
+
+    private void addMods(Version version, boolean coreMods) {
+        Map<String, Mod> mods = new HashMap<>();
+        for (Mod mod : version.getMods()) {
+            mods.put(mod.name, mod);
+        }
+
+        for (DisableableMod installed : this.instance.getInstalledMods()) {
+            if (installed.isUserAdded() || installed.isDisabled()) {
+                continue;
+            }
+
+            Mod mod = mods.get(installed.getName());
+            if (mod == null || !mod.hasMD5() || mod.filePattern || mod.extractTo != null || mod.decompType != null) {
+                continue;
+            }
+
+            // Core mods are installed into the mods folder for versions of Minecraft which don't load core mods
+            if (installed.getType() == ModType.COREMODS && !coreMods) {
+                continue;
+            }
+
+            Path path = installed.getFilePath(this.instance);
+            if (path == null) {
+                continue;
+            }
+
+            Path download = FileSystem.DOWNLOADS.resolve(mod.getFile());
+            Downloadable source = null;
+            if (mod.download == DownloadType.SERVER || mod.download == DownloadType.DIRECT) {
+                source = new Downloadable(mod.getUrl(), mod.md5.toString(), download, mod.filesize > 0 ? mod
+                        .filesize : -1, mod.download == DownloadType.SERVER, null);
+                source.resumable();
+            }
+
+            this.files.add(new ExpectedFile(path, VerificationLedger.MD5, mod.md5, mod.filesize, source, download));
+        }
+    }
+
+    private void addLibraries(Version version, MojangVersion mojang) {
+        if (this.instance.getLibrariesNeeded() == null) {
+            return;
+        }
+
+        Set<String> needed = new HashSet<>();
+        Collections.addAll(needed, this.instance.getLibrariesNeeded().split(","));
+
+        if (version != null && version.getLibraries() != null) {
+            for (Library lib : version.getLibraries()) {
+                if (!needed.remove(lib.getFile())) {
+                    continue;
+                }
+
+                boolean server = lib.getDownloadType() == DownloadType.SERVER || (!lib.getUrl().startsWith
+                        ("http://") && !lib.getUrl().startsWith("https://"));
+                Path shared = FileSystem.LIBRARIES.resolve(lib.getFile());
+                Hashing.HashCode hash = lib.getMD5() == null ? null : Hashing.HashCode.fromString(lib.getMD5());
+                long size = lib.getFilesize() > 0 ? lib.getFilesize() : -1;
+                Downloadable source = new Downloadable(lib.getUrl(), lib.getMD5(), shared, (int) size, server, null);
+
+                this.files.add(new ExpectedFile(shared, VerificationLedger.MD5, hash, size, source, null));
+                this.files.add(new ExpectedFile(this.instance.getBinDirectory().resolve(shared.getFileName()),
+                        VerificationLedger.MD5, hash, size, source, shared));
+            }
+        }
+
+        if (mojang != null && mojang.getLibraries() != null) {
+            for (com.atlauncher.data.mojang.Library lib : mojang.getLibraries()) {
+                if (!lib.shouldInstall() || lib.shouldExtract()) {
+                    continue;
+                }
+
+                Path shared = lib.getFilePath();
+                if (!needed.remove(shared.getFileName().toString())) {
+                    continue;
+                }
+
+                // Mojang don't give the hashes of libraries in the versions the launcher knows about, so these can
+                // only be checked to see if they're there
+                Downloadable source = new Downloadable(lib.getURL(), null, shared, -1, false, null);
+
+                this.files.add(new ExpectedFile(shared, null, null, -1, source, null));
+                this.files.add(new ExpectedFile(this.instance.getBinDirectory().resolve(shared.getFileName()), null,
+                        null, -1, source, shared));
+            }
+        }
+
+        for (String name : needed) {
+            this.files.add(new ExpectedFile(this.instance.getBinDirectory().resolve(name), null, null, -1, null,
+                    null));
+        }
+    }
+
+    private void addMinecraftJar(MojangVersion mojang) {
+        if (mojang.getDownloads() == null || mojang.getDownloads().getClient() == null) {
+            return;
+        }
+
+        MojangDownload client = mojang.getDownloads().getClient();
+        Path shared = FileSystem.JARS.resolve(this.instance.getMinecraftVersion() + ".jar");
+        Hashing.HashCode hash = Hashing.HashCode.fromString(client.getSha1());
+        Downloadable source = new Downloadable(client.getUrl(), client.getSha1(), shared, (int) client.getSize(),
+                false, null);
+        source.resumable();
+
+        this.files.add(new ExpectedFile(shared, VerificationLedger.SHA1, hash, client.getSize(), source, null));
+
+        if (this.instance.hasJarMods()) {
+            // The jar mods have been merged into this jar, so it can only be rebuilt by reinstalling
+            this.files.add(new ExpectedFile(this.instance.getMinecraftJar(), null, null, -1, null, null));
+        } else {
+            this.files.add(new ExpectedFile(this.instance.getMinecraftJar(), VerificationLedger.SHA1, hash, client
+                    .getSize(), source, shared));
+        }
+    }
+
+    private void addAssets(MojangAssetIndex assetIndex) {
+        Path indexFile = FileSystem.RESOURCES_INDEXES.resolve(this.instance.getAssets() + ".json");
+        ExpectedFile index = new ExpectedFile(indexFile, VerificationLedger.SHA1, Hashing.HashCode.fromString
+                (assetIndex.getSha1()), assetIndex.getSize(), new Downloadable(assetIndex.getUrl(), assetIndex
+                .getSha1(), indexFile, (int) assetIndex.getSize(), false, null), null);
+        this.files.add(index);
+
+        // The objects can't be listed without the index, so if it's broken they'll be checked once it's repaired
+        if (index.check() != null) {
+            return;
+        }
+
+        AssetIndex assets;
+        try {
+            assets = new JsonFile(indexFile).convert(AssetIndex.class);
+        } catch (Exception e) {
+            LogManager.logStackTrace("Error reading the asset index " + indexFile, e);
+            return;
+        }
+
+        for (AssetObject obj : assets.getUniqueObjects()) {
+            String filename = obj.getHash().substring(0, 2) + "/" + obj.getHash();
+            Path file = FileSystem.RESOURCES_OBJECTS.resolve(filename);
+            this.files.add(new ExpectedFile(file, VerificationLedger.SHA1, Hashing.HashCode.fromString(obj.getHash()),
+                    obj.getSize(), new Downloadable(MojangConstants.RESOURCES_BASE.getURL(filename), obj.getHash(),
+                    file, (int) obj.getSize(), false, null), null));
+        }
+    }
+
+    private void findExtras(Report report) {
+        Set<Path> expected = new HashSet<>();
+        for (ExpectedFile file : this.files) {
+            expected.add(file.path);
+        }
+        for (DisableableMod mod : this.instance.getInstalledMods()) {
+            Path path = mod.isDisabled() ? mod.getDisabledFilePath(this.instance) : mod.getFilePath(this.instance);
+            if (path != null) {
+                expected.add(path);
+            }
+        }
+
+        for (Path dir : new Path[]{this.instance.getModsDirectory(), this.instance.getCoreModsDirectory(), this
+                .instance.getJarModsDirectory()}) {
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path file : stream) {
+                    if (Files.isRegularFile(file) && !expected.contains(file)) {
+                        report.extra.add(file);
+                    }
+                }
+            } catch (IOException e) {
+                LogManager.logStackTrace("Error looking for extra files in " + dir, e);
+            }
+        }
+    }
+
+    /**
+     * The outcome of verifying an instance.
+     */
+    public static final class Report {
+        private final Queue<ExpectedFile> missingFiles = new ConcurrentLinkedQueue<>();
+        private final Queue<ExpectedFile> corruptFiles = new ConcurrentLinkedQueue<>();
+        private final List<Path> missing = new LinkedList<>();
+        private final List<Path> corrupt = new LinkedList<>();
+        private final List<Path> extra = new LinkedList<>();
+        private int repaired = 0;
+
+        private Report() {
+        }
+
+        public List<Path> getMissing() {
+            return Collections.unmodifiableList(this.missing);
+        }
+
+        public List<Path> getCorrupt() {
+            return Collections.unmodifiableList(this.corrupt);
+        }
+
+        /**
+         * Gets the files in the instance's mods, coremods and jarmods folders which weren't installed by the pack or
+         * added by the user. These are only ever reported, never removed.
+         *
+         * @return the files not part of the install
+         */
+        public List<Path> getExtra() {
+            return Collections.unmodifiableList(this.extra);
+        }
+
+        public int getRepaired() {
+            return this.repaired;
+        }
+
+        /**
+         * Checks if no files were missing or corrupt.
+         *
+         * @return true if every expected file was intact
+         */
+        public boolean isClean() {
+            return this.missingFiles.isEmpty() && this.corruptFiles.isEmpty();
+        }
+
+        private void sort() {
+            this.missing.addAll(paths(this.missingFiles));
+            this.corrupt.addAll(paths(this.corruptFiles));
+            Collections.sort(this.missing);
+            Collections.sort(this.corrupt);
+            Collections.sort(this.extra);
+        }
+
+        private static List<Path> paths(Collection<ExpectedFile> files) {
+            List<Path> paths = new ArrayList<>(files.size());
+            for (ExpectedFile file : files) {
+                paths.add(file.path);
+            }
+            return paths;
+        }
+    }
+
+    private enum Problem {
+        MISSING, CORRUPT
+    }
+
+    /**
+     * A file the install should have put in place, along with where to get it from again if it's broken.
+     */
+    private static final class ExpectedFile {
+        private final Path path;
+        private final String algorithm;
+        private final Hashing.HashCode hash;
+        private final long size;
+
+        /**
+         * Downloads this file, or the shared copy it's installed from.
+         */
+        private final Downloadable source;
+
+        /**
+         * The shared copy (in the Downloads, Libraries or Jars folder) this file is installed from, or null if the
+         * file is downloaded straight to its path.
+         */
+        private final Path installFrom;
+
+        private ExpectedFile(Path path, String algorithm, Hashing.HashCode hash, long size, Downloadable source,
+                             Path installFrom) {
+            this.path = path;
+            this.algorithm = algorithm;
+            this.hash = hash == null || hash.equals(Hashing.HashCode.EMPTY) ? null : hash;
+            this.size = size;
+            this.source = source;
+            this.installFrom = installFrom;
+        }
+
+        /**
+         * Checks this file, comparing its size before hashing it so files cut short by a failed write are found
+         * without reading them.
+         *
+         * @return what's wrong with the file, or null if it's intact
+         */
+        private Problem check() {
+            if (!Files.isRegularFile(this.path)) {
+                return Problem.MISSING;
+            }
+
+            if (this.size > 0) {
+                try {
+                    if (Files.size(this.path) != this.size) {
+                        return Problem.CORRUPT;
+                    }
+                } catch (IOException e) {
+                    return Problem.MISSING;
+                }
+            }
+
+            if (this.hash != null) {
+                Hashing.HashCode actual = VerificationLedger.MD5.equals(this.algorithm) ? VerificationLedger.md5
+                        (this.path) : VerificationLedger.sha1(this.path);
+                if (!this.hash.equals(actual)) {
+                    return Problem.CORRUPT;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private static final class Check extends RecursiveAction {
+        private final List<ExpectedFile> files;
+        private final int from;
+        private final int to;
+        private final Report report;
+
+        private Check(List<ExpectedFile> files, int from, int to, Report report) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.report = report;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= THRESHOLD) {
+                for (int i = this.from; i < this.to; i++) {
+                    ExpectedFile file = this.files.get(i);
+                    Problem problem = file.check();
+                    if (problem == Problem.MISSING) {
+                        this.report.missingFiles.add(file);
+                    } else if (problem == Problem.CORRUPT) {
+                        this.report.corruptFiles.add(file);
+                    }
+                }
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new Check(this.files, this.from, middle, this.report), new Check(this.files, middle, this.to,
+                    this.report));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.workers;
+
+import com.atlauncher.collection.ModList;
+import com.atlauncher.data.DisableableMod;
+import com.atlauncher.data.Instance;
+import com.atlauncher.data.json.Mod;
+import com.atlauncher.managers.LogManager;
+import com.atlauncher.utils.VerificationLedger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The changes needed to update an instance to a new version of its pack, found by comparing the mods the instance has
+ * installed against the mods of the new version by their file and hash. Only the mods which are new or have changed
+ * are downloaded and installed, and only the mods which have gone or changed are removed.
+ *
+ * Mods which have to be installed in order (such as jar mods and mods which are extracted) can't be changed on their
+ * own, so if any of them have changed there's no plan and the instance is reinstalled as before.
+ */
+public final class UpdatePlan {
+    private final ModList changed = new ModList();
+    private final List<Path> removed = new ArrayList<>();
+    private final Set<String> disabled = new HashSet<>();
+    private int unchanged = 0;
+
+    private UpdatePlan() {
+    }
+
+    /**
+     * Works out the changes needed for the given install to update its instance.
+     *
+     * @param installer the install, with its mods already chosen
+     * @return the changes to make, or null if the instance needs reinstalling instead
+     */
+    static UpdatePlan create(InstanceInstaller installer) {
+        Instance instance = installer.instance;
+        if (instance == null || !installer.reinstall || installer.server) {
+            return null;
+        }
+
+        if (!instance.getMinecraftVersion().equalsIgnoreCase(installer.packVersion.getMinecraftVersion().getVersion
+                ())) {
+            return fallback("the Minecraft version has changed");
+        }
+
+        if (installer.version.hasActions()) {
+            return fallback("the pack has actions to run");
+        }
+
+        if (instance.getInstalledMods() == null) {
+            return fallback("the installed mods aren't known");
+        }
+
+        Map<String, DisableableMod> installed = new HashMap<>();
+        for (DisableableMod mod : instance.getInstalledMods()) {
+            if (!mod.isUserAdded()) {
+                installed.put(mod.getFilename(), mod);
+            }
+        }
+
+        UpdatePlan plan = new UpdatePlan();
+        Set<String> files = new HashSet<>();
+
+        for (Mod mod : installer.selectedMods) {
+            String file = installer.caseFile(mod);
+            files.add(file);
+
+            DisableableMod old = installed.get(file);
+            Path path = path(installer, mod, file);
+            if (path == null) {
+                if (old == null || !same(old, mod)) {
+                    return fallback(mod.name + " can't be changed without reinstalling");
+                }
+
+                plan.unchanged++;
+                continue;
+            }
+
+            Path existing = old == null ? null : (old.isDisabled() ? old.getDisabledFilePath(instance) : path);
+            if (existing != null && Files.isRegularFile(existing) && (mod.hasMD5() ? mod.md5.equals(VerificationLedger
+                    .md5(existing)) : same(old, mod))) {
+                plan.unchanged++;
+                if (old.isDisabled()) {
+                    plan.disabled.add(file);
+                }
+            } else {
+                plan.changed.add(mod);
+                if (existing != null) {
+                    plan.removed.add(existing);
+                }
+            }
+        }
+
+        for (DisableableMod old : installed.values()) {
+            if (files.contains(old.getFilename())) {
+                continue;
+            }
+
+            Path path = old.getType() == null || old.getType().isOrdered() ? null : (old.isDisabled() ? old
+                    .getDisabledFilePath(instance) : old.getFilePath(instance));
+            if (path == null) {
+                return fallback(old.getName() + " can't be removed without reinstalling");
+            }
+
+            plan.removed.add(path);
+        }
+
+        LogManager.info("Updating " + instance.getName() + " changes " + plan.changed.size() + " mods, removes " + plan
+                .removed.size() + " files and keeps " + plan.unchanged + " mods");
+
+        return plan;
+    }
+
+    /**
+     * Gets the mods which are new or have changed, and so need downloading and installing.
+     *
+     * @return the mods to install
+     */
+    public ModList getChanged() {
+        return this.changed;
+    }
+
+    /**
+     * Gets the files of the installed mods which have been removed from the pack or replaced by a changed mod.
+     *
+     * @return the files to remove
+     */
+    public List<Path> getRemoved() {
+        return Collections.unmodifiableList(this.removed);
+    }
+
+    /**
+     * Gets the number of mods already installed which are being kept as they are.
+     *
+     * @return the number of unchanged mods
+     */
+    public int getUnchanged() {
+        return this.unchanged;
+    }
+
+    /**
+     * Checks if the given mod file was disabled by the user and is being kept, so should stay disabled.
+     *
+     * @param file the (cased) file of the mod
+     * @return true if the mod should be listed as disabled
+     */
+    public boolean isDisabled(String file) {
+        return this.disabled.contains(file);
+    }
+
+    /**
+     * Gets the path the given mod is installed to, if it only installs its own file and so can be changed on its own.
+     */
+    static Path path(InstanceInstaller installer, Mod mod, String file) {
+        if (mod.isOrdered(installer)) {
+            return null;
+        }
+
+        Path dir = mod.type.getInstallDirectory(installer, mod);
+        return dir == null ? null : dir.resolve(file);
+    }
+
+    private static boolean same(DisableableMod old, Mod mod) {
+        return old.getName().equals(mod.name) && old.getType() == mod.type && (old.getVersion() == null ? mod.version
+                == null : old.getVersion().equals(mod.version));
+    }
+
+    private static UpdatePlan fallback(String reason) {
+        LogManager.info("Reinstalling rather than updating as " + reason);
+        return null;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CachingTest {
+    @Test
+    public void testGetAndPut() {
+        Caching.Cache<String, Integer> cache = Caching.newLRU(16);
+
+        Assert.assertNull(cache.get("a"));
+        cache.put("a", 1);
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Assert.assertEquals(Integer.valueOf(1), cache.put("a", 2));
+        Assert.assertEquals(Integer.valueOf(2), cache.get("a"));
+        Assert.assertEquals(1, cache.size());
+
+        Caching.Stats stats = cache.stats();
+        Assert.assertEquals(2, stats.getHits());
+        Assert.assertEquals(1, stats.getMisses());
+
+        Assert.assertNull(cache.get(null));
+        Assert.assertNull(cache.put(null, 1));
+    }
+
+    @Test
+    public void testBounded() {
+        Caching.Cache<Integer, Integer> cache = Caching.newLRU(64);
+
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+        }
+
+        Assert.assertTrue(cache.size() <= 64);
+        Assert.assertTrue(cache.stats().getEvictions() >= 10000 - 64);
+    }
+
+    @Test
+    public void testFrequentKeysStay() {
+        Caching.Cache<Integer, Integer> cache = Caching.newLRU(64);
+
+        for (int i = 0; i < 32; i++) {
+            for (int j = 0; j < 5; j++) {
+                cache.put(i, i);
+                cache.get(i);
+            }
+        }
+
+        // A scan of keys only used once shouldn't push out the ones used all the time
+        for (int i = 1000; i < 1300; i++) {
+            cache.put(i, i);
+        }
+
+        int kept = 0;
+        for (int i = 0; i < 32; i++) {
+            if (cache.get(i) != null) {
+                kept++;
+            }
+        }
+
+        Assert.assertTrue("Only kept " + kept, kept >= 28);
+    }
+
+    @Test
+    public void testIterator() {
+        Caching.Cache<String, Integer> cache = Caching.newLRU(16);
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        int sum = 0;
+        for (Map.Entry<String, Integer> entry : cache) {
+            sum += entry.getValue();
+
+            // Changing the cache while iterating is fine as the iterator works on a snapshot
+            cache.put("c", 3);
+        }
+
+        Assert.assertEquals(3, sum);
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        final Caching.Cache<Integer, Integer> cache = Caching.newLRU(128);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final CountDownLatch latch = new CountDownLatch(8);
+
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            int key = (i * 31 + seed) % 512;
+                            Integer value = cache.get(key);
+                            if (value != null && value != key) {
+                                failed.set(true);
+                            }
+                            cache.put(key, key);
+                        }
+                    } catch (Throwable e) {
+                        failed.set(true);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        latch.await();
+
+        Assert.assertFalse(failed.get());
+        Assert.assertTrue(cache.size() <= 128);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.collection;
+
+import com.atlauncher.data.Downloadable;
+import com.atlauncher.managers.SettingsManager;
+import com.atlauncher.thread.DownloadScheduler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class DownloadPoolTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() throws Exception {
+        this.release.countDown();
+        waitFor(0);
+    }
+
+    @Test
+    public void testCancelledResult() throws Exception {
+        this.fillScheduler();
+
+        DownloadPool pool = new DownloadPool(false);
+        for (int i = 0; i < 3; i++) {
+            pool.add(new Downloadable("http://example.com/" + i, null));
+        }
+
+        DownloadPool.Result result = pool.downloadAll();
+        Assert.assertFalse(result.isDone());
+
+        result.cancel();
+        this.release.countDown();
+
+        Assert.assertFalse(result.await());
+        Assert.assertTrue(result.isDone());
+        Assert.assertTrue(result.isCancelled());
+        for (Downloadable dl : pool) {
+            Assert.assertEquals(DownloadPool.State.CANCELLED, result.getState(dl));
+        }
+    }
+
+    @Test
+    public void testAwaitReportsFailures() throws Exception {
+        DownloadPool pool = new DownloadPool(false);
+        Downloadable dl = new Downloadable("http://example.com/test", null);
+        pool.add(dl);
+
+        final Map<Downloadable, DownloadPool.State> told = Collections.synchronizedMap(new HashMap<Downloadable,
+                DownloadPool.State>());
+        DownloadPool.Result result = pool.downloadAll(null, new DownloadPool.Listener() {
+            @Override
+            public void finished(Downloadable dl, DownloadPool.State state) {
+                told.put(dl, state);
+            }
+        });
+
+        // Without anywhere to download to the download fails straight away
+        Assert.assertFalse(result.await());
+        Assert.assertTrue(result.isDone());
+        Assert.assertFalse(result.isCancelled());
+        Assert.assertEquals(DownloadPool.State.FAILED, result.getState(dl));
+        Assert.assertTrue(result.getFailures().containsKey(dl));
+
+        // The listener is told before the pool counts as finished
+        Assert.assertEquals(DownloadPool.State.FAILED, told.get(dl));
+    }
+
+    /**
+     * Takes up every download connection with a task which waits to be released, so anything submitted after stays
+     * queued until then.
+     */
+    private void fillScheduler() throws Exception {
+        int connections = SettingsManager.getConcurrentConnections();
+        for (int i = 0; i < connections; i++) {
+            DownloadScheduler.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            });
+        }
+
+        waitFor(connections);
+    }
+
+    private static void waitFor(int running) throws Exception {
+        long end = System.currentTimeMillis() + 10000;
+        while (DownloadScheduler.getRunningCount() != running || (running == 0 && DownloadScheduler
+                .getQueuedCount() != 0)) {
+            if (System.currentTimeMillis() > end) {
+                Assert.fail("Scheduler has " + DownloadScheduler.getRunningCount() + " running instead of " + running);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ServerTest {
+
+    @Test
+    public void testScore() {
+        Server fast = new Server("Fast", "fast.example.com", true, false);
+        Server slow = new Server("Slow", "slow.example.com", true, false);
+
+        // Servers which haven't been used yet have no score
+        assertFalse(fast.isMeasured());
+        assertEquals(-1, fast.getScore(), 0);
+
+        fast.recordResponse(50);
+        fast.recordTransfer(10 * 1024 * 1024, 1000);
+        slow.recordResponse(400);
+        slow.recordTransfer(10 * 1024 * 1024, 10000);
+
+        assertTrue(fast.isMeasured());
+        assertTrue(fast.getScore() < slow.getScore());
+
+        // A run of failures should push a server behind a slower one which is working
+        for (int i = 0; i < 5; i++) {
+            fast.recordFailure();
+        }
+
+        assertTrue(fast.getScore() > slow.getScore());
+
+        // And a successful response should clear them again
+        fast.recordResponse(50);
+
+        assertTrue(fast.getScore() < slow.getScore());
+    }
+
+    @Test
+    public void testTTFB95() {
+        Server server = new Server("Test", "test.example.com", true, false);
+
+        assertEquals(1000, server.getTTFB95(1000));
+
+        for (int i = 1; i <= 20; i++) {
+            server.recordResponse(i * 10);
+        }
+
+        assertEquals(190, server.getTTFB95(1000));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.thread;
+
+import com.atlauncher.managers.SettingsManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class DownloadSchedulerTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() throws Exception {
+        this.release.countDown();
+        waitFor(0);
+    }
+
+    @Test
+    public void testMaxPerHost() throws Exception {
+        int connections = SettingsManager.getConcurrentConnections();
+        int perHost = Math.min(SettingsManager.getConcurrentConnectionsPerHost(), connections);
+
+        for (int i = 0; i < perHost + 2; i++) {
+            DownloadScheduler.submit(this.blocker("a" + i), "a.example.com", DownloadScheduler.Priority.BULK);
+        }
+
+        waitFor(perHost);
+        Assert.assertEquals(2, DownloadScheduler.getQueuedCount());
+
+        // Another host still gets the connections left over
+        if (connections > perHost) {
+            DownloadScheduler.submit(this.blocker("b"), "b.example.com", DownloadScheduler.Priority.BULK);
+            this.waitForStart("b");
+            Assert.assertEquals(perHost + 1, DownloadScheduler.getRunningCount());
+        }
+
+        Assert.assertFalse(this.started.contains("a" + perHost));
+        Assert.assertFalse(this.started.contains("a" + (perHost + 1)));
+    }
+
+    @Test
+    public void testCriticalBeforeBulk() throws Exception {
+        final CountDownLatch first = new CountDownLatch(1);
+        int connections = SettingsManager.getConcurrentConnections();
+
+        // Fill every connection, leaving one which can be freed on its own
+        DownloadScheduler.submit(this.blocker(first, "first"), null, DownloadScheduler.Priority.BULK);
+        for (int i = 1; i < connections; i++) {
+            DownloadScheduler.submit(this.blocker("filler" + i), null, DownloadScheduler.Priority.BULK);
+        }
+        waitFor(connections);
+
+        DownloadScheduler.submit(this.blocker("bulk"), null, DownloadScheduler.Priority.BULK);
+        Future<?> critical = DownloadScheduler.submit(this.blocker("critical"), null, DownloadScheduler.Priority
+                .CRITICAL);
+        Assert.assertEquals(2, DownloadScheduler.getQueuedCount());
+
+        first.countDown();
+        this.waitForStart("critical");
+        Assert.assertFalse(this.started.contains("bulk"));
+        Assert.assertEquals(1, DownloadScheduler.getQueuedCount());
+
+        this.release.countDown();
+        critical.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testReserve() throws Exception {
+        int connections = SettingsManager.getConcurrentConnections();
+        int perHost = Math.min(SettingsManager.getConcurrentConnectionsPerHost(), connections);
+
+        DownloadScheduler.submit(this.blocker("a"), "a.example.com", DownloadScheduler.Priority.BULK);
+        waitFor(1);
+
+        // Only the connections left to the host are reserved, and nothing queued is started on them
+        int reserved = DownloadScheduler.reserve("a.example.com", perHost + 2);
+        Assert.assertEquals(perHost - 1, reserved);
+        Assert.assertEquals(perHost, DownloadScheduler.getRunningCount());
+        Assert.assertEquals(0, DownloadScheduler.reserve("a.example.com", 1));
+
+        DownloadScheduler.submit(this.blocker("queued"), "a.example.com", DownloadScheduler.Priority.BULK);
+        Assert.assertEquals(1, DownloadScheduler.getQueuedCount());
+
+        DownloadScheduler.release("a.example.com", reserved);
+        this.waitForStart("queued");
+        waitFor(2);
+    }
+
+    private Runnable blocker(String name) {
+        return this.blocker(this.release, name);
+    }
+
+    private Runnable blocker(final CountDownLatch latch, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.add(name);
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        };
+    }
+
+    private void waitForStart(String name) throws Exception {
+        long end = System.currentTimeMillis() + 10000;
+        while (!this.started.contains(name)) {
+            if (System.currentTimeMillis() > end) {
+                Assert.fail(name + " wasn't started");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void waitFor(int running) throws Exception {
+        long end = System.currentTimeMillis() + 10000;
+        while (DownloadScheduler.getRunningCount() != running || (running == 0 && DownloadScheduler
+                .getQueuedCount() != 0)) {
+            if (System.currentTimeMillis() > end) {
+                Assert.fail("Scheduler has " + DownloadScheduler.getRunningCount() + " running instead of " + running);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -27,9 +27,14 @@ import org.junit.runner.RunWith;
 import org.zeroturnaround.zip.ZipUtil;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 @RunWith(OrderedRunner.class)
 public class CompressionUtilsTest {
@@ -115,4 +120,82 @@ public class CompressionUtilsTest {
             Assert.fail();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStripMetaInf() {
+        Path testFolder = this.testStorage.resolve("TestStripMetaInf");
+        Path inputJar = testFolder.resolve("Input.jar");
+        Path outputJar = testFolder.resolve("Output.jar");
+
+        try {
+            Files.createDirectory(testFolder);
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(inputJar))) {
+                zos.setComment("Test Comment");
+
+                zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+                zos.write("Manifest-Version: 1.0".getBytes("UTF-8"));
+                zos.closeEntry();
+
+                zos.putNextEntry(new ZipEntry("META-INF/MOJANG_C.SF"));
+                zos.write("Signature".getBytes("UTF-8"));
+                zos.closeEntry();
+
+                zos.putNextEntry(new ZipEntry("net/minecraft/Test.class"));
+                for (int i = 0; i < 1000; i++) {
+                    zos.write("Test".getBytes("UTF-8"));
+                }
+                zos.closeEntry();
+
+                byte[] stored = "Stored".getBytes("UTF-8");
+                CRC32 crc = new CRC32();
+                crc.update(stored);
+                ZipEntry entry = new ZipEntry("Stored.txt");
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(stored.length);
+                entry.setCrc(crc.getValue());
+                zos.putNextEntry(entry);
+                zos.write(stored);
+                zos.closeEntry();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Assert.fail();
+        }
+
+        try {
+            CompressionUtils.stripMetaInf(inputJar, outputJar);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Assert.fail();
+        }
+
+        try (ZipFile input = new ZipFile(inputJar.toFile()); ZipFile output = new ZipFile(outputJar.toFile())) {
+            Assert.assertEquals(2, output.size());
+            Assert.assertEquals("Test Comment", output.getComment());
+            Assert.assertNull(output.getEntry("META-INF/MANIFEST.MF"));
+            Assert.assertNull(output.getEntry("META-INF/MOJANG_C.SF"));
+
+            ZipEntry entry = output.getEntry("net/minecraft/Test.class");
+            Assert.assertEquals(input.getEntry("net/minecraft/Test.class").getCompressedSize(), entry
+                    .getCompressedSize());
+            try (InputStream is = output.getInputStream(entry)) {
+                byte[] bytes = new byte[4000];
+                int read = 0;
+                while (read < bytes.length) {
+                    read += is.read(bytes, read, bytes.length - read);
+                }
+                Assert.assertEquals(-1, is.read());
+                Assert.assertTrue(new String(bytes, "UTF-8").startsWith("TestTest"));
+            }
+
+            try (InputStream is = output.getInputStream(output.getEntry("Stored.txt"))) {
+                byte[] bytes = new byte[6];
+                Assert.assertEquals(6, is.read(bytes));
+                Assert.assertEquals("Stored", new String(bytes, "UTF-8"));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Assert.fail();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ContentStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path testStorage;
+
+    @Before
+    public void setUp() throws Exception {
+        testStorage = temporaryFolder.newFolder("ATLauncherTests").toPath();
+        System.setProperty("com.atlauncher.utils.ContentStore.dir", testStorage.resolve("Store").toString());
+        System.setProperty("com.atlauncher.utils.VerificationLedger.dir", testStorage.resolve("Configs").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty("com.atlauncher.utils.ContentStore.dir");
+        System.clearProperty("com.atlauncher.utils.VerificationLedger.dir");
+    }
+
+    @Test
+    public void testInstallLinksInstances() throws Exception {
+        Path library = this.file("library.jar", "Library");
+        Path first = this.testStorage.resolve("First");
+        Path second = this.testStorage.resolve("Second");
+        String hash = Hashing.sha1(library).toString();
+
+        Assert.assertTrue(ContentStore.install(library, first.resolve("bin"), false));
+        Assert.assertTrue(ContentStore.install(library, second.resolve("bin"), false));
+
+        Assert.assertTrue(Files.isSameFile(first.resolve("bin/library.jar"), second.resolve("bin/library.jar")));
+        Assert.assertEquals(2, ContentStore.getReferenceCount(hash));
+
+        // Installing the same file again doesn't count twice
+        Assert.assertTrue(ContentStore.install(library, first.resolve("bin"), false));
+        Assert.assertEquals(2, ContentStore.getReferenceCount(hash));
+    }
+
+    @Test
+    public void testCopiesAcrossDrives() throws Exception {
+        Path shm = Paths.get("/dev/shm");
+        Assume.assumeTrue(Files.isDirectory(shm) && Files.isWritable(shm));
+        Assume.assumeFalse(Files.getFileStore(shm).equals(Files.getFileStore(this.testStorage)));
+
+        // A store on a different drive to the instance can't be hard linked to, so the file is copied instead
+        TemporaryFolder otherDrive = new TemporaryFolder(shm.toFile());
+        otherDrive.create();
+        try {
+            System.setProperty("com.atlauncher.utils.ContentStore.dir", otherDrive.getRoot().toPath().resolve
+                    ("Store").toString());
+
+            Path library = this.file("library.jar", "Library");
+            Path target = this.testStorage.resolve("Instance").resolve("library.jar");
+            String hash = Hashing.sha1(library).toString();
+
+            Assert.assertTrue(ContentStore.install(library, target, true));
+
+            Assert.assertEquals("Library", new String(Files.readAllBytes(target), "UTF-8"));
+            Assert.assertEquals(0, ContentStore.getReferenceCount(hash));
+        } finally {
+            otherDrive.delete();
+        }
+    }
+
+    @Test
+    public void testReplacingFileMovesReference() throws Exception {
+        Path oldMod = this.file("old.jar", "Old");
+        Path newMod = this.file("new.jar", "New");
+        Path target = this.testStorage.resolve("Instance").resolve("mods").resolve("mod.jar");
+        String oldHash = Hashing.sha1(oldMod).toString();
+        String newHash = Hashing.sha1(newMod).toString();
+
+        Assert.assertTrue(ContentStore.install(oldMod, target, true));
+        Assert.assertEquals(1, ContentStore.getReferenceCount(oldHash));
+
+        Assert.assertTrue(ContentStore.install(newMod, target, true));
+        Assert.assertEquals(0, ContentStore.getReferenceCount(oldHash));
+        Assert.assertEquals(1, ContentStore.getReferenceCount(newHash));
+        Assert.assertFalse(Files.exists(this.object(oldHash)));
+
+        ContentStore.forget(target);
+        Assert.assertEquals(0, ContentStore.getReferenceCount(newHash));
+        Assert.assertFalse(Files.exists(this.object(newHash)));
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        Path library = this.file("library.jar", "Library");
+        Path first = this.testStorage.resolve("First");
+        Path second = this.testStorage.resolve("Second");
+        String hash = Hashing.sha1(library).toString();
+
+        ContentStore.install(library, first.resolve("bin"), false);
+        ContentStore.install(library, second.resolve("bin"), false);
+
+        ContentStore.release(first);
+        Assert.assertEquals(1, ContentStore.getReferenceCount(hash));
+        Assert.assertTrue(Files.exists(this.object(hash)));
+
+        ContentStore.release(second);
+        Assert.assertEquals(0, ContentStore.getReferenceCount(hash));
+        Assert.assertFalse(Files.exists(this.object(hash)));
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        Path mod = this.file("mod.jar", "Mod");
+        Path instance = this.testStorage.resolve("Instance");
+        String hash = Hashing.sha1(mod).toString();
+
+        ContentStore.install(mod, instance.resolve("mods"), false);
+        ContentStore.install(mod, instance.resolve("disabledmods"), false);
+        Assert.assertEquals(2, ContentStore.getReferenceCount(hash));
+
+        Files.delete(instance.resolve("mods").resolve("mod.jar"));
+        ContentStore.prune(instance);
+        Assert.assertEquals(1, ContentStore.getReferenceCount(hash));
+
+        // Replaced by something other than a link to the store
+        Files.delete(instance.resolve("disabledmods").resolve("mod.jar"));
+        Files.write(instance.resolve("disabledmods").resolve("mod.jar"), "Mod".getBytes("UTF-8"));
+        ContentStore.prune(instance);
+        Assert.assertEquals(0, ContentStore.getReferenceCount(hash));
+        Assert.assertFalse(Files.exists(this.object(hash)));
+    }
+
+    @Test
+    public void testExtractingOverLinkedFile() throws Exception {
+        Path mod = this.file("mod.jar", "Mod");
+        Path mods = this.testStorage.resolve("Instance").resolve("mods");
+        Path other = this.testStorage.resolve("Other").resolve("mods");
+        String hash = Hashing.sha1(mod).toString();
+
+        ContentStore.install(mod, mods, false);
+        ContentStore.install(mod, other, false);
+
+        Path zip = this.testStorage.resolve("extract.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            zos.putNextEntry(new ZipEntry("mod.jar"));
+            zos.write("Extracted".getBytes("UTF-8"));
+            zos.closeEntry();
+        }
+
+        // Extracting over the linked file replaces it in this instance only
+        Assert.assertTrue(FileUtils.unzip(zip, mods));
+        Assert.assertEquals("Extracted", new String(Files.readAllBytes(mods.resolve("mod.jar")), "UTF-8"));
+        Assert.assertEquals(hash, Hashing.sha1(this.object(hash)).toString());
+        Assert.assertEquals("Mod", new String(Files.readAllBytes(other.resolve("mod.jar")), "UTF-8"));
+    }
+
+    private Path file(String name, String contents) throws Exception {
+        Path file = this.testStorage.resolve(name);
+        Files.write(file, contents.getBytes("UTF-8"));
+        return file;
+    }
+
+    private Path object(String hash) {
+        return this.testStorage.resolve("Store").resolve("objects").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class DownloadProgressTest {
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        final DownloadProgress progress = new DownloadProgress(new DownloadProgress.Listener() {
+            @Override
+            public void progressed(long downloaded, long total) {
+            }
+        });
+
+        final CountDownLatch latch = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        progress.update(3, -1, false);
+                    }
+                    progress.update(-1, -1, true);
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+
+        Assert.assertEquals(8 * 10000 * 3, progress.getDownloaded());
+    }
+
+    @Test
+    public void testStartAndStop() throws Exception {
+        final AtomicLong last = new AtomicLong(-1);
+        DownloadProgress progress = new DownloadProgress(new DownloadProgress.Listener() {
+            @Override
+            public void progressed(long downloaded, long total) {
+                last.set(downloaded);
+            }
+        });
+
+        progress.add(100);
+        progress.start(500);
+        Assert.assertEquals(0, progress.getDownloaded());
+        Assert.assertEquals(500, progress.getTotal());
+
+        progress.add(250);
+        progress.stop();
+        Assert.assertEquals(250, last.get());
+
+        // Nothing more is sent once stopped
+        progress.add(50);
+        Thread.sleep(DownloadProgress.REFRESH_MILLIS * 3);
+        Assert.assertEquals(250, last.get());
+    }
+
+    @Test
+    public void testNestedStart() throws Exception {
+        final AtomicLong last = new AtomicLong(-1);
+        DownloadProgress progress = new DownloadProgress(new DownloadProgress.Listener() {
+            @Override
+            public void progressed(long downloaded, long total) {
+                last.set(downloaded);
+            }
+        });
+
+        progress.start(100);
+        progress.add(40);
+        progress.start(200);
+        Assert.assertEquals(40, progress.getDownloaded());
+        Assert.assertEquals(300, progress.getTotal());
+
+        // Still counting until the first set of downloads has stopped too
+        progress.add(60);
+        progress.stop();
+        Assert.assertEquals(100, progress.getDownloaded());
+        Assert.assertTrue(progress.isActive());
+
+        progress.stop();
+        Assert.assertEquals(100, last.get());
+        Assert.assertFalse(progress.isActive());
+    }
+}
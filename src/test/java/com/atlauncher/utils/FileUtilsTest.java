@@ -302,4 +302,26 @@ public class FileUtilsTest {
             Assert.fail();
         }
     }
+
+    @Test
+    public void testLinkFile() throws Exception {
+        Path object = this.testStorage.resolve("objects").resolve("Object.txt");
+        Path link = this.testStorage.resolve("virtual").resolve("sounds").resolve("Link.txt");
+
+        Files.createDirectories(object.getParent());
+        Files.write(object, new byte[]{'T', 'e', 's', 't'}, StandardOpenOption.CREATE_NEW);
+
+        Assert.assertTrue(FileUtils.linkFile(object, link));
+        Assert.assertTrue(Files.isSameFile(object, link));
+        Assert.assertEquals("Test", new String(Files.readAllBytes(link)));
+
+        // Linking again over an existing copy replaces it with the link
+        Files.delete(link);
+        Files.write(link, new byte[]{'O', 'l', 'd'});
+
+        Assert.assertTrue(FileUtils.linkFile(object, link));
+        Assert.assertTrue(Files.isSameFile(object, link));
+
+        Assert.assertFalse(FileUtils.linkFile(this.testStorage.resolve("Missing.txt"), link));
+    }
 }
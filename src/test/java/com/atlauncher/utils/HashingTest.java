@@ -23,10 +23,14 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 
 public class HashingTest {
     @Rule
@@ -150,4 +154,111 @@ public class HashingTest {
 
         Assert.assertEquals("2b84f621c0fd4ba8bd514c5c43ab9a897c8c014e", Hashing.sha1(testFile).toString());
     }
+
+    @Test
+    public void testDigestingChannel() throws Exception {
+        Path testFile = this.testStorage.resolve("TestChannel.txt");
+
+        byte[] bytes = {'T', 'e', 's', 't'};
+        Files.write(testFile, new byte[]{'T', 'e'}, StandardOpenOption.CREATE_NEW);
+
+        Hashing.DigestingChannel md5 = Hashing.md5Channel(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        while (md5.read(buffer) != -1) {
+            buffer.clear();
+        }
+
+        Assert.assertEquals("0cbc6611f5540bd0809a388dc95a615b", md5.hash().toString());
+
+        Hashing.DigestingChannel sha1 = Hashing.sha1Channel(Channels.newChannel(new ByteArrayInputStream(new byte[]{'s',
+                't'})));
+        sha1.update(testFile);
+        buffer = ByteBuffer.allocate(8);
+        while (sha1.read(buffer) != -1) {
+            buffer.clear();
+        }
+
+        Assert.assertEquals("640ab2bae07bedc4c163f679a746f7ab7fb5d1fa", sha1.hash().toString());
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        Path testFile = this.testStorage.resolve("TestDigest.bin");
+
+        // Bigger than the read buffer so the digests have to be carried across several reads
+        byte[] bytes = new byte[600 * 1024 + 123];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        Files.write(testFile, bytes, StandardOpenOption.CREATE_NEW);
+
+        Hashing.HashCode[] hashes = Hashing.digest(testFile, Hashing.MD5, Hashing.SHA1);
+
+        Assert.assertEquals(2, hashes.length);
+        Assert.assertEquals(toHex(MessageDigest.getInstance("MD5").digest(bytes)), hashes[0].toString());
+        Assert.assertEquals(toHex(MessageDigest.getInstance("SHA-1").digest(bytes)), hashes[1].toString());
+        Assert.assertEquals(hashes[0], Hashing.md5(testFile));
+        Assert.assertEquals(hashes[1], Hashing.sha1(testFile));
+
+        Hashing.HashCode[] missing = Hashing.digest(this.testStorage.resolve("Missing.bin"), Hashing.MD5, Hashing
+                .SHA1);
+        Assert.assertEquals(Hashing.HashCode.EMPTY, missing[0]);
+        Assert.assertEquals(Hashing.HashCode.EMPTY, missing[1]);
+    }
+
+    @Test
+    public void testHashCodeLengths() throws Exception {
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(new byte[]{'T', 'e', 's', 't'});
+        String[] hashes = {"0cbc6611f5540bd0809a388dc95a615b", "640ab2bae07bedc4c163f679a746f7ab7fb5d1fa", toHex
+                (sha256), "00ff", "0102030405060708090a"};
+
+        for (String hash : hashes) {
+            Hashing.HashCode code = Hashing.HashCode.fromString(hash);
+            Hashing.HashCode upper = new Hashing.HashCode(hash.toUpperCase());
+
+            Assert.assertEquals(hash, code.toString());
+            Assert.assertEquals(hash, toHex(code.bytes()));
+            Assert.assertEquals(hash.length() * 4, code.bits());
+            Assert.assertEquals(code, upper);
+            Assert.assertEquals(code.hashCode(), upper.hashCode());
+        }
+
+        Assert.assertEquals(Hashing.HashCode.fromString(toHex(sha256)), Hashing.digest(sha256Input(), "SHA-256")[0]);
+        Assert.assertEquals(0x1166bc0c, Hashing.HashCode.fromString(hashes[0]).asInt());
+    }
+
+    @Test
+    public void testHashCodeInequality() {
+        Hashing.HashCode md5 = Hashing.HashCode.fromString("0cbc6611f5540bd0809a388dc95a615b");
+
+        Assert.assertFalse(md5.equals(Hashing.HashCode.fromString("0cbc6611f5540bd0809a388dc95a615c")));
+        Assert.assertFalse(md5.equals(Hashing.HashCode.fromString("0cbc6611f5540bd0809a388dc95a615b00")));
+        Assert.assertFalse(md5.equals(Hashing.HashCode.EMPTY));
+        Assert.assertEquals(Hashing.HashCode.EMPTY, Hashing.HashCode.fromString(""));
+        Assert.assertEquals(Hashing.HashCode.EMPTY, Hashing.HashCode.fromString("abc"));
+        Assert.assertEquals("", Hashing.HashCode.EMPTY.toString());
+    }
+
+    @Test
+    public void testHashCodeIllegalCharacter() {
+        try {
+            Hashing.HashCode.fromString("0cbc6611f5540bd0809a388dc95a615g");
+            Assert.fail();
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    private Path sha256Input() throws IOException {
+        Path file = this.testStorage.resolve("TestSHA256.txt");
+        Files.write(file, new byte[]{'T', 'e', 's', 't'}, StandardOpenOption.CREATE_NEW);
+        return file;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import com.atlauncher.data.mojang.ExtractRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class NativesCacheTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path testStorage;
+    private String version;
+
+    @Before
+    public void setUp() throws Exception {
+        testStorage = temporaryFolder.newFolder("ATLauncherTests").toPath();
+        version = "NativesCacheTest";
+        System.setProperty("com.atlauncher.utils.NativesCache.dir", testStorage.resolve("natives-cache").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty("com.atlauncher.utils.NativesCache.dir");
+    }
+
+    @Test
+    public void testExtractRuleIsRespected() throws Exception {
+        Path library = zip("natives.jar", "lwjgl.so", "META-INF/MANIFEST.MF", "META-INF/", "skip.txt");
+
+        ExtractRule rule = new ExtractRule();
+        rule.exclude = Arrays.asList("META-INF/", "skip.txt");
+
+        Map<Path, ExtractRule> libraries = new LinkedHashMap<>();
+        libraries.put(library, rule);
+
+        Path natives = this.testStorage.resolve("natives");
+        Assert.assertTrue(NativesCache.install(this.version, libraries, natives));
+
+        Assert.assertTrue(Files.exists(natives.resolve("lwjgl.so")));
+        Assert.assertFalse(Files.exists(natives.resolve("META-INF")));
+        Assert.assertFalse(Files.exists(natives.resolve("skip.txt")));
+    }
+
+    @Test
+    public void testUnzipUsesSameExtractRule() throws Exception {
+        Path library = zip("natives.jar", "lwjgl.so", "META-INF/MANIFEST.MF", "META-INF/", "skip.txt");
+
+        ExtractRule rule = new ExtractRule();
+        rule.exclude = Arrays.asList("META-INF/", "skip.txt");
+
+        Path natives = this.testStorage.resolve("natives");
+        Assert.assertTrue(FileUtils.unzip(library, natives, rule));
+
+        Assert.assertTrue(Files.exists(natives.resolve("lwjgl.so")));
+        Assert.assertFalse(Files.exists(natives.resolve("META-INF")));
+        Assert.assertFalse(Files.exists(natives.resolve("skip.txt")));
+    }
+
+    @Test
+    public void testLaterLibrariesWin() throws Exception {
+        Path first = zip("first.jar", "shared.so", "first.so");
+        Path second = zip("second.jar", "shared.so", "second.so");
+
+        Map<Path, ExtractRule> libraries = new LinkedHashMap<>();
+        libraries.put(first, null);
+        libraries.put(second, null);
+
+        Path natives = this.testStorage.resolve("natives");
+        Assert.assertTrue(NativesCache.install(this.version, libraries, natives));
+
+        Assert.assertTrue(Files.exists(natives.resolve("first.so")));
+        Assert.assertTrue(Files.exists(natives.resolve("second.so")));
+        Assert.assertEquals("second.jar/shared.so", new String(Files.readAllBytes(natives.resolve("shared.so")),
+                "UTF-8"));
+    }
+
+    @Test
+    public void testSecondInstanceUsesCache() throws Exception {
+        Path library = zip("natives.jar", "lwjgl.so");
+
+        Map<Path, ExtractRule> libraries = new LinkedHashMap<>();
+        libraries.put(library, null);
+
+        Path first = this.testStorage.resolve("first");
+        Path second = this.testStorage.resolve("second");
+        Assert.assertTrue(NativesCache.install(this.version, libraries, first));
+        Assert.assertTrue(NativesCache.install(this.version, libraries, second));
+
+        Assert.assertTrue(Files.isSameFile(first.resolve("lwjgl.so"), second.resolve("lwjgl.so")));
+    }
+
+    private Path zip(String name, String... entries) throws IOException {
+        Path file = this.testStorage.resolve(name);
+        try (OutputStream os = Files.newOutputStream(file); ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (String entry : entries) {
+                zos.putNextEntry(new ZipEntry(entry));
+                if (!entry.endsWith("/")) {
+                    zos.write((name + "/" + entry).getBytes("UTF-8"));
+                }
+                zos.closeEntry();
+            }
+        }
+
+        return file;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RetryPolicyTest {
+    @Test
+    public void testAttempts() {
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+
+        Assert.assertTrue(policy.canRetry(1));
+        Assert.assertTrue(policy.canRetry(2));
+        Assert.assertFalse(policy.canRetry(3));
+    }
+
+    @Test
+    public void testExponentialDelay() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+
+        Assert.assertEquals(100, policy.getMaxDelay(1));
+        Assert.assertEquals(200, policy.getMaxDelay(2));
+        Assert.assertEquals(400, policy.getMaxDelay(3));
+        Assert.assertEquals(800, policy.getMaxDelay(4));
+        Assert.assertEquals(1000, policy.getMaxDelay(5));
+        Assert.assertEquals(1000, policy.getMaxDelay(100));
+    }
+
+    @Test
+    public void testJitter() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+
+        boolean varied = false;
+        long first = policy.getDelay(3);
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.getDelay(3);
+            Assert.assertTrue(delay >= 0 && delay <= 400);
+            varied |= delay != first;
+        }
+
+        Assert.assertTrue(varied);
+    }
+}
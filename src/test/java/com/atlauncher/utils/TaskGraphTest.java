@@ -0,0 +1,158 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TaskGraphTest {
+    private static final TaskGraph.Cancellable NEVER = new TaskGraph.Cancellable() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private static final TaskGraph.Listener QUIET = new TaskGraph.Listener() {
+        @Override
+        public void started(String stage) {
+        }
+
+        @Override
+        public void finished(String stage, long millis) {
+        }
+    };
+
+    @Test
+    public void testDependenciesRunFirst() throws Exception {
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        TaskGraph graph = new TaskGraph(NEVER, QUIET);
+        graph.add("a", record(order, "a"));
+        graph.add("b", record(order, "b"), "a");
+        graph.add("c", record(order, "c"));
+        graph.add("d", record(order, "d"), "b", "c");
+
+        Assert.assertTrue(graph.run());
+        Assert.assertEquals(4, order.size());
+        Assert.assertTrue(order.indexOf("a") < order.indexOf("b"));
+        Assert.assertTrue(order.indexOf("b") < order.indexOf("d"));
+        Assert.assertTrue(order.indexOf("c") < order.indexOf("d"));
+    }
+
+    @Test
+    public void testIndependentStagesRunTogether() throws Exception {
+        // Each stage waits for the other, so this only finishes if they run at the same time
+        final CountDownLatch both = new CountDownLatch(2);
+        TaskGraph.Stage stage = new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                both.countDown();
+                Assert.assertTrue(both.await(5, TimeUnit.SECONDS));
+            }
+        };
+
+        TaskGraph graph = new TaskGraph(NEVER, QUIET);
+        graph.add("a", stage);
+        graph.add("b", stage);
+        Assert.assertTrue(graph.run());
+    }
+
+    @Test
+    public void testFailureIsThrown() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean(false);
+        TaskGraph graph = new TaskGraph(NEVER, QUIET);
+        graph.add("a", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                throw new IOException("broken");
+            }
+        });
+        graph.add("b", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                ran.set(true);
+            }
+        }, "a");
+
+        try {
+            graph.run();
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("broken", e.getMessage());
+        }
+
+        Assert.assertFalse(ran.get());
+    }
+
+    @Test
+    public void testCancelStopsLaterStages() throws Exception {
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicInteger ran = new AtomicInteger(0);
+        TaskGraph graph = new TaskGraph(new TaskGraph.Cancellable() {
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        }, QUIET);
+        graph.add("a", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                ran.incrementAndGet();
+                cancelled.set(true);
+            }
+        });
+        graph.add("b", new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                ran.incrementAndGet();
+            }
+        }, "a");
+
+        Assert.assertFalse(graph.run());
+        Assert.assertEquals(1, ran.get());
+    }
+
+    @Test
+    public void testUnknownDependency() throws Exception {
+        TaskGraph graph = new TaskGraph(NEVER, QUIET);
+        try {
+            graph.add("a", record(new ArrayList<String>(), "a"), "b");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(graph.getStages().isEmpty());
+        }
+    }
+
+    private static TaskGraph.Stage record(final List<String> order, final String name) {
+        return new TaskGraph.Stage() {
+            @Override
+            public void run() throws Exception {
+                order.add(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBucketTest {
+    @Test
+    public void testUnlimited() throws Exception {
+        TokenBucket bucket = new TokenBucket(0);
+
+        Assert.assertFalse(bucket.isLimited());
+        Assert.assertEquals(1024 * 1024, bucket.acquire(1024 * 1024));
+    }
+
+    @Test
+    public void testRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(100 * 1000);
+
+        long start = System.currentTimeMillis();
+        long total = 0;
+        while (total < 50 * 1000) {
+            long granted = bucket.acquire(8192);
+            Assert.assertTrue(granted > 0 && granted <= 8192);
+            total += granted;
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        // 50KB at 100KB/s starting from an empty bucket should take around half a second
+        Assert.assertTrue("Took " + elapsed + "ms", elapsed >= 400 && elapsed < 2000);
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        TokenBucket bucket = new TokenBucket(100 * 1000);
+        bucket.release(8192);
+
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(8192, bucket.acquire(8192));
+        Assert.assertTrue(System.currentTimeMillis() - start < 50);
+    }
+}
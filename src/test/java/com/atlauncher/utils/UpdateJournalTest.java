@@ -0,0 +1,122 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class UpdateJournalTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void setup() throws IOException {
+        root = temporaryFolder.newFolder("Instance").toPath();
+        Files.createDirectories(root.resolve("mods"));
+        write(root.resolve("mods").resolve("Changed.jar"), "old");
+        write(root.resolve("mods").resolve("Removed.jar"), "removed");
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        UpdateJournal journal = new UpdateJournal(root);
+        journal.record(root.resolve("mods").resolve("Changed.jar"));
+        journal.record(root.resolve("mods").resolve("Removed.jar"));
+        journal.record(root.resolve("mods").resolve("Added.jar"));
+
+        Assert.assertFalse(Files.exists(root.resolve("mods").resolve("Changed.jar")));
+        Assert.assertFalse(Files.exists(root.resolve("mods").resolve("Removed.jar")));
+
+        write(root.resolve("mods").resolve("Changed.jar"), "new");
+        write(root.resolve("mods").resolve("Added.jar"), "added");
+
+        // Recording a file again once it's been written mustn't lose the original
+        journal.record(root.resolve("mods").resolve("Changed.jar"));
+
+        journal.rollback();
+
+        Assert.assertEquals("old", read(root.resolve("mods").resolve("Changed.jar")));
+        Assert.assertEquals("removed", read(root.resolve("mods").resolve("Removed.jar")));
+        Assert.assertFalse(Files.exists(root.resolve("mods").resolve("Added.jar")));
+        Assert.assertFalse(Files.exists(root.resolve(".update")));
+    }
+
+    @Test
+    public void testCommit() throws Exception {
+        UpdateJournal journal = new UpdateJournal(root);
+        journal.record(root.resolve("mods").resolve("Changed.jar"));
+        write(root.resolve("mods").resolve("Changed.jar"), "new");
+        journal.commit();
+
+        Assert.assertEquals("new", read(root.resolve("mods").resolve("Changed.jar")));
+        Assert.assertFalse(Files.exists(root.resolve(".update")));
+        Assert.assertFalse(UpdateJournal.recover(root));
+    }
+
+    @Test
+    public void testRecover() throws Exception {
+        UpdateJournal journal = new UpdateJournal(root);
+        journal.record(root.resolve("mods"));
+        Files.createDirectories(root.resolve("mods"));
+        write(root.resolve("mods").resolve("Added.jar"), "added");
+
+        // As if the launcher was closed before the update finished
+        Assert.assertTrue(UpdateJournal.recover(root));
+
+        Assert.assertEquals("old", read(root.resolve("mods").resolve("Changed.jar")));
+        Assert.assertEquals("removed", read(root.resolve("mods").resolve("Removed.jar")));
+        Assert.assertFalse(Files.exists(root.resolve("mods").resolve("Added.jar")));
+        Assert.assertFalse(Files.exists(root.resolve(".update")));
+    }
+
+    @Test
+    public void testRecoverIgnoresUnfinishedLine() throws Exception {
+        UpdateJournal journal = new UpdateJournal(root);
+        journal.record(root.resolve("mods").resolve("Changed.jar"));
+        write(root.resolve("mods").resolve("Changed.jar"), "new");
+
+        // As if the launcher was closed while the next change was being written to the journal
+        Path file = root.resolve(".update").resolve("journal.log");
+        Files.write(file, "{\"path\":\"mods/Rem".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        Assert.assertTrue(UpdateJournal.recover(root));
+
+        Assert.assertEquals("old", read(root.resolve("mods").resolve("Changed.jar")));
+        Assert.assertEquals("removed", read(root.resolve("mods").resolve("Removed.jar")));
+        Assert.assertFalse(Files.exists(root.resolve(".update")));
+    }
+
+    private static void write(Path file, String contents) throws IOException {
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
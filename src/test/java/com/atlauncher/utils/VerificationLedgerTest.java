@@ -0,0 +1,120 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+public class VerificationLedgerTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path testStorage;
+
+    @Before
+    public void setUp() throws Exception {
+        testStorage = temporaryFolder.newFolder("ATLauncherTests").toPath();
+        System.setProperty("com.atlauncher.utils.VerificationLedger.dir", testStorage.resolve("Configs").toString());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty("com.atlauncher.utils.VerificationLedger.dir");
+    }
+
+    @Test
+    public void testUnchangedFileIsNotRehashed() throws Exception {
+        Path testFile = this.testStorage.resolve("TestLedger.txt");
+        Files.write(testFile, new byte[]{'T', 'e', 's', 't'}, StandardOpenOption.CREATE_NEW);
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        Files.setLastModifiedTime(testFile, modified);
+
+        Assert.assertEquals("0cbc6611f5540bd0809a388dc95a615b", VerificationLedger.md5(testFile).toString());
+
+        // Same size and modified time, so the recorded hash is trusted even though the contents changed
+        Files.write(testFile, new byte[]{'J', 'u', 'n', 'k'});
+        Files.setLastModifiedTime(testFile, modified);
+
+        Assert.assertEquals("0cbc6611f5540bd0809a388dc95a615b", VerificationLedger.md5(testFile).toString());
+
+        VerificationLedger.invalidate(testFile);
+
+        Assert.assertEquals(Hashing.md5(testFile), VerificationLedger.md5(testFile));
+    }
+
+    @Test
+    public void testChangedFileIsRehashed() throws Exception {
+        Path testFile = this.testStorage.resolve("TestLedger.txt");
+        Files.write(testFile, new byte[]{'T', 'e', 's', 't'}, StandardOpenOption.CREATE_NEW);
+        Files.setLastModifiedTime(testFile, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+
+        Assert.assertEquals("640ab2bae07bedc4c163f679a746f7ab7fb5d1fa", VerificationLedger.sha1(testFile).toString());
+
+        Files.write(testFile, new byte[]{'T', 'e', 's', 't', '2'});
+
+        Assert.assertEquals("2b84f621c0fd4ba8bd514c5c43ab9a897c8c014e", VerificationLedger.sha1(testFile).toString());
+
+        Files.delete(testFile);
+
+        Assert.assertEquals(Hashing.HashCode.EMPTY, VerificationLedger.sha1(testFile));
+    }
+
+    @Test
+    public void testOnlyRequestedHashIsRecorded() throws Exception {
+        Path testFile = this.testStorage.resolve("TestLedger.txt");
+        Files.write(testFile, new byte[]{'T', 'e', 's', 't'}, StandardOpenOption.CREATE_NEW);
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        Files.setLastModifiedTime(testFile, modified);
+
+        Assert.assertEquals("0cbc6611f5540bd0809a388dc95a615b", VerificationLedger.md5(testFile).toString());
+
+        Files.write(testFile, new byte[]{'J', 'u', 'n', 'k'});
+        Files.setLastModifiedTime(testFile, modified);
+
+        // Only the MD5 was worked out, so the SHA-1 comes from the file as it is now
+        Assert.assertEquals(Hashing.sha1(testFile), VerificationLedger.sha1(testFile));
+    }
+
+    @Test
+    public void testDigestRecordsEveryHash() throws Exception {
+        Path testFile = this.testStorage.resolve("TestLedger.txt");
+        Files.write(testFile, new byte[]{'T', 'e', 's', 't'}, StandardOpenOption.CREATE_NEW);
+        FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        Files.setLastModifiedTime(testFile, modified);
+
+        Hashing.HashCode[] hashes = VerificationLedger.digest(testFile, VerificationLedger.MD5, VerificationLedger
+                .SHA1);
+        Assert.assertEquals("0cbc6611f5540bd0809a388dc95a615b", hashes[0].toString());
+        Assert.assertEquals("640ab2bae07bedc4c163f679a746f7ab7fb5d1fa", hashes[1].toString());
+
+        Files.write(testFile, new byte[]{'J', 'u', 'n', 'k'});
+        Files.setLastModifiedTime(testFile, modified);
+
+        Assert.assertEquals("0cbc6611f5540bd0809a388dc95a615b", VerificationLedger.md5(testFile).toString());
+        Assert.assertEquals("640ab2bae07bedc4c163f679a746f7ab7fb5d1fa", VerificationLedger.sha1(testFile).toString());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.workers;
+
+import com.atlauncher.Gsons;
+import com.atlauncher.data.Pack;
+import com.atlauncher.data.version.PackVersion;
+import com.google.gson.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+public class InstallPlanTest {
+    @Test
+    public void testTotals() {
+        InstallPlan plan = new InstallPlan();
+        plan.download("a.jar", 100);
+        plan.cached("b.jar", 200, true);
+        plan.cached("c.jar", 300, false);
+        plan.copy("a.jar", 100);
+        plan.extract("d.zip", 50);
+
+        Assert.assertEquals(5, plan.getSteps().size());
+        Assert.assertEquals(2, plan.getSteps(InstallPlan.Action.CACHED).size());
+        Assert.assertEquals(100, plan.getSize(InstallPlan.Action.DOWNLOAD));
+        Assert.assertEquals(500, plan.getSize(InstallPlan.Action.CACHED));
+        Assert.assertEquals(100 + 300 + 100 + 50, plan.getBytesRead());
+        Assert.assertEquals(100 + 100 + 50, plan.getBytesWritten());
+        Assert.assertEquals(0, plan.getUnknownSizes());
+    }
+
+    @Test
+    public void testUnknownSizes() {
+        InstallPlan plan = new InstallPlan();
+        plan.download("a.jar", -1);
+        plan.copy("a.jar", -1);
+        plan.download("b.jar", 10);
+        plan.cached("c.jar", -1, false);
+        plan.extract("c.jar", -1);
+
+        // Each file is only counted once, not again when it's copied or extracted
+        Assert.assertEquals(2, plan.getUnknownSizes());
+        Assert.assertEquals(10, plan.getSize(InstallPlan.Action.DOWNLOAD));
+        Assert.assertEquals(10, plan.getBytesRead());
+        Assert.assertEquals(10, plan.getBytesWritten());
+    }
+
+    @Test
+    public void testPlanFixtureVersion() throws Exception {
+        JsonObject json = new JsonObject();
+        json.addProperty("name", "Plan Test");
+        json.addProperty("json", resource("/plan/Configs.json"));
+        json.addProperty("jsonVersion", "1.0.0");
+        Pack pack = Gsons.DEFAULT.fromJson(json, Pack.class);
+        PackVersion version = Gsons.DEFAULT.fromJson(resource("/plan/version.json"), PackVersion.class);
+
+        // None of the fixture's files have been downloaded, so everything needs downloading
+        InstallPlan plan = new InstanceInstaller("Plan Test", pack, version, false, null, false, false).plan();
+
+        // The asset index and objects, the library, the Minecraft jar, the three selected mods and the configs
+        Assert.assertEquals(8, plan.getSteps(InstallPlan.Action.DOWNLOAD).size());
+        Assert.assertEquals(500 + 10000 + 1000 + 5000 + 2000 + 3000, plan.getSize(InstallPlan.Action.DOWNLOAD));
+        Assert.assertEquals(0, plan.getSteps(InstallPlan.Action.CACHED).size());
+
+        // The library, the Minecraft jar and the two plain mods are copied, the extract mod and configs extracted
+        Assert.assertEquals(4, plan.getSteps(InstallPlan.Action.COPY).size());
+        Assert.assertEquals(2, plan.getSteps(InstallPlan.Action.EXTRACT).size());
+        for (InstallPlan.Step step : plan.getSteps()) {
+            Assert.assertFalse(step.getName().equals("plantest-unselected.jar"));
+        }
+
+        // The mod without a size and the configs, each counted once
+        Assert.assertEquals(2, plan.getUnknownSizes());
+        Assert.assertEquals(21500 + 1000 + 5000 + 2000 + 3000, plan.getBytesRead());
+        Assert.assertEquals(21500 + 1000 + 5000 + 2000 + 3000, plan.getBytesWritten());
+    }
+
+    private static String resource(String name) throws IOException {
+        try (InputStream in = InstallPlanTest.class.getResourceAsStream(name); Scanner scanner = new Scanner(in,
+                StandardCharsets.UTF_8.name())) {
+            return scanner.useDelimiter("\\A").next();
+        }
+    }
+}
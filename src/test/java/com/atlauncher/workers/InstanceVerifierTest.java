@@ -0,0 +1,168 @@
+/*
+ * ATLauncher - https://github.com/ATLauncher/ATLauncher
+ * Copyright (C) 2013 ATLauncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.atlauncher.workers;
+
+import com.atlauncher.data.DisableableMod;
+import com.atlauncher.data.Downloadable;
+import com.atlauncher.data.Instance;
+import com.atlauncher.data.json.ModType;
+import com.atlauncher.utils.ContentStore;
+import com.atlauncher.utils.Hashing;
+import com.atlauncher.utils.VerificationLedger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.Color;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InstanceVerifierTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path testStorage;
+    private Instance instance;
+    private List<DisableableMod> mods;
+
+    @Before
+    public void setUp() throws Exception {
+        testStorage = temporaryFolder.newFolder("ATLauncherTests").toPath();
+        System.setProperty("com.atlauncher.utils.ContentStore.dir", testStorage.resolve("Store").toString());
+        System.setProperty("com.atlauncher.utils.VerificationLedger.dir", testStorage.resolve("Configs").toString());
+
+        final Path instanceRoot = testStorage.resolve("Instance");
+        mods = new ArrayList<>();
+        instance = new Instance("Test", "Test", null, false, "1.0.0", "1.7.10", 0, 0, mods, null, null, null, null,
+                null, null, false, true) {
+            @Override
+            public Path getRootDirectory() {
+                return instanceRoot;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty("com.atlauncher.utils.ContentStore.dir");
+        System.clearProperty("com.atlauncher.utils.VerificationLedger.dir");
+    }
+
+    @Test
+    public void testFindsMissingAndCorruptFiles() throws Exception {
+        Path intact = this.file(this.instance.getModsDirectory().resolve("intact.jar"), "Intact");
+        Path corrupt = this.file(this.instance.getModsDirectory().resolve("corrupt.jar"), "Corrupt");
+        Path missing = this.instance.getModsDirectory().resolve("missing.jar");
+        Path truncated = this.file(this.instance.getModsDirectory().resolve("truncated.jar"), "Trunc");
+
+        InstanceVerifier verifier = new InstanceVerifier(this.instance);
+        verifier.expect(intact, VerificationLedger.MD5, Hashing.md5(intact), 6, null, null);
+        verifier.expect(corrupt, VerificationLedger.MD5, Hashing.md5("Something Else"), -1, null, null);
+        verifier.expect(missing, VerificationLedger.SHA1, Hashing.sha1("Missing"), 7, null, null);
+        verifier.expect(truncated, null, null, 9, null, null);
+
+        InstanceVerifier.Report report = verifier.check();
+
+        Assert.assertFalse(report.isClean());
+        Assert.assertEquals(1, report.getMissing().size());
+        Assert.assertEquals(missing, report.getMissing().get(0));
+        Assert.assertEquals(2, report.getCorrupt().size());
+        Assert.assertEquals(corrupt, report.getCorrupt().get(0));
+        Assert.assertEquals(truncated, report.getCorrupt().get(1));
+        Assert.assertTrue(report.getExtra().isEmpty());
+    }
+
+    @Test
+    public void testFindsExtraFiles() throws Exception {
+        Path installed = this.file(this.instance.getModsDirectory().resolve("installed.jar"), "Installed");
+        Path userAdded = this.file(this.instance.getModsDirectory().resolve("added.jar"), "Added");
+        Path disabled = this.file(this.instance.getDisabledModsDirectory().resolve("disabled.jar"), "Disabled");
+        Path extraMod = this.file(this.instance.getModsDirectory().resolve("extra.jar"), "Extra");
+        Path extraCoreMod = this.file(this.instance.getCoreModsDirectory().resolve("extra.jar"), "Extra");
+
+        this.mods.add(new DisableableMod("Added", "1", true, "added.jar", ModType.MODS, Color.WHITE, "", false,
+                true));
+        this.mods.add(new DisableableMod("Disabled", "1", true, "disabled.jar", ModType.MODS, Color.WHITE, "",
+                true, false));
+
+        InstanceVerifier verifier = new InstanceVerifier(this.instance);
+        verifier.expect(installed, VerificationLedger.MD5, Hashing.md5(installed), -1, null, null);
+
+        InstanceVerifier.Report report = verifier.check();
+
+        Assert.assertTrue(report.isClean());
+        Assert.assertEquals(2, report.getExtra().size());
+        Assert.assertTrue(report.getExtra().contains(extraMod));
+        Assert.assertTrue(report.getExtra().contains(extraCoreMod));
+        Assert.assertFalse(report.getExtra().contains(userAdded));
+        Assert.assertFalse(report.getExtra().contains(disabled));
+    }
+
+    @Test
+    public void testRepairsFromSharedCopy() throws Exception {
+        Path shared = this.file(this.testStorage.resolve("Libraries/library.jar"), "Library");
+        Path installed = this.instance.getBinDirectory().resolve("library.jar");
+        Hashing.HashCode hash = Hashing.md5(shared);
+        Assert.assertTrue(ContentStore.install(shared, installed, true));
+
+        // Written through the link, so the object in the store is broken as well
+        Files.write(installed, "Broken!".getBytes(StandardCharsets.UTF_8));
+
+        // The shared copy is intact, so it isn't downloaded again
+        Downloadable source = new Downloadable("http://localhost/library.jar", hash.toString(), shared, 7, false,
+                null);
+
+        InstanceVerifier verifier = new InstanceVerifier(this.instance);
+        verifier.expect(installed, VerificationLedger.MD5, hash, 7, source, shared);
+
+        InstanceVerifier.Report report = verifier.check();
+        Assert.assertEquals(1, report.getCorrupt().size());
+
+        Assert.assertTrue(verifier.repair(report));
+        Assert.assertEquals(1, report.getRepaired());
+        Assert.assertEquals(hash, Hashing.md5(installed));
+        Assert.assertEquals(1, ContentStore.getReferenceCount(Hashing.sha1(shared).toString()));
+        Assert.assertTrue(verifier.check().isClean());
+    }
+
+    @Test
+    public void testCantRepairWithoutSource() throws Exception {
+        Path missing = this.instance.getBinDirectory().resolve("missing.jar");
+
+        InstanceVerifier verifier = new InstanceVerifier(this.instance);
+        verifier.expect(missing, null, null, -1, null, null);
+
+        InstanceVerifier.Report report = verifier.check();
+        Assert.assertEquals(1, report.getMissing().size());
+
+        Assert.assertFalse(verifier.repair(report));
+        Assert.assertEquals(0, report.getRepaired());
+    }
+
+    private Path file(Path path, String contents) throws Exception {
+        Files.createDirectories(path.getParent());
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+}